@@ -75,4 +75,9 @@ public class AppConstructionMicro {
         return App.of(VariousBundles.FIVE_CONTAINER_IMAGE);
     }
 
+    @Benchmark
+    public App oneContainerFromImage() {
+        return App.of(VariousBundles.ONE_CONTAINER_IMAGE);
+    }
+
 }
@@ -29,7 +29,10 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 
 import app.packed.container.BaseBundle;
+import app.packed.inject.Inject;
 import app.packed.inject.Injector;
+import app.packed.inject.ServiceHandle;
+import app.packed.inject.ServiceWirelets;
 
 /**
  *
@@ -42,6 +45,24 @@ import app.packed.inject.Injector;
 @State(Scope.Benchmark)
 public class InjectorMicro {
 
+    static final Injector INJECTOR = Injector.configure(c -> {
+        c.lookup(MethodHandles.lookup());
+        c.provide("foo");
+        c.provide(NeedsString.class).prototype();
+    });
+
+    static final Injector GENERATED_INJECTOR = Injector.configure(c -> {
+        c.lookup(MethodHandles.lookup());
+        c.provide("foo");
+        c.provide(NeedsString.class).prototype();
+    }, ServiceWirelets.generateDispatcher());
+
+    static final Services SERVICES = INJECTOR.bind(Services.class);
+
+    static final ServiceHandle<String> STRING_HANDLE = INJECTOR.handle(String.class);
+
+    static final ServiceHandle<NeedsString> NEEDS_STRING_HANDLE = INJECTOR.handle(NeedsString.class);
+
     @Benchmark
     public Injector emptyInjector() {
         return Injector.configure(c -> {});
@@ -71,6 +92,66 @@ public class InjectorMicro {
         });
     }
 
+    @Benchmark
+    public String singletonUse() {
+        return INJECTOR.use(String.class);
+    }
+
+    @Benchmark
+    public String singletonHandle() {
+        return STRING_HANDLE.get();
+    }
+
+    @Benchmark
+    public NeedsString prototypeUse() {
+        return INJECTOR.use(NeedsString.class);
+    }
+
+    @Benchmark
+    public NeedsString prototypeHandle() {
+        return NEEDS_STRING_HANDLE.get();
+    }
+
+    @Benchmark
+    public String singletonBind() {
+        return SERVICES.string();
+    }
+
+    @Benchmark
+    public NeedsString prototypeBind() {
+        return SERVICES.needsString();
+    }
+
+    @Benchmark
+    public NeedsInjection injectMembers() {
+        return INJECTOR.injectMembers(new NeedsInjection(), MethodHandles.lookup());
+    }
+
+    @Benchmark
+    public String singletonUseGenerated() {
+        return GENERATED_INJECTOR.use(String.class);
+    }
+
+    @Benchmark
+    public NeedsString prototypeUseGenerated() {
+        return GENERATED_INJECTOR.use(NeedsString.class);
+    }
+
+    public interface Services {
+        NeedsString needsString();
+
+        String string();
+    }
+
+    public static class NeedsInjection {
+
+        @Inject
+        String string;
+
+        @Inject
+        NeedsString needsString;
+    }
+
     public static class NeedsString {
         NeedsString(String s) {}
     }
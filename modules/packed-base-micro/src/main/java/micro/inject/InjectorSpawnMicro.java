@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package micro.inject;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.packed.inject.Injector;
+import app.packed.inject.InjectorTemplate;
+
+/**
+ * Compares spawning a per-request injector from a template, with configuring a new injector for each request.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class InjectorSpawnMicro {
+
+    static final Injector PARENT = Injector.configure(c -> {
+        c.lookup(MethodHandles.lookup());
+        c.provide("foo");
+        c.provide(NeedsString.class).prototype();
+    });
+
+    static final InjectorTemplate TEMPLATE = PARENT.template(Request.class, Response.class);
+
+    final Request request = new Request();
+
+    final Response response = new Response();
+
+    @Benchmark
+    public Injector spawn() {
+        return TEMPLATE.spawn(request, response);
+    }
+
+    @Benchmark
+    public Request spawnAndUseInput() {
+        return TEMPLATE.spawn(request, response).use(Request.class);
+    }
+
+    @Benchmark
+    public String spawnAndUseParentSingleton() {
+        return TEMPLATE.spawn(request, response).use(String.class);
+    }
+
+    @Benchmark
+    public NeedsString spawnAndUseParentPrototype() {
+        return TEMPLATE.spawn(request, response).use(NeedsString.class);
+    }
+
+    @Benchmark
+    public Request configureAndUseInput() {
+        return Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide("foo");
+            c.provide(NeedsString.class).prototype();
+            c.provide(request);
+            c.provide(response);
+        }).use(Request.class);
+    }
+
+    public static class NeedsString {
+        NeedsString(String s) {}
+    }
+
+    public static class Request {}
+
+    public static class Response {}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package micro.inject;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.packed.inject.Injector;
+
+/**
+ * Measures the time it takes for a number of threads to concurrently get a lazy service that has not yet been created.
+ * A new injector is created before every iteration, so each iteration starts with a cold service.
+ */
+@Warmup(iterations = 100)
+@Measurement(iterations = 500)
+@Fork(1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LazyServiceMicro {
+
+    Injector injector;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        injector = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(LazyService.class).lazy();
+        });
+    }
+
+    @Benchmark
+    @Threads(1)
+    public LazyService cold1() {
+        return injector.use(LazyService.class);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public LazyService cold2() {
+        return injector.use(LazyService.class);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public LazyService cold4() {
+        return injector.use(LazyService.class);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public LazyService cold8() {
+        return injector.use(LazyService.class);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public LazyService cold16() {
+        return injector.use(LazyService.class);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public LazyService cold32() {
+        return injector.use(LazyService.class);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public LazyService cold64() {
+        return injector.use(LazyService.class);
+    }
+
+    public static class LazyService {
+
+        public LazyService() {
+            // Simulate a service that takes a little while to create
+            long deadline = System.nanoTime() + 10_000;
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -30,6 +30,9 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 
+import packed.internal.invoke.InvokableMember;
+import packed.internal.util.descriptor.InternalMethodDescriptor;
+
 /**
  *
  */
@@ -45,12 +48,31 @@ public class MethodHandleMicro {
 
     static final Object o = new MethodHandleMicro();
 
+    /** A method handle for {@link #bar(String)}. */
+    static final MethodHandle BAR;
+
+    /** {@link #BAR} bound to {@link #o} and adapted to {@code (Object)Object}, as cached by ExecutableFunctionHandle. */
+    static final MethodHandle BAR_EXACT;
+
+    /** {@link #BAR_EXACT} adapted to {@code (Object[])Object}, as cached by ExecutableFunctionHandle. */
+    static final MethodHandle BAR_SPREADER;
+
+    static final Object[] ARGS = new Object[] { "foo" };
+
+    /** An ExecutableFunctionHandle for {@link #bar(String)} bound to {@link #o}. */
+    static final InvokableMember<?> BAR_FUNCTION;
+
     static {
         try {
             mh = MethodHandles.lookup().findVirtual(MethodHandleMicro.class, "foo", MethodType.methodType(void.class, String.class));
+            BAR = MethodHandles.lookup().findVirtual(MethodHandleMicro.class, "bar", MethodType.methodType(String.class, String.class));
+            BAR_FUNCTION = InternalMethodDescriptor.of(MethodHandleMicro.class.getMethod("bar", String.class)).newInvoker(MethodHandles.lookup())
+                    .withInstance(o);
         } catch (Exception e) {
             throw new Error(e);
         }
+        BAR_EXACT = BAR.bindTo(o).asFixedArity().asType(MethodType.genericMethodType(1));
+        BAR_SPREADER = BAR_EXACT.asSpreader(Object[].class, 1);
     }
 
     /** Takes around 80 ns. */
@@ -59,5 +81,33 @@ public class MethodHandleMicro {
         return mh.bindTo(o);
     }
 
+    /** What ExecutableFunctionHandle.invoke used to do on every invocation. */
+    @Benchmark
+    public Object bindAndInvokeWithArguments() throws Throwable {
+        return BAR.bindTo(o).asFixedArity().invokeWithArguments(ARGS);
+    }
+
+    /** What ExecutableFunctionHandle.invoke does now. */
+    @Benchmark
+    public Object cachedSpreaderInvokeExact() throws Throwable {
+        return (Object) BAR_SPREADER.invokeExact(ARGS);
+    }
+
+    /** What ExecutableFunctionHandle.invoke1 does. */
+    @Benchmark
+    public Object cachedInvokeExact() throws Throwable {
+        return (Object) BAR_EXACT.invokeExact((Object) "foo");
+    }
+
+    /** ExecutableFunctionHandle.invoke, which passes a single argument to invoke1. */
+    @Benchmark
+    public Object executableFunctionHandle() {
+        return BAR_FUNCTION.invoke(ARGS);
+    }
+
     public void foo(String s) {}
+
+    public String bar(String s) {
+        return s;
+    }
 }
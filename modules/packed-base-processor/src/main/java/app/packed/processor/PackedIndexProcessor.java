@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.processor;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * An annotation processor that writes an index of every class being compiled to {@code META-INF/packed/index}. At
+ * runtime the index is used instead of reflecting over the members of a class.
+ * <p>
+ * For every class the index contains:
+ * <ul>
+ * <li>Fields and methods with an annotation that is meta-annotated with {@code @ActivateExtension} (hooks).
+ * <li>Fields and methods annotated with {@code @Inject}.
+ * <li>The constructor or static method that {@code Factory.findInjectable} would select, if it can be determined
+ * unambiguously.
+ * </ul>
+ * Only members declared by the class itself are included. Superclasses may be compiled separately, or not at all with
+ * this processor. So at runtime the members of every superclass are read from the index of the superclass, or found by
+ * reflection if the superclass has not been indexed. The index is a UTF-8 text file with tab separated values:
+ * 
+ * <pre>
+ * # packed index 2
+ * C  class name
+ * H  declaring class  F|M  name  descriptor  annotation type     (hook)
+ * I  declaring class  F|M  name  descriptor  annotation type     (injectable member)
+ * X  declaring class  C|M  name  descriptor                      (injectable constructor or static method)
+ * </pre>
+ * 
+ * Where {@code H}, {@code I} and {@code X} lines belong to the closest preceding {@code C} line. All names are binary
+ * names, and descriptors are JVM descriptors.
+ */
+public final class PackedIndexProcessor extends AbstractProcessor {
+
+    /** The name of the annotation that activates extensions. */
+    private static final String ACTIVATE_EXTENSION = "app.packed.container.ActivateExtension";
+
+    /** The header of the index file. */
+    static final String HEADER = "# packed index 2";
+
+    /** The names of the inject annotations. */
+    private static final Set<String> INJECT = Set.of("app.packed.inject.Inject", "javax.inject.Inject");
+
+    /** The location of the index file. */
+    static final String LOCATION = "META-INF/packed/index";
+
+    /** The names of the optional types that cannot be returned from a static factory method. */
+    private static final Set<String> OPTIONALS = Set.of("java.util.Optional", "java.util.OptionalInt", "java.util.OptionalLong",
+            "java.util.OptionalDouble");
+
+    /** The index of every class seen so far, in order. Written when processing is over. */
+    private final LinkedHashMap<String, List<String>> index = new LinkedHashMap<>();
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of("*");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement e : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            indexType(e);
+        }
+        if (roundEnv.processingOver() && !index.isEmpty()) {
+            write();
+        }
+        return false;
+    }
+
+    private void indexType(TypeElement type) {
+        if (type.getKind() == ElementKind.CLASS) {
+            List<String> lines = new ArrayList<>();
+            lines.add("C\t" + binaryName(type));
+            List<String> injects = new ArrayList<>();
+            for (VariableElement f : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                indexMember(type, f, "F", descriptor(f.asType()), lines, injects);
+            }
+            for (ExecutableElement m : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                indexMember(type, m, "M", descriptor(m), lines, injects);
+            }
+            lines.addAll(injects);
+            // Constructors of inner classes takes the outer instance as an implicit first parameter
+            if (type.getNestingKind() == NestingKind.TOP_LEVEL || type.getModifiers().contains(Modifier.STATIC)) {
+                String x = injectable(type);
+                if (x != null) {
+                    lines.add(x);
+                }
+            }
+            index.put(binaryName(type), lines);
+        }
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            indexType(nested);
+        }
+    }
+
+    private void indexMember(TypeElement declaringClass, Element member, String kind, String descriptor, List<String> hooks, List<String> injects) {
+        for (AnnotationMirror am : member.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) am.getAnnotationType().asElement();
+            String suffix = "\t" + binaryName(declaringClass) + "\t" + kind + "\t" + member.getSimpleName() + "\t" + descriptor + "\t"
+                    + binaryName(annotationType);
+            if (INJECT.contains(annotationType.getQualifiedName().toString())) {
+                injects.add("I" + suffix);
+            } else if (isHook(annotationType)) {
+                hooks.add("H" + suffix);
+            }
+        }
+    }
+
+    /**
+     * Returns the injectable line of the specified type, or null if the constructor or static method could not be
+     * determined unambiguously. The logic mirrors that of {@code Factory.findInjectable}.
+     * 
+     * @param type
+     *            the type to find an injectable constructor or static method for
+     * @return the injectable line of the type, or null
+     */
+    private String injectable(TypeElement type) {
+        String declaringClass = binaryName(type);
+        ExecutableElement method = null;
+        for (ExecutableElement m : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (m.getModifiers().contains(Modifier.STATIC) && hasInject(m)) {
+                if (method != null) {
+                    return null; // Multiple static methods annotated with @Inject, fails at runtime
+                }
+                method = m;
+            }
+        }
+        if (method != null) {
+            TypeMirror r = method.getReturnType();
+            if (r.getKind() == TypeKind.VOID
+                    || (r.getKind() == TypeKind.DECLARED && OPTIONALS.contains(((TypeElement) ((DeclaredType) r).asElement()).getQualifiedName().toString()))) {
+                return null; // Invalid return type, fails at runtime
+            }
+            return "X\t" + declaringClass + "\tM\t" + method.getSimpleName() + "\t" + descriptor(method);
+        }
+
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        ExecutableElement constructor = null;
+        if (constructors.size() == 1) {
+            constructor = constructors.get(0);
+        } else {
+            int maxParameters = 0;
+            for (ExecutableElement c : constructors) {
+                maxParameters = Math.max(maxParameters, c.getParameters().size());
+                if (hasInject(c)) {
+                    if (constructor != null) {
+                        return null; // Multiple constructors annotated with @Inject, fails at runtime
+                    }
+                    constructor = c;
+                }
+            }
+            if (constructor == null) {
+                for (ExecutableElement c : constructors) {
+                    if (c.getParameters().size() == maxParameters) {
+                        if (constructor != null) {
+                            return null; // Multiple constructors with the maximum number of parameters, fails at runtime
+                        }
+                        constructor = c;
+                    }
+                }
+            }
+        }
+        return constructor == null ? null : "X\t" + declaringClass + "\tC\t<init>\t" + descriptor(constructor);
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private String descriptor(ExecutableElement e) {
+        StringBuilder sb = new StringBuilder("(");
+        for (VariableElement p : e.getParameters()) {
+            sb.append(descriptor(p.asType()));
+        }
+        return sb.append(')').append(descriptor(e.getReturnType())).toString();
+    }
+
+    private String descriptor(TypeMirror type) {
+        TypeMirror t = processingEnv.getTypeUtils().erasure(type);
+        switch (t.getKind()) {
+        case BOOLEAN:
+            return "Z";
+        case BYTE:
+            return "B";
+        case CHAR:
+            return "C";
+        case DOUBLE:
+            return "D";
+        case FLOAT:
+            return "F";
+        case INT:
+            return "I";
+        case LONG:
+            return "J";
+        case SHORT:
+            return "S";
+        case VOID:
+            return "V";
+        case ARRAY:
+            return "[" + descriptor(((ArrayType) t).getComponentType());
+        case DECLARED:
+            return "L" + binaryName((TypeElement) ((DeclaredType) t).asElement()).replace('.', '/') + ";";
+        default:
+            throw new IllegalArgumentException("Cannot create a descriptor for " + t);
+        }
+    }
+
+    private static boolean hasInject(Element e) {
+        for (AnnotationMirror am : e.getAnnotationMirrors()) {
+            if (INJECT.contains(((TypeElement) am.getAnnotationType().asElement()).getQualifiedName().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether or not the specified annotation type is meta-annotated with {@code @ActivateExtension}, and is
+     * visible at runtime.
+     * 
+     * @param annotationType
+     *            the annotation type
+     * @return whether or not the annotation type is a hook
+     */
+    private static boolean isHook(TypeElement annotationType) {
+        boolean activates = false;
+        boolean runtime = false;
+        for (AnnotationMirror am : annotationType.getAnnotationMirrors()) {
+            String name = ((TypeElement) am.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (name.equals(ACTIVATE_EXTENSION)) {
+                activates = true;
+            } else if (name.equals("java.lang.annotation.Retention")) {
+                for (AnnotationValue v : am.getElementValues().values()) {
+                    runtime = v.getValue().toString().equals(RetentionPolicy.RUNTIME.name());
+                }
+            }
+        }
+        return activates && runtime;
+    }
+
+    private void write() {
+        try {
+            FileObject fo = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", LOCATION);
+            try (Writer w = new OutputStreamWriter(fo.openOutputStream(), StandardCharsets.UTF_8)) {
+                w.write(HEADER);
+                w.write('\n');
+                for (List<String> lines : index.values()) {
+                    for (String line : lines) {
+                        w.write(line);
+                        w.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + LOCATION + ": " + e);
+        }
+    }
+}
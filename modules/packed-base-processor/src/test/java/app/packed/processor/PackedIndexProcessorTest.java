@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import app.packed.inject.Factory;
+import app.packed.inject.Injector;
+import packed.internal.componentcache.ComponentClassIndex;
+
+/** Tests {@link PackedIndexProcessor}, and that the index it generates is used at runtime. */
+public class PackedIndexProcessorTest {
+
+    /** A superclass that is compiled without the processor. */
+    private static final String BASE = "package p;\n" //
+            + "public class Base {\n" //
+            + "    @app.packed.inject.Inject public String base;\n" //
+            + "}\n";
+
+    /** A class that is compiled with the processor. */
+    private static final String SUB = "package p;\n" //
+            + "public class Sub extends Base {\n" //
+            + "    @app.packed.inject.Inject public Integer sub;\n" //
+            + "    public Sub() {}\n" //
+            + "    public Sub(String s) {}\n" //
+            + "    public static java.lang.invoke.MethodHandles.Lookup lookup() { return java.lang.invoke.MethodHandles.lookup(); }\n" //
+            + "}\n";
+
+    /** Tests that the index only contains the members declared by each class. */
+    @Test
+    public void index(@TempDir Path dir) throws IOException {
+        Path base = compile(dir.resolve("base"), Map.of("p/Base.java", BASE), null);
+        Path sub = compile(dir.resolve("sub"), Map.of("p/Sub.java", SUB), base, new PackedIndexProcessor());
+
+        assertThat(Files.exists(base.resolve(PackedIndexProcessor.LOCATION))).isFalse();
+        List<String> lines = Files.readAllLines(sub.resolve(PackedIndexProcessor.LOCATION));
+        assertThat(lines).containsExactly(PackedIndexProcessor.HEADER, //
+                "C\tp.Sub", //
+                "I\tp.Sub\tF\tsub\tLjava/lang/Integer;\tapp.packed.inject.Inject", //
+                "X\tp.Sub\tC\t<init>\t(Ljava/lang/String;)V");
+    }
+
+    /** Tests that the index is used at runtime, and that superclasses that are not indexed are found by reflection. */
+    @Test
+    public void runtime(@TempDir Path dir) throws Exception {
+        Path base = compile(dir.resolve("base"), Map.of("p/Base.java", BASE), null);
+        Path sub = compile(dir.resolve("sub"), Map.of("p/Sub.java", SUB), base, new PackedIndexProcessor());
+
+        try (URLClassLoader loader = loader(sub, base)) {
+            Class<?> subType = loader.loadClass("p.Sub");
+            Class<?> baseType = loader.loadClass("p.Base");
+            assertThat(ComponentClassIndex.injectable(subType)).isEqualTo(subType.getConstructor(String.class));
+            assertThat(ComponentClassIndex.declaredInjectableMembers(subType)).containsExactly(subType.getField("sub"));
+            assertThat(ComponentClassIndex.declaredInjectableMembers(baseType)).isNull();
+
+            Injector injector = Injector.configure(c -> {
+                c.provide("foo");
+                c.provide(123);
+            });
+            Object o = injector.injectMembers(subType.getConstructor().newInstance(), lookup(subType));
+            assertThat(subType.getField("sub").get(o)).isEqualTo(123);
+            assertThat(baseType.getField("base").get(o)).isEqualTo("foo");
+        }
+    }
+
+    /** Tests that {@link Factory#findInjectable(Class)} uses the constructor from the index, instead of looking for one. */
+    @Test
+    public void runtimeFactory(@TempDir Path dir) throws Exception {
+        Path base = compile(dir.resolve("base"), Map.of("p/Base.java", BASE), null);
+        Path sub = compile(dir.resolve("sub"), Map.of("p/Sub.java", SUB), base, new PackedIndexProcessor());
+
+        // Point the index at the no-argument constructor, which would never be chosen by reflection
+        Path index = sub.resolve(PackedIndexProcessor.LOCATION);
+        Files.writeString(index, Files.readString(index).replace("(Ljava/lang/String;)V", "()V"));
+
+        try (URLClassLoader loader = loader(sub, base)) {
+            Class<?> subType = loader.loadClass("p.Sub");
+            assertThat(Factory.findInjectable(subType).dependencies()).isEmpty();
+        }
+    }
+
+    private static Path compile(Path out, Map<String, String> sources, Path classPath, Processor... processors) throws IOException {
+        Path src = out.resolveSibling(out.getFileName() + "-src");
+        for (Map.Entry<String, String> e : sources.entrySet()) {
+            Path p = src.resolve(e.getKey());
+            Files.createDirectories(p.getParent());
+            Files.writeString(p, e.getValue());
+        }
+        Files.createDirectories(out);
+        String cp = System.getProperty("java.class.path") + (classPath == null ? "" : File.pathSeparator + classPath);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fm.getJavaFileObjectsFromPaths(sources.keySet().stream().map(src::resolve).collect(Collectors.toList()));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fm, null, List.of("-d", out.toString(), "-cp", cp), null, units);
+            task.setProcessors(List.of(processors));
+            assertThat(task.call()).isTrue();
+        }
+        return out;
+    }
+
+    private static URLClassLoader loader(Path... paths) throws IOException {
+        URL[] urls = new URL[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            urls[i] = paths[i].toUri().toURL();
+        }
+        return new URLClassLoader(urls, PackedIndexProcessorTest.class.getClassLoader());
+    }
+
+    private static MethodHandles.Lookup lookup(Class<?> type) throws ReflectiveOperationException {
+        return (MethodHandles.Lookup) type.getMethod("lookup").invoke(null);
+    }
+}
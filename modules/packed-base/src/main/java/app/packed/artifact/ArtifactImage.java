@@ -17,6 +17,8 @@ package app.packed.artifact;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Optional;
 
 import app.packed.component.ComponentStream;
@@ -26,7 +28,8 @@ import app.packed.container.BundleDescriptor;
 import app.packed.container.ContainerConfiguration;
 import app.packed.container.Wirelet;
 import app.packed.container.WireletList;
-import packed.internal.container.ComponentConfigurationToComponentAdaptor;
+import packed.internal.componentcache.ComponentClassSnapshot;
+import packed.internal.container.ArtifactInstantiationPlan;
 import packed.internal.container.ComponentNameWirelet;
 import packed.internal.container.ContainerSource;
 import packed.internal.container.NonInstantiatingArtifactDriver;
@@ -57,6 +60,9 @@ public final class ArtifactImage implements ArtifactSource {
     /** The configuration of the root container of the artifact. */
     private final PackedContainerConfiguration containerConfiguration;
 
+    /** A plan for instantiating artifacts from the configuration, shared between all images of the configuration. */
+    private final ArtifactInstantiationPlan plan;
+
     /** Additional wirelets. */
     private final WireletList wirelets;
 
@@ -67,7 +73,7 @@ public final class ArtifactImage implements ArtifactSource {
      *            the configuration this image will wrap
      */
     private ArtifactImage(PackedContainerConfiguration containerConfiguration) {
-        this(containerConfiguration, WireletList.of());
+        this(containerConfiguration, ArtifactInstantiationPlan.of(containerConfiguration), WireletList.of());
     }
 
     /**
@@ -75,11 +81,14 @@ public final class ArtifactImage implements ArtifactSource {
      * 
      * @param containerConfiguration
      *            the configuration this image will wrap
+     * @param plan
+     *            the plan for instantiating artifacts from the configuration
      * @param wirelets
      *            any wirelets for the image configuration or artifact instantionation
      */
-    private ArtifactImage(PackedContainerConfiguration containerConfiguration, WireletList wirelets) {
+    private ArtifactImage(PackedContainerConfiguration containerConfiguration, ArtifactInstantiationPlan plan, WireletList wirelets) {
         this.containerConfiguration = requireNonNull(containerConfiguration);
+        this.plan = requireNonNull(plan);
         this.wirelets = requireNonNull(wirelets);
     }
 
@@ -122,7 +131,24 @@ public final class ArtifactImage implements ArtifactSource {
     }
 
     <T> T newArtifact(ArtifactDriver<T> driver, Wirelet... wirelets) {
-        return driver.instantiate(containerConfiguration.doInstantiate(this.wirelets.plus(wirelets)));
+        return driver.instantiate(plan.instantiate(this.wirelets.plus(wirelets)));
+    }
+
+    /**
+     * Writes the hooks found on the component classes of this image to the specified file. Reading the file with
+     * {@link #readHookCache(Path)}, typically when the application is started the next time, avoids scanning the component
+     * classes for hooks.
+     * <p>
+     * The file only contains hooks, not this image. Images must still be created from their source, which includes
+     * configuring all of their bundles.
+     * 
+     * @param path
+     *            the file to write the hooks to
+     * @throws IOException
+     *             if the file could not be written
+     */
+    public void writeHookCache(Path path) throws IOException {
+        ComponentClassSnapshot.write(path, plan.componentClassDescriptors());
     }
 
     /**
@@ -139,12 +165,12 @@ public final class ArtifactImage implements ArtifactSource {
     }
 
     public ComponentStream stream() {
-        return new ComponentConfigurationToComponentAdaptor(containerConfiguration).stream();
+        return plan.stream();
     }
 
     public ArtifactImage with(Wirelet... wirelets) {
         WireletList wl = this.wirelets.plus(wirelets);
-        return wirelets.length == 0 ? this : new ArtifactImage(containerConfiguration, wl);
+        return wirelets.length == 0 ? this : new ArtifactImage(containerConfiguration, plan, wl);
     }
 
     /**
@@ -158,6 +184,20 @@ public final class ArtifactImage implements ArtifactSource {
         return with(Wirelet.name(name));
     }
 
+    /**
+     * Reads hooks written by {@link #writeHookCache(Path)}. Component classes in the file that have not already been
+     * scanned will use the hooks from the file instead of being scanned. Classes loaded from a jar file or directory that
+     * has changed since the file was written, or whose super classes were, are scanned as usual.
+     * 
+     * @param path
+     *            the file to read
+     * @throws IOException
+     *             if the file could not be read, or does not contain hooks written by {@link #writeHookCache(Path)}
+     */
+    public static void readHookCache(Path path) throws IOException {
+        ComponentClassSnapshot.read(path);
+    }
+
     /**
      * Creates a new image from the specified artifact source.
      *
@@ -23,7 +23,9 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import app.packed.container.Extension;
 import app.packed.feature.AFeature;
+import app.packed.feature.FeatureKey;
 
 /**
  * A specialization of the {@link Stream} interface that deals with streams of {@link Component components}. An instance
@@ -107,6 +109,68 @@ public interface ComponentStream extends Stream<Component> {
     // });
     // }
 
+    /**
+     * Returns a component stream consisting of the components of this stream whose {@link Component#depth() depth} is
+     * less than or equal to the specified depth.
+     * <p>
+     * For streams created by {@link Component#stream()}, this operation is fused with the traversal of the component tree.
+     * So subtrees below the specified depth are never visited.
+     * <p>
+     * This is an <em>intermediate operation</em>.
+     *
+     * @param maxDepth
+     *            the maximum depth of components to include
+     * @return the new stream
+     */
+    ComponentStream filterOnDepth(int maxDepth);
+
+    /**
+     * Returns a component stream consisting of the containers of this stream that use the specified extension.
+     * <p>
+     * For streams created by {@link Component#stream()}, this operation is answered from an index of the component tree
+     * that is built when the tree is created. So only matching containers are visited.
+     * <p>
+     * This is an <em>intermediate operation</em>.
+     *
+     * @param extensionType
+     *            the type of extension
+     * @return the new stream
+     */
+    ComponentStream filterOnExtension(Class<? extends Extension> extensionType);
+
+    /**
+     * Returns a component stream consisting of the components of this stream that had the specified feature set when they
+     * were configured.
+     * <p>
+     * For streams created by {@link Component#stream()}, this operation is answered from an index of the component tree
+     * that is built when the tree is created. So only matching components are visited. The {@link Component#features()
+     * features} of a component starts out with the features it had when it was configured. Features that are set on a
+     * component afterwards does not change the result of this operation.
+     * <p>
+     * This is an <em>intermediate operation</em>.
+     *
+     * @param key
+     *            the key of the feature
+     * @return the new stream
+     */
+    ComponentStream filterOnFeature(FeatureKey<?> key);
+
+    /**
+     * Returns a component stream consisting of the components of this stream whose type is assignable to the specified
+     * type. The type of a component is the type of its instance, or for containers the type of the bundle that defines
+     * the container.
+     * <p>
+     * For streams created by {@link Component#stream()}, this operation is answered from an index of the component tree
+     * that is built when the tree is created. So only matching components are visited.
+     * <p>
+     * This is an <em>intermediate operation</em>.
+     *
+     * @param type
+     *            the type of components to include
+     * @return the new stream
+     */
+    ComponentStream filterOnType(Class<?> type);
+
     default <A> Stream<A> feature(Class<A> faetures) {
         throw new UnsupportedOperationException();
     }
@@ -166,10 +230,18 @@ public interface ComponentStream extends Stream<Component> {
     @Override
     ComponentStream limit(long maxSize);
 
+    /** {@inheritDoc} */
+    @Override
+    ComponentStream parallel();
+
     /** {@inheritDoc} */
     @Override
     ComponentStream peek(Consumer<? super Component> action);
 
+    /** {@inheritDoc} */
+    @Override
+    ComponentStream sequential();
+
     /** {@inheritDoc} */
     @Override
     ComponentStream skip(long n);
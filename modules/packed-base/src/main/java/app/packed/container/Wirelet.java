@@ -19,8 +19,6 @@ import static java.util.Objects.requireNonNull;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.module.Configuration;
-import java.util.ArrayList;
-import java.util.List;
 
 import app.packed.artifact.ArtifactImage;
 import app.packed.inject.Injector;
@@ -115,17 +113,7 @@ public abstract class Wirelet {
 
     public final WireletList andThen(Wirelet... wirelets) {
         requireNonNull(wirelets, "wirelets is null");
-        ArrayList<Wirelet> l = new ArrayList<>();
-        if (this instanceof WireletList) {
-            l.addAll(List.of(((WireletList) this).wirelets));
-        } else {
-            l.add(this);
-        }
-        l.addAll(List.of(wirelets));
-        // System.err.println();
-        // System.err.println(this + " " + List.of(wirelets));
-        // System.err.println(l);
-        return WireletList.of(l.toArray(i -> new Wirelet[i]));
+        return WireletList.of(this).plus(wirelets);
     }
 
     // void verify();
@@ -17,46 +17,94 @@ package app.packed.container;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
 import app.packed.util.Nullable;
 
-/** An immutable list of wirelets. */
+/**
+ * An immutable list of wirelets.
+ * <p>
+ * Wirelet lists are persistent. Adding wirelets to a list creates a new list that only stores the added wirelets and a
+ * reference to the original list, so the wirelets of the original list are never copied.
+ * <p>
+ * Looking up the last wirelet of a particular type scans at most a few wirelets. Whenever more than a few wirelets have
+ * been added since the nearest indexed list, the new list is marked as indexed. An indexed list lazily creates an index
+ * that maps every type a wirelet in the list is an instance of, to the last such wirelet. The index is created from
+ * the index of the nearest indexed list it was created from, so adding a single wirelet to a large list never copies
+ * the index.
+ */
 public final class WireletList extends Wirelet implements Iterable<Wirelet> {
 
     /** An empty wirelet list. */
-    static final WireletList EMPTY = new WireletList();
+    static final WireletList EMPTY = new WireletList(null, new Wirelet[0]);
 
-    /** The wirelets we are wrapping. */
-    final Wirelet[] wirelets;
+    /** Lists with at most this number of wirelets are scanned instead of using an index. */
+    private static final int SCAN_THRESHOLD = 4;
 
-    private WireletList(Wirelet... wirelets) {
-        int size = wirelets.length;
-        for (int i = 0; i < wirelets.length; i++) {
-            Wirelet w = Objects.requireNonNull(wirelets[i]);
-            if (w instanceof WireletList) {
-                size += ((WireletList) w).wirelets.length - 1;
+    /** A cache of all classes and interfaces (except Object) that instances of a particular wirelet class are instances of. */
+    private static final ClassValue<Class<?>[]> TYPES = new ClassValue<>() {
+
+        @Override
+        protected Class<?>[] computeValue(Class<?> type) {
+            LinkedHashSet<Class<?>> result = new LinkedHashSet<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                result.add(c);
+                addInterfaces(c, result);
             }
+            return result.toArray(new Class<?>[0]);
         }
-        Wirelet[] tmp = new Wirelet[size];
-        int c = 0;
-        for (int i = 0; i < wirelets.length; i++) {
-            Wirelet w = wirelets[i];
-            if (w instanceof WireletList) {
-                WireletList wl = (WireletList) w;
-                for (int j = 0; j < wl.wirelets.length; j++) {
-                    tmp[c++] = wl.wirelets[j];
+
+        private void addInterfaces(Class<?> type, LinkedHashSet<Class<?>> result) {
+            for (Class<?> c : type.getInterfaces()) {
+                if (result.add(c)) {
+                    addInterfaces(c, result);
                 }
-            } else {
-                tmp[c++] = w;
             }
         }
-        // If wirelet instanceof WireletList -> Extract
-        this.wirelets = tmp;
+    };
+
+    /** The wirelets that were added to {@link #prefix} to create this list. */
+    private final Wirelet[] added;
+
+    /** A lazily created index from every type a wirelet in this list is an instance of, to the last such wirelet. */
+    @Nullable
+    private volatile Map<Class<?>, Wirelet> index;
+
+    /** Whether or not lookups on this list use {@link #index}. */
+    private final boolean indexed;
+
+    /** The list this list was created from, or null if this list was not created from another list. */
+    @Nullable
+    private final WireletList prefix;
+
+    /** The number of wirelets that must be scanned from this list before reaching an indexed list, or the first wirelet. */
+    private final int scanLength;
+
+    /** The total number of wirelets in this list. */
+    private final int size;
+
+    /**
+     * Creates a new wirelet list.
+     * 
+     * @param prefix
+     *            the list the wirelets are added to, or null
+     * @param added
+     *            the added wirelets, none of which are wirelet lists
+     */
+    private WireletList(@Nullable WireletList prefix, Wirelet[] added) {
+        this.prefix = prefix;
+        this.added = added;
+        this.size = (prefix == null ? 0 : prefix.size) + added.length;
+        int scan = added.length + (prefix == null || prefix.indexed ? 0 : prefix.scanLength);
+        this.indexed = scan > SCAN_THRESHOLD;
+        this.scanLength = indexed ? 0 : scan;
     }
 
     /**
@@ -69,14 +117,10 @@ public final class WireletList extends Wirelet implements Iterable<Wirelet> {
      * @param consumer
      *            the consumer of the wirelet
      */
-    @SuppressWarnings("unchecked")
     public <T extends Wirelet> void consumeLast(Class<T> wireletType, Consumer<? super T> consumer) {
-        for (int i = wirelets.length - 1; i >= 0; i--) {
-            Wirelet w = wirelets[i];
-            if (wireletType.isAssignableFrom(w.getClass())) {
-                consumer.accept((T) w);
-                return;
-            }
+        T w = findLastOrNull(wireletType);
+        if (w != null) {
+            consumer.accept(w);
         }
     }
 
@@ -90,26 +134,22 @@ public final class WireletList extends Wirelet implements Iterable<Wirelet> {
      *            the type of wirelet
      * @return the last
      */
-    @SuppressWarnings("unchecked")
     public <T extends Wirelet> Optional<T> findLast(Class<T> wireletType) {
-        requireNonNull(wireletType, "wireletType is null");
-        for (int i = wirelets.length - 1; i >= 0; i--) {
-            Wirelet w = wirelets[i];
-            if (wireletType.isAssignableFrom(w.getClass())) {
-                return (Optional<T>) Optional.of(w);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(findLastOrNull(wireletType));
     }
 
-    @SuppressWarnings("unchecked")
     @Nullable
     public <T extends Wirelet> T findLastOrNull(Class<T> wireletType) {
         requireNonNull(wireletType, "wireletType is null");
-        for (int i = wirelets.length - 1; i >= 0; i--) {
-            Wirelet w = wirelets[i];
-            if (wireletType.isAssignableFrom(w.getClass())) {
-                return (T) w;
+        for (WireletList l = this; l != null; l = l.prefix) {
+            if (l.indexed) {
+                return wireletType.cast(l.index().get(wireletType));
+            }
+            for (int i = l.added.length - 1; i >= 0; i--) {
+                Wirelet w = l.added[i];
+                if (wireletType.isInstance(w)) {
+                    return wireletType.cast(w);
+                }
             }
         }
         return null;
@@ -126,13 +166,12 @@ public final class WireletList extends Wirelet implements Iterable<Wirelet> {
      * @param action
      *            The action to be performed for each wirelet
      */
-    @SuppressWarnings("unchecked")
     public <T extends Wirelet> void forEach(Class<T> wireletType, Consumer<? super T> action) {
         requireNonNull(wireletType, "wireletType is null");
         requireNonNull(action, "action is null");
-        for (Wirelet w : wirelets) {
-            if (wireletType.isAssignableFrom(w.getClass())) {
-                action.accept((T) w);
+        for (Wirelet w : toArray()) {
+            if (wireletType.isInstance(w)) {
+                action.accept(wireletType.cast(w));
             }
         }
     }
@@ -141,19 +180,79 @@ public final class WireletList extends Wirelet implements Iterable<Wirelet> {
     @Override
     public void forEach(Consumer<? super Wirelet> action) {
         requireNonNull(action, "action is null");
-        for (Wirelet w : wirelets) {
+        for (Wirelet w : toArray()) {
             action.accept(w);
         }
     }
 
+    /**
+     * Returns the index of this list, creating it if needed. Must only be invoked on indexed lists.
+     * 
+     * @return the index of this list
+     */
+    private Map<Class<?>, Wirelet> index() {
+        Map<Class<?>, Wirelet> m = index;
+        if (m == null) {
+            // Find the nearest indexed list, and all the lists in between
+            ArrayList<WireletList> lists = new ArrayList<>();
+            WireletList l = this;
+            for (; l != null && (l == this || !l.indexed); l = l.prefix) {
+                lists.add(l);
+            }
+            IdentityHashMap<Class<?>, Wirelet> tmp = l == null ? new IdentityHashMap<>() : new IdentityHashMap<>(l.index());
+            for (int i = lists.size() - 1; i >= 0; i--) {
+                for (Wirelet w : lists.get(i).added) {
+                    for (Class<?> type : TYPES.get(w.getClass())) {
+                        tmp.put(type, w);
+                    }
+                }
+            }
+            // The map is never modified after it has been published
+            index = m = tmp;
+        }
+        return m;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Iterator<Wirelet> iterator() {
-        return List.of(wirelets).iterator();
+        return toList().iterator();
     }
 
+    /**
+     * Returns a new list containing all the wirelets of this list followed by the specified wirelets. This list is shared
+     * by the new list, not copied.
+     * 
+     * @param wirelets
+     *            the wirelets to add
+     * @return the new list
+     */
     public WireletList plus(Wirelet... wirelets) {
-        return andThen(wirelets);
+        requireNonNull(wirelets, "wirelets is null");
+        if (wirelets.length == 0) {
+            return this;
+        } else if (size == 0 && wirelets.length == 1 && wirelets[0] instanceof WireletList) {
+            return (WireletList) wirelets[0];
+        }
+        return new WireletList(size == 0 ? null : this, flatten(wirelets));
+    }
+
+    /**
+     * Returns an array of all the wirelets in this list, in order.
+     * 
+     * @return an array of all the wirelets in this list
+     */
+    private Wirelet[] toArray() {
+        if (prefix == null) {
+            return added; // never exposed, so safe to share
+        }
+        Wirelet[] result = new Wirelet[size];
+        int end = size;
+        for (WireletList l = this; l != null; l = l.prefix) {
+            end -= l.added.length;
+            System.arraycopy(l.added, 0, result, end, l.added.length);
+        }
+        return result;
     }
 
     /**
@@ -162,7 +261,7 @@ public final class WireletList extends Wirelet implements Iterable<Wirelet> {
      * @return a immutable list representation of all of the wirelets in this list
      */
     public List<Wirelet> toList() {
-        return List.of(wirelets);
+        return List.of(toArray());
     }
 
     /**
@@ -174,35 +273,44 @@ public final class WireletList extends Wirelet implements Iterable<Wirelet> {
      *            the type of wirelets to return a list for
      * @return a list of all wirelets of the specified type
      */
-    @SuppressWarnings("unchecked")
     public <T extends Wirelet> List<T> toList(Class<T> wireletType) {
         requireNonNull(wireletType, "wireletType is null");
-        for (int i = 0; i < wirelets.length; i++) {
-            Wirelet w = wirelets[i];
-            if (wireletType.isAssignableFrom(w.getClass())) {
-                for (int j = i; j < wirelets.length; j++) {
-                    System.out.println(j);
-                }
-                // only found one...
-                return (List<T>) List.of(w);
-            }
-        }
-        return List.of();
+        ArrayList<T> result = new ArrayList<>();
+        forEach(wireletType, result::add);
+        return List.copyOf(result);
     }
 
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
-        if (wirelets.length > 0) {
-            sb.append(wirelets[0]);
-            for (int i = 1; i < wirelets.length; i++) {
-                sb.append(", ").append(wirelets[i]);
+        return toList().toString();
+    }
+
+    /**
+     * Returns the specified wirelets with any wirelet lists replaced by their wirelets.
+     * 
+     * @param wirelets
+     *            the wirelets to flatten
+     * @return the flattened wirelets
+     */
+    private static Wirelet[] flatten(Wirelet[] wirelets) {
+        int size = 0;
+        for (Wirelet w : wirelets) {
+            requireNonNull(w, "wirelets contains a null");
+            size += w instanceof WireletList ? ((WireletList) w).size : 1;
+        }
+        Wirelet[] result = new Wirelet[size];
+        int c = 0;
+        for (Wirelet w : wirelets) {
+            if (w instanceof WireletList) {
+                Wirelet[] a = ((WireletList) w).toArray();
+                System.arraycopy(a, 0, result, c, a.length);
+                c += a.length;
+            } else {
+                result[c++] = w;
             }
         }
-        sb.append("]");
-        return sb.toString();
+        return result;
     }
 
     /**
@@ -228,14 +336,11 @@ public final class WireletList extends Wirelet implements Iterable<Wirelet> {
         if (wirelet instanceof WireletList) {
             return (WireletList) wirelet;
         }
-        return new WireletList(wirelet); // we might provide optimized versions in the future
+        return new WireletList(null, new Wirelet[] { wirelet });
     }
 
     public static WireletList of(Wirelet... wirelets) {
         requireNonNull(wirelets, "wirelets is null");
-        if (wirelets.length == 0) {
-            return EMPTY;
-        }
-        return new WireletList(wirelets);
+        return EMPTY.plus(wirelets);
     }
 }
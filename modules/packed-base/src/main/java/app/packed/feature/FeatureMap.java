@@ -24,7 +24,9 @@ import java.util.Set;
  *
  */
 public final class FeatureMap {
-    private final IdentityHashMap<FeatureKey<?>, Object> features = new IdentityHashMap<>();
+
+    /** The features. A map is created for every component, most of which have at most a couple of features. */
+    private final IdentityHashMap<FeatureKey<?>, Object> features = new IdentityHashMap<>(2);
 
     @SuppressWarnings("unchecked")
     public <T> T get(FeatureKey<T> key) {
@@ -20,6 +20,7 @@ import static packed.internal.util.StringFormatter.format;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
@@ -35,6 +36,7 @@ import app.packed.util.IllegalAccessRuntimeException;
 import app.packed.util.InvalidDeclarationException;
 import app.packed.util.Key;
 import app.packed.util.TypeLiteral;
+import packed.internal.componentcache.ComponentClassIndex;
 import packed.internal.inject.JavaXInjectSupport;
 import packed.internal.inject.util.InternalDependencyDescriptor;
 import packed.internal.invoke.ExecutableFunctionHandle;
@@ -407,14 +409,22 @@ final class FactoryFindInjectableExecutable {
             throw new IllegalArgumentException("The specified type (" + format(type) + ") is an annotation");
         }
 
+        // Use the index generated at compile time if available
+        Executable indexed = ComponentClassIndex.injectable(type);
+        if (indexed instanceof Constructor) {
+            return InternalConstructorDescriptor.of((Constructor<?>) indexed);
+        }
+
         // Try to find a single static method annotated with @Inject
-        Method method = null;
-        for (Method m : type.getDeclaredMethods()) {
-            if (Modifier.isStatic(m.getModifiers()) && JavaXInjectSupport.isInjectAnnotationPresent(m)) {
-                if (method != null) {
-                    throw new IllegalArgumentException("There are multiple static methods annotated with @Inject on " + format(type));
+        Method method = (Method) indexed;
+        if (method == null) {
+            for (Method m : type.getDeclaredMethods()) {
+                if (Modifier.isStatic(m.getModifiers()) && JavaXInjectSupport.isInjectAnnotationPresent(m)) {
+                    if (method != null) {
+                        throw new IllegalArgumentException("There are multiple static methods annotated with @Inject on " + format(type));
+                    }
+                    method = m;
                 }
-                method = m;
             }
         }
 
@@ -29,6 +29,7 @@ import app.packed.artifact.ArtifactSource;
 import app.packed.component.ComponentConfiguration;
 import app.packed.config.ConfigSite;
 import app.packed.container.Wirelet;
+import app.packed.util.InvalidDeclarationException;
 import app.packed.util.Key;
 
 /**
@@ -101,6 +102,40 @@ import app.packed.util.Key;
 // But if, for example, a component has its own injector. That injector does not have a container behind it.
 public interface Injector {
 
+    /**
+     * Returns an implementation of the specified interface, where every abstract method returns a service from this
+     * injector. The key of each service is determined by the return type of the method and any qualifier present on the
+     * method. For example, given
+     * 
+     * <pre>{@code
+     * interface Services {
+     *     OrderRepository orders();
+     *
+     *     Clock clock();
+     * }}
+     * </pre>
+     * 
+     * invoking {@code injector.bind(Services.class).orders()} is equivalent to invoking
+     * {@code injector.use(OrderRepository.class)}. But all services are resolved once, when this method is invoked. So the
+     * methods of the returned object do not perform any lookups.
+     * <p>
+     * The implementation is generated the first time an interface is bound, and defined in the same package as the
+     * interface. If the interface is located in a named module, the package must be open to this module.
+     * 
+     * @param <T>
+     *            the type of interface
+     * @param type
+     *            the interface to implement
+     * @return an implementation of the interface
+     * @throws IllegalArgumentException
+     *             if the specified type is not an interface, or if its package is not open to this module
+     * @throws InvalidDeclarationException
+     *             if any abstract method of the interface has parameters or does not return a valid service key
+     * @throws UnsupportedOperationException
+     *             if this injector does not provide a service for every method
+     */
+    <T> T bind(Class<T> type);
+
     /**
      * Returns the configuration site of this injector.
      * 
@@ -156,6 +191,38 @@ public interface Injector {
         return services().filter(d -> d.key().equals(key)).findFirst();
     }
 
+    /**
+     * Returns a handle for the service with the specified key. The service is resolved once, after which the handle can
+     * be used to acquire service instances without any further lookups.
+     * 
+     * @param <T>
+     *            the type of service the handle provides
+     * @param key
+     *            the key of the service
+     * @return a handle for the service
+     * @throws UnsupportedOperationException
+     *             if no service with the specified key exist
+     * @see #handle(Key)
+     */
+    default <T> ServiceHandle<T> handle(Class<T> key) {
+        return handle(Key.of(requireNonNull(key, "key is null")));
+    }
+
+    /**
+     * Returns a handle for the service with the specified key. The service is resolved once, after which the handle can
+     * be used to acquire service instances without any further lookups.
+     * 
+     * @param <T>
+     *            the type of service the handle provides
+     * @param key
+     *            the key of the service
+     * @return a handle for the service
+     * @throws UnsupportedOperationException
+     *             if no service with the specified key exist
+     * @see #handle(Class)
+     */
+    <T> ServiceHandle<T> handle(Key<T> key);
+
     /**
      * Returns true if a service matching the specified type exists. Otherwise false.
      *
@@ -203,6 +270,41 @@ public interface Injector {
      */
     Stream<ServiceDescriptor> services();
 
+    /**
+     * Returns a template for spawning child injectors that provides a value for each of the specified classes, in addition
+     * to all services of this injector.
+     * <p>
+     * Invoking this method is equivalent to invoking {@code template(Key.of(input1), Key.of(input2), ...)}.
+     * 
+     * @param inputs
+     *            the classes of the per-child input values
+     * @return a new template
+     * @throws IllegalArgumentException
+     *             if the same class is specified more than once
+     * @see #template(Key...)
+     */
+    default InjectorTemplate template(Class<?>... inputs) {
+        requireNonNull(inputs, "inputs is null");
+        Key<?>[] keys = new Key<?>[inputs.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Key.of(requireNonNull(inputs[i], "inputs[" + i + "] is null"));
+        }
+        return template(keys);
+    }
+
+    /**
+     * Returns a template for spawning child injectors that provides a value for each of the specified keys, in addition to
+     * all services of this injector.
+     * 
+     * @param inputs
+     *            the keys of the per-child input values
+     * @return a new template
+     * @throws IllegalArgumentException
+     *             if the same key is specified more than once
+     * @see InjectorTemplate
+     */
+    InjectorTemplate template(Key<?>... inputs);
+
     /**
      * Returns a service of the specified type. Or throws an {@link UnsupportedOperationException} if this injector does not
      * provide a service with the specified key. The semantics method is identical to {@link #get(Class)} except that an
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.inject;
+
+import java.util.List;
+
+import app.packed.util.Key;
+
+/**
+ * A template for spawning lightweight child injectors of an existing injector. The template declares a number of input
+ * keys, typically per-request objects such as a request and a response. Each spawned injector provides the values that
+ * was bound to these keys, on top of all the services of the injector the template was created from.
+ * <p>
+ * Spawning an injector does not configure or analyze anything. The services of the parent injector are shared by all
+ * spawned injectors, and cannot depend on any of the input keys. Input values shadow services in the parent injector
+ * with the same key.
+ * 
+ * <pre>{@code
+ * InjectorTemplate template = injector.template(Request.class, Response.class);
+ * ...
+ * Injector requestInjector = template.spawn(request, response);
+ * }</pre>
+ * <p>
+ * Templates are safe to use by multiple concurrent threads.
+ * 
+ * @see Injector#template(Class...)
+ * @see Injector#template(Key...)
+ */
+public interface InjectorTemplate {
+
+    /**
+     * Returns an immutable list of the input keys of this template, in the order values must be specified to
+     * {@link #spawn(Object...)}.
+     * 
+     * @return an immutable list of the input keys of this template
+     */
+    List<Key<?>> inputs();
+
+    /**
+     * Returns the injector this template was created from.
+     * 
+     * @return the injector this template was created from
+     */
+    Injector parent();
+
+    /**
+     * Spawns a new injector, binding the specified values to the input keys of this template.
+     * 
+     * @param values
+     *            the values to bind, in the same order as the keys returned by {@link #inputs()}
+     * @return the new injector
+     * @throws NullPointerException
+     *             if any of the values are null
+     * @throws IllegalArgumentException
+     *             if the number of values does not match the number of input keys, or if a value is not an instance of
+     *             the raw type of its key
+     */
+    Injector spawn(Object... values);
+}
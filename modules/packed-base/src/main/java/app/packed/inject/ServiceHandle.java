@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.inject;
+
+import app.packed.util.Key;
+
+/**
+ * A handle to a service that has already been resolved by an injector. Unlike {@link Injector#use(Key)}, invoking
+ * {@link #get()} does not need to lookup the service every time it is called. Handles are typically acquired once, via
+ * {@link Injector#handle(Class)} or {@link Injector#handle(Key)}, and then used repeatedly.
+ * <p>
+ * Service handles are safe to use by multiple concurrent threads.
+ */
+public interface ServiceHandle<T> {
+
+    /**
+     * Returns an instance of the service. Depending on the {@link InstantiationMode} of the service, this is either the
+     * same instance every time, or a new instance.
+     * 
+     * @return an instance of the service
+     */
+    T get();
+
+    /**
+     * Returns the key of the service.
+     * 
+     * @return the key of the service
+     */
+    Key<T> key();
+}
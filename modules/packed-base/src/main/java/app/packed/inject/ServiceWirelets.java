@@ -17,10 +17,14 @@ package app.packed.inject;
 
 import static java.util.Objects.requireNonNull;
 
+import java.time.Duration;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 import app.packed.container.Wirelet;
 import app.packed.util.Key;
+import packed.internal.inject.buildtime.GenerateDispatcherWirelet;
+import packed.internal.inject.buildtime.ParallelInstantiationWirelet;
 
 /**
  * Various wirelets that can be used to transform and filter services being pull and pushed into containers.
@@ -37,6 +41,54 @@ public final class ServiceWirelets {
     // restrict optional services going in (some contract????) Bare besvaereligt at lave negative contracter.
     // Med mindre vi arbejder med commotative, associative osv. kontrakter...
 
+    /**
+     * Returns a wirelet that, when the injector is created, generates a class that dispatches requests for services by
+     * their class directly to the service. Singletons are held in final fields, lazy services in fields that are populated
+     * the first time they are requested, and prototypes are created without a lookup of the service or any of its
+     * dependencies.
+     * <p>
+     * Generating the class takes time and memory. So this is only worth it for long-lived injectors that are used heavily.
+     * Injectors with the same layout of services share a single class, which is unloaded once no injector uses it. The
+     * class is only generated for injectors with at most a few hundred services, so its lookup method stays small enough
+     * to be compiled by the JIT compiler. Larger injectors, and injectors created on Java versions before 15, which cannot
+     * unload generated classes, ignore this wirelet.
+     * 
+     * @return a wirelet that generates a class for dispatching service requests
+     */
+    public static Wirelet generateDispatcher() {
+        return GenerateDispatcherWirelet.INSTANCE;
+    }
+
+    /**
+     * Returns a wirelet that, when the injector is created, instantiates singletons in parallel. Singletons are grouped
+     * by the length of their longest chain of dependencies. All singletons in a group are independent of each other, and
+     * are created in parallel before moving on to the next group.
+     * <p>
+     * This is only worth it if some of the singletons are expensive to create. For example, if they read configuration
+     * files or open connections.
+     * 
+     * @return a wirelet that instantiates singletons in parallel
+     * @see #parallelInstantiation(BiConsumer)
+     */
+    public static Wirelet parallelInstantiation() {
+        return ParallelInstantiationWirelet.INSTANCE;
+    }
+
+    /**
+     * Returns a wirelet that, when the injector is created, instantiates singletons in parallel. And notifies the
+     * specified listener with the time it took to create each singleton. The listener is invoked by the thread that
+     * creates the injector, once every singleton in a group has been created.
+     * 
+     * @param listener
+     *            the listener that is notified with the time it took to create each singleton
+     * @return a wirelet that instantiates singletons in parallel
+     * @see #parallelInstantiation()
+     */
+    public static Wirelet parallelInstantiation(BiConsumer<? super ServiceDescriptor, ? super Duration> listener) {
+        requireNonNull(listener, "listener is null");
+        return new ParallelInstantiationWirelet(listener);
+    }
+
     /**
      * @param <T>
      * @param factory
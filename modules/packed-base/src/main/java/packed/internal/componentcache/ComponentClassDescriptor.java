@@ -20,13 +20,16 @@ import static java.util.Objects.requireNonNull;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import app.packed.artifact.ArtifactInstantiationContext;
 import app.packed.component.ComponentConfiguration;
 import app.packed.container.ActivateExtension;
 import app.packed.container.Extension;
+import packed.internal.componentcache.ComponentClassSnapshot.Hook;
 import packed.internal.container.PackedContainerConfiguration;
 import packed.internal.hook.ExtensionHookPerComponentGroup;
 import packed.internal.hook.ExtensionHookPerComponentGroup.MethodConsumer;
@@ -36,11 +39,20 @@ import packed.internal.hook.ExtensionHookPerComponentGroup.MethodConsumer;
  */
 public final class ComponentClassDescriptor {
 
+    /** An empty array of extension groups, shared by all component types without hooks. */
+    private static final ExtensionHookPerComponentGroup[] NO_GROUPS = new ExtensionHookPerComponentGroup[0];
+
     /** The component type. */
     private final Class<?> componentType;
 
     private final ExtensionHookPerComponentGroup[] extensionGroups;
 
+    /** All hooks of the component type, in the order they where found. */
+    final List<Hook> hooks;
+
+    /** The method consumers of all extension groups, in the order they should be prepared. */
+    private final List<MethodConsumer<?>> methodConsumers;
+
     /** The simple name of the component type. */
     private volatile String simpleName;
 
@@ -52,7 +64,16 @@ public final class ComponentClassDescriptor {
      */
     private ComponentClassDescriptor(ComponentClassDescriptor.Builder builder) {
         this.componentType = requireNonNull(builder.componentType);
-        this.extensionGroups = builder.extensionBuilders.values().stream().map(e -> e.build()).toArray(i -> new ExtensionHookPerComponentGroup[i]);
+        if (builder.hooks.isEmpty()) {
+            // The common case, components without any hooks share all contents
+            this.hooks = List.of();
+            this.extensionGroups = NO_GROUPS;
+            this.methodConsumers = List.of();
+        } else {
+            this.hooks = List.copyOf(builder.hooks);
+            this.extensionGroups = builder.extensionBuilders.values().stream().map(e -> e.build()).toArray(i -> new ExtensionHookPerComponentGroup[i]);
+            this.methodConsumers = Stream.of(extensionGroups).flatMap(e -> e.methodConsumers.stream()).collect(Collectors.toUnmodifiableList());
+        }
     }
 
     /**
@@ -75,13 +96,13 @@ public final class ComponentClassDescriptor {
         return componentConfiguration;
     }
 
-    @SuppressWarnings("rawtypes")
-    public void process(PackedContainerConfiguration cc, ArtifactInstantiationContext ic) {
-        for (ExtensionHookPerComponentGroup d : extensionGroups) {
-            for (MethodConsumer mc : d.methodConsumers) {
-                mc.prepare(cc, ic);
-            }
-        }
+    /**
+     * Returns the method consumers that must be prepared every time a component of this type is instantiated.
+     * 
+     * @return the method consumers of the component type
+     */
+    public List<MethodConsumer<?>> methodConsumers() {
+        return methodConsumers;
     }
 
     public void print() {
@@ -110,12 +131,50 @@ public final class ComponentClassDescriptor {
             }
         };
 
+        /** An empty array of hooks, shared by all classes that do not declare any hooks. */
+        private static final Hook[] NO_HOOKS = new Hook[0];
+
+        /**
+         * A cache of the hooks declared by a single class, not including any super classes. So a super class is only scanned
+         * once no matter how many component types extends it. Classes that have been indexed at compile time are not scanned.
+         */
+        private static final ClassValue<Hook[]> DECLARED_HOOKS = new ClassValue<>() {
+
+            @Override
+            protected Hook[] computeValue(Class<?> type) {
+                List<Hook> indexed = ComponentClassIndex.declaredHooks(type);
+                if (indexed != null && indexed.stream().allMatch(h -> EXTENSION_ACTIVATORS.get(h.annotation.annotationType()) != null)) {
+                    return indexed.toArray(NO_HOOKS);
+                }
+                ArrayList<Hook> hooks = null;
+                for (Field field : type.getDeclaredFields()) {
+                    for (Annotation a : field.getAnnotations()) {
+                        if (EXTENSION_ACTIVATORS.get(a.annotationType()) != null) {
+                            (hooks == null ? hooks = new ArrayList<>() : hooks).add(new Hook(field, a));
+                        }
+                    }
+                }
+                for (Method method : type.getDeclaredMethods()) {
+                    for (Annotation a : method.getAnnotations()) {
+                        if (EXTENSION_ACTIVATORS.get(a.annotationType()) != null) {
+                            (hooks == null ? hooks = new ArrayList<>() : hooks).add(new Hook(method, a));
+                        }
+                    }
+                }
+                // TODO default methods
+                return hooks == null ? NO_HOOKS : hooks.toArray(NO_HOOKS);
+            }
+        };
+
         /** The component type. */
         private final Class<?> componentType;
 
         /** A map of builders for every activated extension. */
         private final IdentityHashMap<Class<? extends Extension>, ExtensionHookPerComponentGroup.Builder> extensionBuilders = new IdentityHashMap<>();
 
+        /** All hooks of the component type. */
+        private final ArrayList<Hook> hooks = new ArrayList<>();
+
         /** A lookup object for the component. */
         private final ComponentLookup lookup;
 
@@ -134,35 +193,49 @@ public final class ComponentClassDescriptor {
          * @return a new descriptor
          */
         ComponentClassDescriptor build() {
-            for (Class<?> c = componentType; c != Object.class; c = c.getSuperclass()) {
-
-                for (Field field : c.getDeclaredFields()) {
-                    for (Annotation a : field.getAnnotations()) {
-                        Class<? extends Extension>[] cc = EXTENSION_ACTIVATORS.get(a.annotationType());
-                        if (cc != null) {
-                            for (Class<? extends Extension> ccc : cc) {
-                                extensionBuilders
-                                        .computeIfAbsent(ccc, extensionType -> new ExtensionHookPerComponentGroup.Builder(componentType, extensionType, lookup))
-                                        .onAnnotatedField(field, a);
-                            }
-                        }
+            // Use the hooks from a snapshot if available, so we do not need to scan the class.
+            List<Hook> snapshot = ComponentClassSnapshot.find(componentType);
+            if (snapshot != null && snapshot.stream().anyMatch(h -> EXTENSION_ACTIVATORS.get(h.annotation.annotationType()) == null)) {
+                snapshot = null; // The annotation no longer activates any extensions
+            }
+            if (snapshot == null) {
+                for (Class<?> c = componentType; !isPlatformClass(c); c = c.getSuperclass()) {
+                    for (Hook h : DECLARED_HOOKS.get(c)) {
+                        hooks.add(h);
                     }
                 }
-                for (Method method : c.getDeclaredMethods()) {
-                    for (Annotation a : method.getAnnotations()) {
-                        Class<? extends Extension> cc[] = EXTENSION_ACTIVATORS.get(a.annotationType());
-                        if (cc != null) {
-                            for (Class<? extends Extension> ccc : cc) {
-                                extensionBuilders
-                                        .computeIfAbsent(ccc, extensionType -> new ExtensionHookPerComponentGroup.Builder(componentType, extensionType, lookup))
-                                        .onAnnotatedMethod(method, a);
-                            }
-                        }
+            } else {
+                hooks.addAll(snapshot);
+            }
+
+            for (Hook h : hooks) {
+                for (Class<? extends Extension> extensionType : EXTENSION_ACTIVATORS.get(h.annotation.annotationType())) {
+                    ExtensionHookPerComponentGroup.Builder b = extensionBuilders.computeIfAbsent(extensionType,
+                            e -> new ExtensionHookPerComponentGroup.Builder(componentType, e, lookup));
+                    if (h.member instanceof Field) {
+                        b.onAnnotatedField((Field) h.member, h.annotation);
+                    } else {
+                        b.onAnnotatedMethod((Method) h.member, h.annotation);
                     }
                 }
-                // TODO default methods
             }
             return new ComponentClassDescriptor(this);
         }
+
+        /**
+         * Returns whether or not the specified class is null or defined by the boot or platform class loader. Such classes never
+         * declare any hooks, so we can stop scanning when we reach one.
+         * 
+         * @param c
+         *            the class to test
+         * @return whether or not the specified class is a platform class
+         */
+        static boolean isPlatformClass(Class<?> c) {
+            if (c == null) {
+                return true;
+            }
+            ClassLoader cl = c.getClassLoader();
+            return cl == null || cl == ClassLoader.getPlatformClassLoader();
+        }
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.componentcache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Member;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import app.packed.util.Nullable;
+import packed.internal.componentcache.ComponentClassSnapshot.Hook;
+
+/**
+ * Provides access to the indexes generated at compile time by the {@code app.packed.processor.PackedIndexProcessor}
+ * annotation processor. The indexes are read from {@code META-INF/packed/index} resources the first time a class from a
+ * particular class loader is looked up.
+ * <p>
+ * The index of a class only contains the members declared by the class itself. Callers must look up every superclass
+ * separately. Every method returns null if the class has not been indexed, or if the index does not match the class. In
+ * which case the caller should fall back to reflection for that class.
+ */
+public final class ComponentClassIndex {
+
+    /** The header that the index file must start with. */
+    private static final String HEADER = "# packed index 2";
+
+    /** All indexed classes by the class loader of the class, and then by the name of the class. */
+    private static final WeakHashMap<ClassLoader, Map<String, Entry>> LOADERS = new WeakHashMap<>();
+
+    /** The location of the index file. */
+    private static final String LOCATION = "META-INF/packed/index";
+
+    /** Cannot instantiate. */
+    private ComponentClassIndex() {}
+
+    /**
+     * Returns the hooks declared by the specified type, or null if the type has not been indexed, or if any of the hooks
+     * could not be resolved.
+     * 
+     * @param type
+     *            the type
+     * @return the hooks declared by the type, or null
+     */
+    @Nullable
+    static List<Hook> declaredHooks(Class<?> type) {
+        Entry e = find(type);
+        return e == null ? null : ComponentClassSnapshot.resolve(type, e.hooks);
+    }
+
+    /**
+     * Returns the constructor or static method that should be used for creating instances of the specified type, or null
+     * if the type has not been indexed, or if it could not be determined at compile time.
+     * 
+     * @param type
+     *            the type
+     * @return the constructor or static method, or null
+     */
+    @Nullable
+    public static Executable injectable(Class<?> type) {
+        Entry e = find(type);
+        if (e == null || e.injectable == null) {
+            return null;
+        }
+        Hook h = e.injectable.resolve(type);
+        return h == null ? null : (Executable) h.member;
+    }
+
+    /**
+     * Returns all fields and methods declared by the specified type that are annotated with {@code @Inject}, or null if
+     * the type has not been indexed.
+     * 
+     * @param type
+     *            the type
+     * @return all injectable fields and methods declared by the type, or null
+     */
+    @Nullable
+    public static List<Member> declaredInjectableMembers(Class<?> type) {
+        Entry e = find(type);
+        if (e == null) {
+            return null;
+        }
+        List<Hook> hooks = ComponentClassSnapshot.resolve(type, e.injects);
+        if (hooks == null) {
+            return null;
+        }
+        ArrayList<Member> result = new ArrayList<>(hooks.size());
+        for (Hook h : hooks) {
+            result.add((Member) h.member);
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Entry find(Class<?> type) {
+        ClassLoader cl = type.getClassLoader();
+        if (cl == null) {
+            return null; // Classes in the bootstrap loader are never indexed
+        }
+        Map<String, Entry> m;
+        synchronized (LOADERS) {
+            m = LOADERS.get(cl);
+            if (m == null) {
+                LOADERS.put(cl, m = read(cl));
+            }
+        }
+        return m.get(type.getName());
+    }
+
+    private static Map<String, Entry> read(ClassLoader cl) {
+        HashMap<String, Entry> result = new HashMap<>();
+        try {
+            Enumeration<URL> urls = cl.getResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    if (!HEADER.equals(r.readLine())) {
+                        continue; // Unknown version, ignore
+                    }
+                    Entry e = null;
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        String[] s = line.split("\t");
+                        if (s[0].equals("C")) {
+                            result.put(s[1], e = new Entry());
+                        } else if (e != null && s[0].equals("X")) {
+                            e.injectable = new Hook(s[2].equals("C") ? ComponentClassSnapshot.CONSTRUCTOR : ComponentClassSnapshot.METHOD, s[1], s[3], s[4], "");
+                        } else if (e != null && (s[0].equals("H") || s[0].equals("I"))) {
+                            Hook h = new Hook(s[2].equals("F") ? ComponentClassSnapshot.FIELD : ComponentClassSnapshot.METHOD, s[1], s[3], s[4], s[5]);
+                            (s[0].equals("H") ? e.hookList : e.injectList).add(h);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + LOCATION, e);
+        }
+        for (Entry e : result.values()) {
+            e.hooks = e.hookList.toArray(new Hook[0]);
+            e.injects = e.injectList.toArray(new Hook[0]);
+            e.hookList = e.injectList = null;
+        }
+        return result;
+    }
+
+    /** The index of a single class. */
+    private static final class Entry {
+
+        /** The hooks of the class. */
+        private Hook[] hooks;
+
+        /** Used while reading the index. */
+        private ArrayList<Hook> hookList = new ArrayList<>(), injectList = new ArrayList<>();
+
+        /** The constructor or static method to use for creating instances, or null if it could not be determined. */
+        @Nullable
+        private Hook injectable;
+
+        /** Fields and methods annotated with inject. */
+        private Hook[] injects;
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.componentcache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import app.packed.util.Nullable;
+import packed.internal.thirdparty.asm.Type;
+
+/**
+ * A snapshot of the hooks found on component classes. Written from the component classes of an image, and read back at
+ * startup so component classes do not have to be scanned for hooks again. The image itself is not part of the
+ * snapshot.
+ * <p>
+ * For every component class the snapshot contains the annotated fields and methods that activates an extension. Members
+ * are stored by their declaring class, name and descriptor, and resolved by name when read. Classes with no hooks are
+ * also stored, they do not need to be scanned at all.
+ * <p>
+ * The header of the snapshot contains every code source (jar file or directory) that the component classes, and the
+ * super classes that are scanned for hooks, were loaded from. Together with the size and last modified time of the
+ * code source when the snapshot was written. For a directory the size is the total size of all files in the directory,
+ * and the last modified time is the latest time any of the files was modified. Every class references the code sources
+ * of the classes in its hierarchy. A code source is validated the first time a class loaded from it is looked up. If it
+ * has changed, for example, because an annotation has been added to a method since the snapshot was written, the
+ * classes are scanned as usual. Classes that are not loaded from a file, such as hidden classes, are never written to a
+ * snapshot.
+ * <p>
+ * The file format is:
+ * 
+ * <pre>
+ * int     magic ('PKIS')
+ * short   version
+ * int     number of code sources
+ *   string  location
+ *   long    size
+ *   long    last modified time
+ * int     number of classes
+ *   string  class name
+ *   int     number of classes in the hierarchy that are scanned for hooks
+ *     int     index of code source
+ *   int     number of hooks
+ *     byte    kind (0 = field, 1 = method)
+ *     string  name of declaring class
+ *     string  member name
+ *     string  member descriptor
+ *     string  annotation type name
+ * </pre>
+ * 
+ * Where each string is an unsigned short length followed by that many bytes of UTF-8.
+ */
+public final class ComponentClassSnapshot {
+
+    /** The kind of a constructor, only used by {@link ComponentClassIndex}. */
+    static final byte CONSTRUCTOR = 2;
+
+    /** The kind of a field hook. */
+    static final byte FIELD = 0;
+
+    /** The magic number of a snapshot file. */
+    private static final int MAGIC = 0x504B4953;
+
+    /** The kind of a method hook. */
+    static final byte METHOD = 1;
+
+    /** All classes that have been read from snapshots, by the name of the component class. */
+    private static final ConcurrentHashMap<String, Entry> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    /** The current version of the file format. */
+    private static final short VERSION = 3;
+
+    /** Cannot instantiate. */
+    private ComponentClassSnapshot() {}
+
+    /**
+     * Returns the hooks of the specified component type from the snapshot, or null if the type is not in any snapshot that
+     * has been read, if any code source of the type or its super classes has changed since the snapshot was written, or
+     * if any of the hooks could not be resolved.
+     * 
+     * @param componentType
+     *            the component type
+     * @return the hooks of the component type, or null
+     */
+    @Nullable
+    static List<Hook> find(Class<?> componentType) {
+        Entry e = SNAPSHOTS.get(componentType.getName());
+        if (e == null) {
+            return null;
+        }
+        int i = 0;
+        for (Class<?> c = componentType; !ComponentClassDescriptor.Builder.isPlatformClass(c); c = c.getSuperclass()) {
+            if (i == e.sources.length || !e.sources[i++].matches(c)) {
+                return null;
+            }
+        }
+        return i == e.sources.length ? resolve(componentType, e.hooks) : null;
+    }
+
+    /**
+     * Returns the location of the code source the specified class was loaded from.
+     * 
+     * @param c
+     *            the class
+     * @return the location, or null if the class was not loaded from a file
+     */
+    @Nullable
+    private static URL location(Class<?> c) {
+        CodeSource cs = c.getProtectionDomain().getCodeSource();
+        URL url = cs == null ? null : cs.getLocation();
+        return url != null && "file".equals(url.getProtocol()) ? url : null;
+    }
+
+    /**
+     * Resolves all of the specified hooks against the specified type.
+     * 
+     * @param type
+     *            the type to resolve the hooks against
+     * @param hooks
+     *            the hooks to resolve
+     * @return the resolved hooks, or null if any of the hooks could not be resolved
+     */
+    @Nullable
+    static List<Hook> resolve(Class<?> type, Hook[] hooks) {
+        ArrayList<Hook> result = new ArrayList<>(hooks.length);
+        for (Hook h : hooks) {
+            Hook r = h.resolve(type);
+            if (r == null) {
+                return null;
+            }
+            result.add(r);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a snapshot and makes its hooks available to component classes that are scanned from now on.
+     * 
+     * @param path
+     *            the snapshot file to read
+     * @throws IOException
+     *             if the file could not be read, or is not a valid snapshot
+     */
+    public static void read(Path path) throws IOException {
+        requireNonNull(path, "path is null");
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            if (b.remaining() < 6 || b.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file, path = " + path);
+            }
+            short version = b.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version, expected " + VERSION + " but was " + version + ", path = " + path);
+            }
+            Source[] sources = new Source[b.getInt()];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = new Source(readString(b), b.getLong(), b.getLong());
+            }
+            for (int i = b.getInt(); i > 0; i--) {
+                String className = readString(b);
+                Source[] hierarchy = new Source[b.getInt()];
+                for (int j = 0; j < hierarchy.length; j++) {
+                    hierarchy[j] = sources[b.getInt()];
+                }
+                Hook[] hooks = new Hook[b.getInt()];
+                for (int j = 0; j < hooks.length; j++) {
+                    byte kind = b.get();
+                    hooks[j] = new Hook(kind, readString(b), readString(b), readString(b), readString(b));
+                }
+                SNAPSHOTS.put(className, new Entry(hierarchy, hooks));
+            }
+        } catch (RuntimeException e) { // BufferUnderflowException, IllegalArgumentException, IndexOutOfBoundsException
+            throw new IOException("Corrupt snapshot file, path = " + path, e);
+        }
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[Short.toUnsignedInt(b.getShort())];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the size and last modified time of the specified code source. For a directory this is the total size of all
+     * files in the directory, and the latest last modified time of any of the files.
+     * 
+     * @param location
+     *            the location of the code source
+     * @return the size and last modified time, or null if the code source could not be read
+     */
+    @Nullable
+    private static long[] stat(String location) {
+        try {
+            Path path = Paths.get(new URL(location).toURI());
+            BasicFileAttributes a = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!a.isDirectory()) {
+                return new long[] { a.size(), a.lastModifiedTime().toMillis() };
+            }
+            long[] result = new long[2];
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    result[0] += attrs.size();
+                    result[1] = Math.max(result[1], attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return result;
+        } catch (IOException | URISyntaxException | RuntimeException e) { // IllegalArgumentException, FileSystemNotFoundException
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the specified descriptors. Descriptors of classes where the class or any of its super classes
+     * was not loaded from a file are left out.
+     * 
+     * @param path
+     *            the file to write to
+     * @param descriptors
+     *            the descriptors to write
+     * @throws IOException
+     *             if the file could not be written
+     */
+    public static void write(Path path, Collection<ComponentClassDescriptor> descriptors) throws IOException {
+        requireNonNull(path, "path is null");
+        LinkedHashMap<String, Integer> sources = new LinkedHashMap<>();
+        HashMap<String, long[]> stats = new HashMap<>();
+        ArrayList<ComponentClassDescriptor> list = new ArrayList<>(descriptors.size());
+        ArrayList<int[]> hierarchies = new ArrayList<>(descriptors.size());
+        outer: for (ComponentClassDescriptor d : descriptors) {
+            ArrayList<String> locations = new ArrayList<>();
+            for (Class<?> c = d.type(); !ComponentClassDescriptor.Builder.isPlatformClass(c); c = c.getSuperclass()) {
+                URL url = location(c);
+                if (url == null || stats.computeIfAbsent(url.toString(), ComponentClassSnapshot::stat) == null) {
+                    continue outer;
+                }
+                locations.add(url.toString());
+            }
+            int[] hierarchy = new int[locations.size()];
+            for (int i = 0; i < hierarchy.length; i++) {
+                hierarchy[i] = sources.computeIfAbsent(locations.get(i), k -> sources.size());
+            }
+            list.add(d);
+            hierarchies.add(hierarchy);
+        }
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            dos.writeInt(MAGIC);
+            dos.writeShort(VERSION);
+            dos.writeInt(sources.size());
+            for (String location : sources.keySet()) {
+                long[] stat = stats.get(location);
+                writeString(dos, location);
+                dos.writeLong(stat[0]);
+                dos.writeLong(stat[1]);
+            }
+            dos.writeInt(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                ComponentClassDescriptor d = list.get(i);
+                writeString(dos, d.type().getName());
+                int[] hierarchy = hierarchies.get(i);
+                dos.writeInt(hierarchy.length);
+                for (int index : hierarchy) {
+                    dos.writeInt(index);
+                }
+                dos.writeInt(d.hooks.size());
+                for (Hook h : d.hooks) {
+                    dos.writeByte(h.kind);
+                    writeString(dos, h.declaringClass);
+                    writeString(dos, h.name);
+                    writeString(dos, h.descriptor);
+                    writeString(dos, h.annotationType);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String to long to be written to a snapshot, length = " + bytes.length);
+        }
+        dos.writeShort(bytes.length);
+        dos.write(bytes);
+    }
+
+    /** A single class read from a snapshot. */
+    private static final class Entry {
+
+        /** The hooks of the class. */
+        private final Hook[] hooks;
+
+        /** The code sources of the class and every super class that is scanned for hooks. */
+        private final Source[] sources;
+
+        private Entry(Source[] sources, Hook[] hooks) {
+            this.sources = sources;
+            this.hooks = hooks;
+        }
+    }
+
+    /** A code source read from a snapshot. */
+    private static final class Source {
+
+        /** The last modified time of the code source when the snapshot was written. */
+        private final long lastModified;
+
+        /** The location of the code source. */
+        private final String location;
+
+        /** The size of the code source when the snapshot was written. */
+        private final long size;
+
+        /** Whether or not the code source is unchanged, or null if it has not been validated yet. */
+        @Nullable
+        private volatile Boolean unchanged;
+
+        /** The last code source that a class has been successfully matched against. */
+        @Nullable
+        private volatile CodeSource verified;
+
+        private Source(String location, long size, long lastModified) {
+            this.location = location;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns whether or not the specified class was loaded from this code source, and the code source has not changed
+         * since the snapshot was written.
+         * 
+         * @param c
+         *            the class to test
+         * @return whether or not the class was loaded from this unchanged code source
+         */
+        boolean matches(Class<?> c) {
+            CodeSource cs = c.getProtectionDomain().getCodeSource();
+            if (cs == null) {
+                return false;
+            } else if (cs == verified) {
+                return true; // Classes from the same location share the code source
+            }
+            URL url = cs.getLocation();
+            if (url == null || !url.toString().equals(location)) {
+                return false;
+            }
+            Boolean u = unchanged;
+            if (u == null) {
+                long[] stat = stat(location);
+                unchanged = u = stat != null && stat[0] == size && stat[1] == lastModified;
+            }
+            if (u) {
+                verified = cs;
+            }
+            return u;
+        }
+    }
+
+    /**
+     * A single annotation on a field or method that activates an extension. Also used by {@link ComponentClassIndex} for
+     * members annotated with {@code @Inject} and for injectable constructors, which have no annotation type.
+     */
+    static final class Hook {
+
+        /** The annotation, if the hook has been resolved. */
+        @Nullable
+        final Annotation annotation;
+
+        /** The name of the annotation type. */
+        private final String annotationType;
+
+        /** The name of the class that declares the member. */
+        private final String declaringClass;
+
+        /** The descriptor of the member. */
+        private final String descriptor;
+
+        /** The kind of member. */
+        private final byte kind;
+
+        /** The member, if the hook has been resolved. */
+        @Nullable
+        final AnnotatedElement member;
+
+        /** The name of the member. */
+        private final String name;
+
+        Hook(byte kind, String declaringClass, String name, String descriptor, String annotationType) {
+            this(kind, declaringClass, name, descriptor, annotationType, null, null);
+        }
+
+        private Hook(byte kind, String declaringClass, String name, String descriptor, String annotationType, @Nullable AnnotatedElement member,
+                @Nullable Annotation annotation) {
+            this.kind = kind;
+            this.declaringClass = requireNonNull(declaringClass);
+            this.name = requireNonNull(name);
+            this.descriptor = requireNonNull(descriptor);
+            this.annotationType = requireNonNull(annotationType);
+            this.member = member;
+            this.annotation = annotation;
+        }
+
+        /**
+         * Creates a resolved hook for an annotated field.
+         * 
+         * @param field
+         *            the field
+         * @param annotation
+         *            the annotation on the field
+         */
+        Hook(Field field, Annotation annotation) {
+            this.kind = FIELD;
+            this.declaringClass = field.getDeclaringClass().getName();
+            this.name = field.getName();
+            this.descriptor = Type.getDescriptor(field.getType());
+            this.annotationType = annotation.annotationType().getName();
+            this.member = field;
+            this.annotation = annotation;
+        }
+
+        /**
+         * Creates a resolved hook for an annotated method.
+         * 
+         * @param method
+         *            the method
+         * @param annotation
+         *            the annotation on the method
+         */
+        Hook(Method method, Annotation annotation) {
+            this.kind = METHOD;
+            this.declaringClass = method.getDeclaringClass().getName();
+            this.name = method.getName();
+            this.descriptor = Type.getMethodDescriptor(method);
+            this.annotationType = annotation.annotationType().getName();
+            this.member = method;
+            this.annotation = annotation;
+        }
+
+        /**
+         * Resolves this hook against the specified component type.
+         * 
+         * @param componentType
+         *            the component type
+         * @return the resolved hook, or null if the hook could not be resolved
+         */
+        @Nullable
+        Hook resolve(Class<?> componentType) {
+            Class<?> c = componentType;
+            while (c != null && !c.getName().equals(declaringClass)) {
+                c = c.getSuperclass();
+            }
+            if (c == null) {
+                return null;
+            }
+            try {
+                AnnotatedElement e;
+                if (kind == FIELD) {
+                    Field f = c.getDeclaredField(name);
+                    if (!Type.getDescriptor(f.getType()).equals(descriptor)) {
+                        return null;
+                    }
+                    e = f;
+                } else if (kind == CONSTRUCTOR) {
+                    MethodType mt = MethodType.fromMethodDescriptorString(descriptor, c.getClassLoader());
+                    e = c.getDeclaredConstructor(mt.parameterArray());
+                } else {
+                    MethodType mt = MethodType.fromMethodDescriptorString(descriptor, c.getClassLoader());
+                    Method m = c.getDeclaredMethod(name, mt.parameterArray());
+                    if (m.getReturnType() != mt.returnType()) {
+                        return null;
+                    }
+                    e = m;
+                }
+                if (annotationType.isEmpty()) {
+                    return new Hook(kind, declaringClass, name, descriptor, annotationType, e, null);
+                }
+                for (Annotation a : e.getAnnotations()) {
+                    if (a.annotationType().getName().equals(annotationType)) {
+                        return new Hook(kind, declaringClass, name, descriptor, annotationType, e, a);
+                    }
+                }
+                return null;
+            } catch (ReflectiveOperationException | TypeNotPresentException | IllegalArgumentException e) {
+                return null; // The class has changed since the snapshot was made
+            }
+        }
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.componentcache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.ZipEntry;
+
+import app.packed.component.ComponentScan;
+import app.packed.component.Install;
+import app.packed.util.Nullable;
+import packed.internal.thirdparty.asm.AnnotationVisitor;
+import packed.internal.thirdparty.asm.ClassReader;
+import packed.internal.thirdparty.asm.ClassVisitor;
+import packed.internal.thirdparty.asm.Opcodes;
+import packed.internal.thirdparty.asm.Type;
+
+/**
+ * Finds the classes that should be installed for a bundle annotated with {@link ComponentScan}.
+ * <p>
+ * Class files are parsed with {@link ClassReader}, skipping code, debug information and stack map frames. Only classes
+ * whose annotation descriptors match one of the annotations specified by {@link ComponentScan#annotations()} are
+ * loaded. As the annotation has class retention, the attributes of the annotation is also read from the class file of
+ * the bundle.
+ */
+final class ComponentScanner {
+
+    /** Lapp/packed/component/ComponentScan; */
+    private static final String COMPONENT_SCAN_DESCRIPTOR = Type.getDescriptor(ComponentScan.class);
+
+    /** The descriptor of {@link ComponentScan} as it appears in the constant pool of a class file. */
+    private static final byte[] COMPONENT_SCAN_BYTES = COMPONENT_SCAN_DESCRIPTOR.getBytes(StandardCharsets.UTF_8);
+
+    /** Scan results of jar files, keyed by the path of the jar file and the packages and annotations that was scanned for. */
+    private static final ConcurrentHashMap<String, JarScan> JAR_CACHE = new ConcurrentHashMap<>();
+
+    /** The options used when parsing class files. */
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    /** Access flags of types that can never be installed. */
+    private static final int SKIP_ACCESS = Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE | Opcodes.ACC_ANNOTATION | Opcodes.ACC_ENUM;
+
+    /** The descriptors of the annotations to look for. */
+    private final Set<String> annotations;
+
+    /** The descriptors of the annotations to look for, encoded as they appear in the constant pool of a class file. */
+    private final byte[][] descriptors;
+
+    /** The bundle type that is annotated with {@link ComponentScan}. */
+    private final Class<?> bundleType;
+
+    /** Module name patterns. */
+    private final String[] modules;
+
+    /** Package prefixes in internal form (a/b/c/), or an empty array if all packages should be scanned. */
+    private final String[] packages;
+
+    private ComponentScanner(Class<?> bundleType, Set<String> annotations, String[] modules, String[] packages) {
+        this.bundleType = bundleType;
+        this.annotations = annotations;
+        this.descriptors = annotations.stream().map(a -> a.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        this.modules = modules;
+        this.packages = packages;
+    }
+
+    /**
+     * Returns whether or not the specified entry name is in one of the packages that should be scanned.
+     * 
+     * @param name
+     *            the name of the entry (a/b/c/D.class)
+     * @return whether or not the entry should be scanned
+     */
+    private boolean accept(String name) {
+        if (!name.endsWith(".class") || name.endsWith("module-info.class") || name.endsWith("package-info.class")) {
+            return false;
+        }
+        if (packages.length == 0) {
+            return true;
+        }
+        for (String p : packages) {
+            if (name.startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the specified class file, and returns the name of the class if it is annotated with one of the annotations.
+     * 
+     * @param classFile
+     *            the class file to parse
+     * @return the binary name of the class, or null if the class should not be installed
+     */
+    @Nullable
+    private String match(byte[] classFile) {
+        // The descriptor of an annotation on the class must be present in the constant pool. Checking for it before parsing
+        // the class file quickly rejects most classes
+        boolean candidate = false;
+        for (byte[] d : descriptors) {
+            candidate |= contains(classFile, d);
+        }
+        if (!candidate) {
+            return null;
+        }
+        Matcher m = new Matcher(annotations);
+        new ClassReader(classFile).accept(m, PARSING_OPTIONS);
+        return m.matches && (m.access & SKIP_ACCESS) == 0 ? m.className : null;
+    }
+
+    /**
+     * Returns all locations (jar files or directories) on the class path that should be scanned.
+     * 
+     * @return all locations that should be scanned
+     */
+    private LinkedHashSet<Path> roots() {
+        LinkedHashSet<Path> result = new LinkedHashSet<>();
+        // The value of modules() is ignored on the class path
+        CodeSource cs = bundleType.getProtectionDomain().getCodeSource();
+        if (cs != null && cs.getLocation() != null) {
+            try {
+                Path self = toPath(cs.getLocation().toURI());
+                if (self != null) {
+                    result.add(self);
+                }
+            } catch (URISyntaxException ignore) {}
+        }
+        String cp = System.getProperty("java.class.path", "");
+        for (String s : cp.split(java.io.File.pathSeparator)) {
+            if (!s.isEmpty()) {
+                result.add(Paths.get(s).toAbsolutePath().normalize());
+            }
+        }
+        return result;
+    }
+
+    private boolean matchesModule(String name, String bundleModule) {
+        if (modules.length == 0) {
+            return true;
+        }
+        for (String pattern : modules) {
+            if (pattern.equals(".") ? name.equals(bundleModule) : pattern.equals("*") || name.matches(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans the classes, and loads all matching classes.
+     * 
+     * @return the matching classes, sorted by name
+     */
+    private List<Class<?>> scan() {
+        Module module = bundleType.getModule();
+        List<Entry<Module>> found = module.isNamed() && module.getLayer() != null ? scanModules(module) : scanClassPath();
+
+        TreeSet<String> seen = new TreeSet<>();
+        ArrayList<Class<?>> result = new ArrayList<>();
+        found.sort((a, b) -> a.name.compareTo(b.name));
+        for (Entry<Module> e : found) {
+            if (!e.name.equals(bundleType.getName()) && seen.add(e.name)) {
+                result.add(load(e.name, e.module));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scans every location on the class path, each location is scanned in parallel. The entries of each jar file are also
+     * scanned in parallel.
+     * 
+     * @return the matching classes
+     */
+    private List<Entry<Module>> scanClassPath() {
+        return roots().parallelStream().flatMap(p -> (Files.isDirectory(p) ? scanDirectory(p) : scanJar(p)).stream()).map(n -> new Entry<Module>(n, null))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Scans every module in the layer of the bundle's module that matches {@link ComponentScan#modules()}. Each module is
+     * read via its {@link ModuleReader}, so classes added to a module with {@code --patch-module} are also found.
+     * 
+     * @param module
+     *            the module of the bundle
+     * @return the matching classes
+     */
+    private List<Entry<Module>> scanModules(Module module) {
+        ModuleLayer layer = module.getLayer();
+        return layer.configuration().modules().parallelStream().filter(rm -> {
+            String name = rm.name();
+            return !name.startsWith("java.") && !name.startsWith("jdk.") && matchesModule(name, module.getName());
+        }).flatMap(rm -> {
+            Module m = layer.findModule(rm.name()).get();
+            return scanModule(rm.reference()).stream().map(n -> new Entry<>(n, m));
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Scans the contents of the specified module.
+     * 
+     * @param reference
+     *            the module to scan
+     * @return the names of all matching classes
+     */
+    private List<String> scanModule(ModuleReference reference) {
+        // A module reader is not required to be thread safe, so entries are read one at a time
+        try (ModuleReader reader = reference.open(); Stream<String> names = reader.list()) {
+            ArrayList<String> result = new ArrayList<>();
+            for (String n : (Iterable<String>) names.filter(this::accept)::iterator) {
+                Optional<InputStream> o = reader.open(n);
+                if (o.isPresent()) {
+                    try (InputStream is = o.get()) {
+                        String match = match(is.readAllBytes());
+                        if (match != null) {
+                            result.add(match);
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not scan module " + reference.descriptor().name(), e);
+        }
+    }
+
+    private Class<?> load(String name, @Nullable Module module) {
+        if (module != null) {
+            Class<?> c = Class.forName(module, name);
+            if (c != null) {
+                return c;
+            }
+        }
+        try {
+            return Class.forName(name, false, bundleType.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Could not load class " + name + " found while scanning for components for " + bundleType.getName(), e);
+        }
+    }
+
+    private List<String> scanDirectory(Path root) {
+        try (Stream<Path> s = Files.walk(root)) {
+            return s.filter(p -> accept(root.relativize(p).toString().replace(java.io.File.separatorChar, '/'))).parallel().map(p -> {
+                try {
+                    return match(Files.readAllBytes(p));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).filter(n -> n != null).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not scan " + root, e);
+        }
+    }
+
+    /**
+     * Scans the specified jar file. The result is cached by the path of the jar file. And reused as long as the size and
+     * last modified time of the file does not change. If either changes, the CRCs of the class entries in the central
+     * directory of the jar file are compared with those of the cached result, and the class files are only parsed again if
+     * any of them has changed.
+     * 
+     * @param jar
+     *            the jar file to scan
+     * @return the names of all matching classes
+     */
+    List<String> scanJar(Path jar) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return List.of(); // Does not exist
+        }
+        if (!attributes.isRegularFile()) {
+            return List.of();
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String key = jar + "/" + String.join(",", packages) + "/" + String.join(",", annotations);
+        JarScan cached = JAR_CACHE.get(key);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached.classes;
+        }
+        try (JarFile jf = new JarFile(jar.toFile())) {
+            ZipEntry[] entries = jf.stream().filter(e -> accept(e.getName())).toArray(ZipEntry[]::new);
+            // Only reads the central directory of the jar file, which has already been read by JarFile
+            long checksum = checksum(entries);
+            List<String> result = cached != null && cached.checksum == checksum ? cached.classes : null;
+            if (result == null) {
+                result = Arrays.stream(entries).parallel().map(e -> {
+                    try (InputStream is = jf.getInputStream(e)) {
+                        return match(is.readAllBytes());
+                    } catch (IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                }).filter(n -> n != null).collect(Collectors.toUnmodifiableList());
+            }
+            JAR_CACHE.put(key, new JarScan(size, lastModified, checksum, result));
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not scan " + jar, e);
+        }
+    }
+
+    /**
+     * Returns the classes that should be installed for the specified bundle type. Or an empty list if the bundle is not
+     * annotated with {@link ComponentScan}.
+     * 
+     * @param bundleType
+     *            the type of bundle
+     * @return the classes that should be installed
+     */
+    static List<Class<?>> scan(Class<?> bundleType) {
+        ComponentScanner s = of(bundleType);
+        return s == null ? List.of() : s.scan();
+    }
+
+    /**
+     * Returns a checksum of the names and CRCs of the specified jar entries.
+     * 
+     * @param entries
+     *            the entries
+     * @return a checksum of the entries
+     */
+    private static long checksum(ZipEntry[] entries) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer bb = ByteBuffer.allocate(Long.BYTES);
+        for (ZipEntry e : entries) {
+            crc.update(e.getName().getBytes(StandardCharsets.UTF_8));
+            crc.update(bb.clear().putLong(e.getCrc()).flip());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Reads the {@link ComponentScan} annotation from the class file of the specified bundle type.
+     * 
+     * @param bundleType
+     *            the bundle type
+     * @return a scanner, or null if the bundle type is not annotated with {@link ComponentScan}
+     */
+    @Nullable
+    static ComponentScanner of(Class<?> bundleType) {
+        String name = bundleType.getName();
+        byte[] classFile;
+        try (InputStream is = bundleType.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            if (is == null) {
+                return null;
+            }
+            classFile = is.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!contains(classFile, COMPONENT_SCAN_BYTES)) {
+            return null; // Avoid parsing the class file of bundles that are not annotated
+        }
+        AnnotationReader r = new AnnotationReader();
+        new ClassReader(classFile).accept(r, PARSING_OPTIONS);
+        if (!r.present) {
+            return null;
+        }
+        String pkg = bundleType.getPackageName();
+        TreeSet<String> packages = new TreeSet<>();
+        for (String p : r.packages.isEmpty() ? List.of(".") : r.packages) {
+            if (p.equals("*")) {
+                packages.clear();
+                break;
+            }
+            String n = p.equals(".") ? pkg : p;
+            packages.add(n.isEmpty() ? "" : n.replace('.', '/') + "/");
+        }
+        if (packages.contains("")) {
+            packages.clear(); // default package, scan everything
+        }
+        Set<String> annotations = r.annotations == null ? Set.of(Type.getDescriptor(Install.class)) : Set.copyOf(r.annotations);
+        String[] modules = r.modules == null ? new String[] { "." } : r.modules.toArray(new String[0]);
+        return new ComponentScanner(bundleType, new TreeSet<>(annotations), modules, packages.toArray(new String[0]));
+    }
+
+    /**
+     * Returns whether or not the specified class file contains the specified bytes.
+     * 
+     * @param classFile
+     *            the class file
+     * @param bytes
+     *            the bytes to look for
+     * @return whether or not the class file contains the bytes
+     */
+    private static boolean contains(byte[] classFile, byte[] bytes) {
+        byte first = bytes[0];
+        outer: for (int i = 0, max = classFile.length - bytes.length; i <= max; i++) {
+            if (classFile[i] == first) {
+                for (int j = 1; j < bytes.length; j++) {
+                    if (classFile[i + j] != bytes[j]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static Path toPath(URI uri) {
+        return "file".equals(uri.getScheme()) ? Paths.get(uri).toAbsolutePath().normalize() : null;
+    }
+
+    /** Reads the attributes of {@link ComponentScan} from the class file of a bundle. */
+    private static final class AnnotationReader extends ClassVisitor {
+
+        /** The descriptors of the annotations, or null if the default value should be used. */
+        List<String> annotations;
+
+        /** The module patterns, or null if the default value should be used. */
+        List<String> modules;
+
+        /** The package names. */
+        List<String> packages = List.of();
+
+        /** Whether or not the class is annotated with {@link ComponentScan}. */
+        boolean present;
+
+        AnnotationReader() {
+            super(Opcodes.ASM7);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (!descriptor.equals(COMPONENT_SCAN_DESCRIPTOR)) {
+                return null;
+            }
+            present = true;
+            return new AnnotationVisitor(Opcodes.ASM7) {
+
+                @Override
+                public AnnotationVisitor visitArray(String name) {
+                    ArrayList<String> values = new ArrayList<>();
+                    if (name.equals("annotations")) {
+                        annotations = values;
+                    } else if (name.equals("modules")) {
+                        modules = values;
+                    } else if (name.equals("packages")) {
+                        packages = values;
+                    }
+                    return new AnnotationVisitor(Opcodes.ASM7) {
+                        @Override
+                        public void visit(String ignore, Object value) {
+                            values.add(value instanceof Type ? ((Type) value).getDescriptor() : value.toString());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /** The result of scanning a jar file. */
+    private static final class JarScan {
+
+        /** A checksum of the names and CRCs of the scanned entries of the jar file. */
+        final long checksum;
+
+        /** The names of all matching classes. */
+        final List<String> classes;
+
+        /** The last modified time of the jar file in milliseconds. */
+        final long lastModified;
+
+        /** The size of the jar file. */
+        final long size;
+
+        JarScan(long size, long lastModified, long checksum, List<String> classes) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.classes = classes;
+        }
+    }
+
+    /** A scan result. */
+    private static final class Entry<T> {
+        final T module;
+        final String name;
+
+        Entry(String name, T module) {
+            this.name = name;
+            this.module = module;
+        }
+    }
+
+    /** Checks if a class is annotated with one of the specified annotations. */
+    private static final class Matcher extends ClassVisitor {
+
+        /** The access flags of the class. */
+        int access;
+
+        /** The descriptors of the annotations to look for. */
+        final Set<String> annotations;
+
+        /** The binary name of the class. */
+        String className;
+
+        /** Whether or not the class is annotated with one of the annotations. */
+        boolean matches;
+
+        Matcher(Set<String> annotations) {
+            super(Opcodes.ASM7);
+            this.annotations = annotations;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.access = access;
+            this.className = name.replace('/', '.');
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            matches |= annotations.contains(descriptor);
+            return null;
+        }
+    }
+}
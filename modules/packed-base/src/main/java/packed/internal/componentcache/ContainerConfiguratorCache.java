@@ -21,7 +21,9 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.reflect.Method;
+import java.util.List;
 
+import app.packed.component.ComponentScan;
 import packed.internal.util.LookupValue;
 
 /** A cache for a bundle implementation. */
@@ -40,6 +42,9 @@ public final class ContainerConfiguratorCache implements ComponentLookup {
     /** The type of bundle. */
     private final Class<?> configuratorType;
 
+    /** The classes found by scanning the class path or module path, if the bundle is annotated with ComponentScan. */
+    private volatile List<Class<?>> componentScan;
+
     /** The default prefix of the container. */
     private volatile String defaultPrefix;
 
@@ -89,14 +94,33 @@ public final class ContainerConfiguratorCache implements ComponentLookup {
     }
 
     /**
-     * Returns the default prefix for the container, if no name is explicitly set.
+     * Returns the classes that should be installed because the configurator type is annotated with
+     * {@link ComponentScan}. The class path or module path is only scanned the first time this method is invoked.
+     * 
+     * @return the classes that should be installed
+     */
+    public List<Class<?>> componentScan() {
+        List<Class<?>> c = componentScan;
+        if (c == null) {
+            c = componentScan = ComponentScanner.scan(configuratorType);
+        }
+        return c;
+    }
+
+    /**
+     * Returns the default prefix for the container, if no name is explicitly set. This is the simple name of the
+     * configurator type with any "Bundle" suffix removed. Or "Container" if the resulting name is empty.
      * 
      * @return the default prefix for the container, if no name is explicitly set
      */
     public String defaultPrefix() {
         String d = defaultPrefix;
         if (d == null) {
-            d = defaultPrefix = configuratorType.getSimpleName();
+            d = configuratorType.getSimpleName();
+            if (d.length() > 6 && d.endsWith("Bundle")) {
+                d = d.substring(0, d.length() - 6);
+            }
+            d = defaultPrefix = d.isEmpty() ? "Container" : d;
         }
         return d;
     }
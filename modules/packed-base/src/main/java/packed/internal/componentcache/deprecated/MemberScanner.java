@@ -20,11 +20,14 @@ import static java.util.Objects.requireNonNull;
 import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
+import java.util.List;
 
 import app.packed.inject.Inject;
 import packed.internal.annotations.AtDependable;
 import packed.internal.annotations.AtInjectGroup;
+import packed.internal.componentcache.ComponentClassIndex;
 
 /**
  *
@@ -59,6 +62,15 @@ public class MemberScanner {
         // throw new InvalidDeclarationException(cannotHaveBothAnnotations(Inject.class, Provides.class));
         // }
         for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+            List<Member> indexed = ComponentClassIndex.declaredInjectableMembers(c);
+            if (indexed != null) {
+                for (Member m : indexed) {
+                    if (m instanceof Method) {
+                        inject.createIfInjectable(lookup, (Method) m, ((Method) m).getAnnotations());
+                    }
+                }
+                continue;
+            }
             for (Method method : c.getDeclaredMethods()) {
                 Annotation[] annotations = method.getAnnotations();
                 if (annotations.length > 0) {
@@ -85,6 +97,16 @@ public class MemberScanner {
 
     void scanFields() {
         for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+            // Use the index generated at compile time if available
+            List<Member> indexed = ComponentClassIndex.declaredInjectableMembers(c);
+            if (indexed != null) {
+                for (Member m : indexed) {
+                    if (m instanceof Field) {
+                        inject.createIfInjectable(lookup, (Field) m, ((Field) m).getAnnotations());
+                    }
+                }
+                continue;
+            }
             for (Field field : c.getDeclaredFields()) {
                 Annotation[] annotations = field.getAnnotations();
                 if (annotations.length > 0) {
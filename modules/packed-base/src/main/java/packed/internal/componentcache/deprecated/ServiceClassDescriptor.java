@@ -16,6 +16,7 @@
 package packed.internal.componentcache.deprecated;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
 
 import app.packed.inject.Inject;
 import packed.internal.annotations.AtInjectGroup;
@@ -29,6 +30,27 @@ import packed.internal.annotations.AtInjectGroup;
 
 public class ServiceClassDescriptor {
 
+    /**
+     * A cache of descriptors for each class, by the lookup class and lookup modes of the lookup object. The inner class
+     * value stores the descriptors with the lookup class, so the cache never keeps a lookup class (and its class loader)
+     * reachable.
+     */
+    private static final ClassValue<ClassValue<ByLookupModes>> CACHE = new ClassValue<>() {
+
+        /** {@inheritDoc} */
+        @Override
+        protected ClassValue<ByLookupModes> computeValue(Class<?> type) {
+            return new ClassValue<>() {
+
+                /** {@inheritDoc} */
+                @Override
+                protected ByLookupModes computeValue(Class<?> lookupClass) {
+                    return new ByLookupModes();
+                }
+            };
+        }
+    };
+
     /** A group of all members annotated with {@link Inject}. */
     public final AtInjectGroup inject;
 
@@ -54,7 +76,9 @@ public class ServiceClassDescriptor {
     }
 
     /**
-     * Returns a service class descriptor for the specified lookup and type
+     * Returns a service class descriptor for the specified lookup and type. A descriptor is created once for each type,
+     * lookup class and lookup modes. So the same descriptor is returned for lookup objects with the same lookup class
+     * and modes.
      * 
      * @param lookup
      *            the lookup
@@ -63,6 +87,63 @@ public class ServiceClassDescriptor {
      * @return a service class descriptor for the specified lookup and type
      */
     public static ServiceClassDescriptor from(MethodHandles.Lookup lookup, Class<?> type) {
-        return new ServiceClassDescriptor(type, lookup, MemberScanner.forService(type, lookup));
+        ByLookupModes descriptors = CACHE.get(type).get(lookup.lookupClass());
+        ServiceClassDescriptor descriptor = descriptors.get(lookup.lookupModes());
+        return descriptor == null ? descriptors.create(lookup, type) : descriptor;
+    }
+
+    /**
+     * The descriptors of a single class for a single lookup class, one for each combination of lookup modes that has been
+     * used. Which is rarely more than one or two.
+     */
+    private static final class ByLookupModes {
+
+        /** The lookup modes of each descriptor in {@link #descriptors}. */
+        private int[] modes = new int[0];
+
+        /** The descriptors, replaced with a larger array whenever a descriptor is added. */
+        private volatile ServiceClassDescriptor[] descriptors = new ServiceClassDescriptor[0];
+
+        /**
+         * Returns the descriptor for the specified lookup modes, or null if no descriptor has been created.
+         * 
+         * @param lookupModes
+         *            the lookup modes
+         * @return the descriptor, or null
+         */
+        ServiceClassDescriptor get(int lookupModes) {
+            ServiceClassDescriptor[] d = descriptors; // volatile read, also publishes modes
+            int[] m = modes;
+            for (int i = 0; i < d.length; i++) {
+                if (m[i] == lookupModes) {
+                    return d[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Creates a descriptor unless another thread has already done so.
+         * 
+         * @param lookup
+         *            the lookup
+         * @param type
+         *            the type
+         * @return the descriptor
+         */
+        synchronized ServiceClassDescriptor create(MethodHandles.Lookup lookup, Class<?> type) {
+            ServiceClassDescriptor descriptor = get(lookup.lookupModes());
+            if (descriptor == null) {
+                descriptor = new ServiceClassDescriptor(type, lookup, MemberScanner.forService(type, lookup));
+                int length = modes.length;
+                int[] m = Arrays.copyOf(modes, length + 1);
+                m[length] = lookup.lookupModes();
+                ServiceClassDescriptor[] d = Arrays.copyOf(descriptors, length + 1);
+                d[length] = descriptor;
+                modes = m;
+                descriptors = d; // volatile write, publishes modes
+            }
+            return descriptor;
+        }
     }
 }
@@ -17,15 +17,13 @@ package packed.internal.container;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import app.packed.artifact.ArtifactInstantiationContext;
 import app.packed.component.Component;
 import app.packed.component.ComponentPath;
 import app.packed.component.ComponentStream;
@@ -33,148 +31,110 @@ import app.packed.config.ConfigSite;
 import app.packed.feature.FeatureMap;
 import app.packed.util.Nullable;
 
-/** An abstract base implementation of {@link Component}. */
+/**
+ * An abstract base implementation of {@link Component}. A component is an index into a {@link RuntimeComponentTree},
+ * all structural information is read from the tree. Components without runtime state are flyweights, so two component
+ * objects are equal if they represent the same index in the same tree.
+ */
 abstract class AbstractComponent implements Component {
 
-    /** Any child components this component might have. Is null if we know the component will never have any children. */
-    @Nullable
-    final Map<String, AbstractComponent> children;
-
-    /** The configuration site of the component. */
-    private final ConfigSite configSite;
-
-    /** The depth of the component in a tree of components. */
-    private final int depth;
+    /** The index of the component in the tree. */
+    final int index;
 
-    /** The description of this component (optional). */
-    @Nullable
-    private final String description;
-
-    final FeatureMap features = new FeatureMap();
-
-    /** The name of the component. The name is guaranteed to be unique between siblings. */
-    // TODO I think we need to remove final. Problem is with Host. Where we putIfAbsent.
-    // There is a small window where it might have been overridden....
-    // Unless we create the container in computeIfAbsent.... which I just think we should....
-    // Problem is also that the final name might not be stored in AbstractComponentConfiguration...
-    //// Auch I think we need to maintain some of that naming state for images....
-    /// For example, whether or not naming is free...
-    private final String name;
-
-    /** The parent component, iff this component has a parent. */
-    @Nullable
-    final AbstractComponent parent;;
+    /** The tree the component is part of. */
+    final RuntimeComponentTree tree;
 
     /**
      * Creates a new abstract component.
      * 
-     * @param parent
-     *            the parent component, iff this component has a parent.
-     * @param configuration
-     *            the configuration used for creating this component
+     * @param tree
+     *            the tree the component is part of
+     * @param index
+     *            the index of the component in the tree
      */
-    AbstractComponent(@Nullable AbstractComponent parent, AbstractComponentConfiguration configuration, ArtifactInstantiationContext ic) {
-        this.parent = parent;
-        this.configSite = requireNonNull(configuration.configSite());
-        this.description = configuration.getDescription();
-        this.depth = configuration.depth();
-        this.children = configuration.initializeChildren(this, ic);
-        if (parent == null) {
-            String n = configuration.name;
-            ComponentNameWirelet ol = ic.wirelets().findLastOrNull(ComponentNameWirelet.class);
-            if (ol != null) {
-                n = ol.name;
-                if (n.endsWith("?")) {
-                    n = n.substring(0, n.length() - 1);
-                }
-            }
-            this.name = n;
-        } else {
-            this.name = requireNonNull(configuration.name);
-        }
-        // for (FeatureKey<?> fk : configuration.features().keys()) {
-        // Object o = configuration.features().get(fk);
-        // }
+    AbstractComponent(RuntimeComponentTree tree, int index) {
+        this.tree = requireNonNull(tree);
+        this.index = index;
     }
 
     /** {@inheritDoc} */
     @Override
     public final Collection<Component> children() {
-        Map<String, AbstractComponent> c = children;
-        if (c == null) {
+        ComponentTree t = tree.tree;
+        int end = t.end(index);
+        if (end == index + 1) {
             return Collections.emptySet();
         }
-        return Collections.unmodifiableCollection(c.values());
+        ArrayList<Component> result = new ArrayList<>();
+        for (int c = index + 1; c < end; c = t.end(c)) {
+            result.add(tree.component(c));
+        }
+        return Collections.unmodifiableList(result);
     }
 
     /** {@inheritDoc} */
     @Override
     public final ConfigSite configSite() {
-        return configSite;
+        return tree.tree.configSite(index);
     }
 
     /** {@inheritDoc} */
     @Override
     public final int depth() {
-        return depth;
+        return tree.tree.depth(index);
     }
 
     /** {@inheritDoc} */
     @Override
     public final Optional<String> description() {
-        return Optional.ofNullable(description);
+        return Optional.ofNullable(tree.tree.description(index));
     }
 
     /** {@inheritDoc} */
     @Override
-    public FeatureMap features() {
-        return features;
+    public final boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        return obj instanceof AbstractComponent && ((AbstractComponent) obj).tree == tree && ((AbstractComponent) obj).index == index;
     }
 
-    public final Component findComponent(CharSequence path) {
-        return findComponent(path.toString());
+    /** {@inheritDoc} */
+    @Override
+    public final FeatureMap features() {
+        return tree.features(index);
     }
 
-    private Component findComponent(String path) {
+    /**
+     * Returns the component at the specified path relative to this component, or null if no such component exists.
+     * 
+     * @param path
+     *            the path of the component
+     * @return the component at the specified path, or null if no such component exists
+     */
+    @Nullable
+    public final Component findComponent(CharSequence path) {
         if (path.length() == 0) {
             throw new IllegalArgumentException("Cannot specify an empty (\"\") path");
         }
-        if (path.charAt(0) == '/' && path.length() == 1) {
-            if (path().toString().equals("/")) {
-                return this;
-            }
+        if (path.length() == 1 && path.charAt(0) == '/') {
+            return depth() == 0 ? this : null;
         }
-        // Vi smider IllegalArgumentException hvis man absolute path, og man ikke har samme prefix....
+        // TODO fix for non-absolute paths, for now all paths are relative to this component
+        int c = tree.tree.find(index, path);
+        return c < 0 ? null : tree.component(c);
+    }
 
-        // TODO fix for non-absolute paths....
-        //
-        Component c = children.get(path);
-        if (c == null) {
-            String p = path.toString();
-            String[] splits = p.split("/");
-            Map<String, AbstractComponent> chi = children;
-            for (int i = 1; i < splits.length; i++) {
-                if (chi == null) {
-                    return null;
-                }
-                String ch = splits[i];
-                AbstractComponent ac = chi.get(ch);
-                if (ac == null) {
-                    return null;
-                }
-                if (i == splits.length - 1) {
-                    return ac;
-                }
-                chi = ac.children;
-            }
-        }
-        return c;
+    /** {@inheritDoc} */
+    @Override
+    public final int hashCode() {
+        return System.identityHashCode(tree) * 31 + index;
     }
 
     /** {@inheritDoc} */
     @Override
     public final String name() {
-        return name;
+        return tree.name(index);
     }
 
     /** {@inheritDoc} */
@@ -185,11 +145,7 @@ abstract class AbstractComponent implements Component {
 
     @Override
     public final ComponentStream stream() {
-        Map<String, AbstractComponent> c = children;
-        if (c == null) {
-            return new PackedComponentStream(Stream.of(this));
-        }
-        return new PackedComponentStream(Stream.concat(Stream.of(this), c.values().stream().flatMap(AbstractComponent::stream)));
+        return new PackedComponentStream(new ComponentSpliterator(tree.tree, tree::component, index), false);
     }
 
     /**
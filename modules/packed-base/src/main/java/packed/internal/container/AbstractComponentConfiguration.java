@@ -19,11 +19,8 @@ import static java.util.Objects.requireNonNull;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Optional;
 
 import app.packed.artifact.ArtifactDriver;
-import app.packed.artifact.ArtifactInstantiationContext;
 import app.packed.artifact.ArtifactSource;
 import app.packed.component.ComponentConfiguration;
 import app.packed.component.ComponentExtension;
@@ -64,6 +61,10 @@ abstract class AbstractComponentConfiguration implements ComponentHolder {
     @Nullable
     String name;
 
+    /** The next counter to try when generating a name for a child with a particular prefix (lazily initialized). */
+    @Nullable
+    private HashMap<String, int[]> nameCounters;
+
     /** The parent of this component, or null if a root component. */
     @Nullable
     final AbstractComponentConfiguration parent;
@@ -118,6 +119,14 @@ abstract class AbstractComponentConfiguration implements ComponentHolder {
         }
     }
 
+    /**
+     * Returns the type of the component. This is the type of the component instance for regular components, and the type
+     * of the configurator (typically a bundle) for containers.
+     * 
+     * @return the type of the component
+     */
+    abstract Class<?> componentType();
+
     public final InternalConfigSite configSite() {
         return site;
     }
@@ -128,16 +137,6 @@ abstract class AbstractComponentConfiguration implements ComponentHolder {
         return depth;
     }
 
-    void extensionsPrepareInstantiation(ArtifactInstantiationContext ic) {
-        if (children != null) {
-            for (AbstractComponentConfiguration acc : children.values()) {
-                if (buildContext == acc.buildContext) {
-                    acc.extensionsPrepareInstantiation(ic);
-                }
-            }
-        }
-    }
-
     public final FeatureMap features() {
         return features;
     }
@@ -151,18 +150,6 @@ abstract class AbstractComponentConfiguration implements ComponentHolder {
         return initializeName(State.GET_NAME_INVOKED, null);
     }
 
-    Map<String, AbstractComponent> initializeChildren(AbstractComponent parent, ArtifactInstantiationContext ic) {
-        if (children == null) {
-            return null;
-        }
-        HashMap<String, AbstractComponent> result = new HashMap<>();
-        for (AbstractComponentConfiguration acc : children.values()) {
-            AbstractComponent ac = acc.instantiate(parent, ic);
-            result.put(ac.name(), ac);
-        }
-        return result;
-    }
-
     protected String initializeName(State state, String setName) {
         String n = name;
         if (n != null) {
@@ -170,9 +157,9 @@ abstract class AbstractComponentConfiguration implements ComponentHolder {
         }
         n = setName;
         if (this instanceof PackedContainerConfiguration) {
-            Optional<ComponentNameWirelet> o = ((PackedContainerConfiguration) this).wirelets().findLast(ComponentNameWirelet.class);
-            if (o.isPresent()) {
-                n = o.get().name;
+            ComponentNameWirelet w = ((PackedContainerConfiguration) this).wirelets().findLastOrNull(ComponentNameWirelet.class);
+            if (w != null) {
+                n = w.name;
             }
         }
 
@@ -189,34 +176,44 @@ abstract class AbstractComponentConfiguration implements ComponentHolder {
             if (!isFree) {
                 throw new RuntimeException("Name already exist " + n);
             }
-            int counter = 1;
-            String prefix = n;
-            do {
-                n = prefix + counter++;
-            } while (parent.children.containsKey(n));
+            n = parent.nextFreeName(n);
         }
         this.state = state;
         return this.name = n;
     }
 
+    /**
+     * Returns the first name of the form {@code prefix + counter}, with counter starting from 1, that is not used by any
+     * child of this component.
+     * <p>
+     * As children are never removed, all names before the last counter used for a prefix are known to be taken. So we
+     * keep track of the next counter to try for each prefix. Making naming amortized O(1) instead of O(n) when installing
+     * many components with the same prefix.
+     * 
+     * @param prefix
+     *            the prefix of the name
+     * @return a free name
+     */
+    private String nextFreeName(String prefix) {
+        HashMap<String, int[]> counters = nameCounters;
+        if (counters == null) {
+            counters = nameCounters = new HashMap<>();
+        }
+        int[] counter = counters.computeIfAbsent(prefix, k -> new int[] { 1 });
+        String n;
+        do {
+            n = prefix + counter[0]++;
+        } while (children.containsKey(n));
+        return n;
+    }
+
     private String initializeNameDefaultName() {
         if (this instanceof PackedContainerConfiguration) {
             // I think try and move some of this to ComponentNameWirelet
             @Nullable
             ArtifactSource source = ((PackedContainerConfiguration) this).configurator.source;
             if (source instanceof Bundle) {
-                String nnn = source.getClass().getSimpleName();
-                if (nnn.length() > 6 && nnn.endsWith("Bundle")) {
-                    nnn = nnn.substring(0, nnn.length() - 6);
-                }
-                if (nnn.length() > 0) {
-                    // checkName, if not just App
-                    // TODO need prefix
-                    return nnn;
-                }
-                if (nnn.length() == 0) {
-                    return "Container";
-                }
+                return ((PackedContainerConfiguration) this).configuratorCache.defaultPrefix();
             }
             // TODO think it should be named Artifact type, for example, app, injector, ...
             return "Unknown";
@@ -226,8 +223,6 @@ abstract class AbstractComponentConfiguration implements ComponentHolder {
 
     }
 
-    abstract AbstractComponent instantiate(AbstractComponent parent, ArtifactInstantiationContext ic);
-
     /**
      * Returns the path of this configuration. Invoking this method will initialize the name of the component. The component
      * path returned does not maintain any reference to this configuration object.
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.container;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import app.packed.component.ComponentStream;
+import app.packed.container.ContainerConfiguration;
+import app.packed.container.Extension;
+import app.packed.container.WireletList;
+import packed.internal.componentcache.ComponentClassDescriptor;
+import packed.internal.hook.ExtensionHookPerComponentGroup.MethodConsumer;
+
+/**
+ * A flat, immutable plan for instantiating an artifact from a fully built container configuration.
+ * <p>
+ * The configuration tree is walked once, when the plan is created. Every instantiation is then a single linear pass over
+ * the arrays of the plan: prepare all extensions, create all components (parents before children), and finally prepare
+ * all hook callbacks. For artifact images the plan is created together with the image and reused for every artifact that
+ * is instantiated from it.
+ */
+public final class ArtifactInstantiationPlan {
+
+    /** All components in pre-order, the root container first. */
+    private final AbstractComponentConfiguration[] components;
+
+    /** The container of each method consumer in {@link #consumers}. */
+    private final PackedContainerConfiguration[] consumerContainers;
+
+    /** All method consumers that must be prepared, in order. */
+    private final MethodConsumer<?>[] consumers;
+
+    /** The index in {@link #components} of each container in {@link #containers}. */
+    private final int[] containerIndexes;
+
+    /** All containers in pre-order, the root container first. */
+    final PackedContainerConfiguration[] containers;
+
+    /** All extensions that must be prepared, in order. */
+    private final Extension[] extensions;
+
+    /** The name of each component. The name of the root can be overridden by wirelets when instantiating. */
+    private final String[] names;
+
+    /** The index in {@link #components} of the parent of each component. -1 for the root. */
+    private final int[] parents;
+
+    /** The root container. */
+    private final PackedContainerConfiguration root;
+
+    /** The frozen structure of the components, shared by all artifacts instantiated from this plan. */
+    private final ComponentTree tree;
+
+    /**
+     * Creates a new plan.
+     * 
+     * @param b
+     *            the builder to create the plan from
+     */
+    private ArtifactInstantiationPlan(Builder b) {
+        this.root = b.root;
+        this.components = b.components.toArray(new AbstractComponentConfiguration[0]);
+        this.names = new String[components.length];
+        for (int i = 0; i < components.length; i++) {
+            names[i] = requireNonNull(components[i].name);
+        }
+        this.parents = new int[b.parents.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = b.parents.get(i);
+        }
+        this.containers = b.containers.toArray(new PackedContainerConfiguration[0]);
+        this.containerIndexes = b.containerIndexes.stream().mapToInt(i -> i).toArray();
+        this.tree = new ComponentTree(components, parents);
+        this.extensions = b.extensions.toArray(new Extension[0]);
+        this.consumers = b.consumers.toArray(new MethodConsumer<?>[0]);
+        this.consumerContainers = b.consumerContainers.toArray(new PackedContainerConfiguration[0]);
+    }
+
+    /**
+     * Returns the descriptors of all component classes in the plan.
+     * 
+     * @return the descriptors of all component classes in the plan
+     */
+    public Set<ComponentClassDescriptor> componentClassDescriptors() {
+        LinkedHashSet<ComponentClassDescriptor> result = new LinkedHashSet<>();
+        for (AbstractComponentConfiguration c : components) {
+            if (c instanceof DefaultComponentConfiguration) {
+                result.add(((DefaultComponentConfiguration) c).ccd);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the specified configuration in {@link #containers}, or -1 if the configuration is not part of
+     * this plan.
+     * 
+     * @param configuration
+     *            the configuration to find the index of
+     * @return the index of the specified configuration, or -1 if the configuration is not part of this plan
+     */
+    int indexOf(ContainerConfiguration configuration) {
+        if (configuration instanceof PackedContainerConfiguration) {
+            int index = ((PackedContainerConfiguration) configuration).planIndex;
+            if (index >= 0 && index < containers.length && containers[index] == configuration) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Instantiates a new artifact.
+     * 
+     * @param wirelets
+     *            any wirelets that should be used in addition to the wirelets of the root container
+     * @return the context of the new artifact
+     */
+    public PackedArtifactContext instantiate(WireletList wirelets) {
+        PackedArtifactInstantiationContext ic = new PackedArtifactInstantiationContext(this, root.wirelets().plus(wirelets));
+        for (Extension e : extensions) {
+            e.onPrepareContainerInstantiate(ic);
+        }
+
+        String rootName = names[0];
+        ComponentNameWirelet nw = ic.wirelets().findLastOrNull(ComponentNameWirelet.class);
+        if (nw != null) {
+            rootName = nw.name;
+            if (rootName.endsWith("?")) {
+                rootName = rootName.substring(0, rootName.length() - 1);
+            }
+        }
+        // Only containers are instantiated, all other components are created on demand
+        RuntimeComponentTree rt = new RuntimeComponentTree(tree, rootName);
+        for (int i = 0; i < containers.length; i++) {
+            containers[i].instantiate(rt, containerIndexes[i], ic);
+        }
+
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i].prepare(consumerContainers[i], ic);
+        }
+        return (PackedArtifactContext) rt.component(0);
+    }
+
+    /**
+     * Returns a stream of all components in the plan. The components of the stream are views of their configuration, but
+     * the stream itself is backed by the component tree of the plan. So queries on the stream are answered from the
+     * indexes of the tree.
+     * 
+     * @return a stream of all components in the plan
+     */
+    public ComponentStream stream() {
+        return new PackedComponentStream(new ComponentSpliterator(tree, i -> new ComponentConfigurationToComponentAdaptor(components[i]), 0), false);
+    }
+
+    /**
+     * Creates a new plan for the specified root container. The configuration must have been fully built.
+     * 
+     * @param root
+     *            the root container of the artifact
+     * @return a new plan
+     */
+    public static ArtifactInstantiationPlan of(PackedContainerConfiguration root) {
+        Builder b = new Builder(root);
+        b.addComponent(root, -1, root);
+        b.addExtensions(root);
+        return new ArtifactInstantiationPlan(b);
+    }
+
+    /** A builder that walks the configuration tree. */
+    private static final class Builder {
+
+        /** All components in pre-order. */
+        private final ArrayList<AbstractComponentConfiguration> components = new ArrayList<>();
+
+        /** The container of each method consumer. */
+        private final ArrayList<PackedContainerConfiguration> consumerContainers = new ArrayList<>();
+
+        /** All method consumers. */
+        private final ArrayList<MethodConsumer<?>> consumers = new ArrayList<>();
+
+        /** The index of each container in {@link #components}. */
+        private final ArrayList<Integer> containerIndexes = new ArrayList<>();
+
+        /** All containers in pre-order. */
+        private final ArrayList<PackedContainerConfiguration> containers = new ArrayList<>();
+
+        /** All extensions. */
+        private final ArrayList<Extension> extensions = new ArrayList<>();
+
+        /** The index of the parent of each component. */
+        private final ArrayList<Integer> parents = new ArrayList<>();
+
+        /** The root container. */
+        private final PackedContainerConfiguration root;
+
+        private Builder(PackedContainerConfiguration root) {
+            this.root = requireNonNull(root);
+        }
+
+        private void addComponent(AbstractComponentConfiguration configuration, int parent, PackedContainerConfiguration container) {
+            int index = components.size();
+            components.add(configuration);
+            parents.add(parent);
+            if (configuration instanceof PackedContainerConfiguration) {
+                PackedContainerConfiguration pcc = (PackedContainerConfiguration) configuration;
+                pcc.planIndex = containers.size();
+                containers.add(pcc);
+                containerIndexes.add(index);
+                container = pcc;
+            } else {
+                for (MethodConsumer<?> mc : ((DefaultComponentConfiguration) configuration).ccd.methodConsumers()) {
+                    consumers.add(mc);
+                    consumerContainers.add(container);
+                }
+            }
+            if (configuration.children != null) {
+                for (AbstractComponentConfiguration child : configuration.children.values()) {
+                    addComponent(child, index, container);
+                }
+            }
+        }
+
+        /** Extensions are prepared for every container in the same artifact, parents before children. */
+        private void addExtensions(PackedContainerConfiguration container) {
+            extensions.addAll(container.extensions.values());
+            if (container.children != null) {
+                for (AbstractComponentConfiguration child : container.children.values()) {
+                    if (child instanceof PackedContainerConfiguration && child.buildContext == container.buildContext) {
+                        addExtensions((PackedContainerConfiguration) child);
+                    }
+                }
+            }
+        }
+    }
+}
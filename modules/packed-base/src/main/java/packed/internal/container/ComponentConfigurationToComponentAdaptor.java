@@ -17,11 +17,11 @@ package packed.internal.container;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Stream;
 
 import app.packed.component.Component;
 import app.packed.component.ComponentPath;
@@ -36,7 +36,7 @@ public class ComponentConfigurationToComponentAdaptor implements Component {
 
     private volatile List<ComponentConfigurationToComponentAdaptor> children;
 
-    private final AbstractComponentConfiguration componentConfiguration;
+    final AbstractComponentConfiguration componentConfiguration;
 
     public ComponentConfigurationToComponentAdaptor(AbstractComponentConfiguration componentConfiguration) {
         this.componentConfiguration = requireNonNull(componentConfiguration);
@@ -101,12 +101,19 @@ public class ComponentConfigurationToComponentAdaptor implements Component {
     /** {@inheritDoc} */
     @Override
     public ComponentStream stream() {
-        children();
-        List<ComponentConfigurationToComponentAdaptor> c = children;
-        if (c == null) {
-            return new PackedComponentStream(Stream.of(this));
+        // Collect the subtree in pre-order using an explicit stack, so deep trees do not create deeply nested streams
+        ArrayList<Component> result = new ArrayList<>();
+        ArrayDeque<Component> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Component c = stack.pop();
+            result.add(c);
+            List<Component> children = List.copyOf(c.children());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
         }
-        return new PackedComponentStream(Stream.concat(Stream.of(this), c.stream().flatMap(ComponentConfigurationToComponentAdaptor::stream)));
+        return new PackedComponentStream(result.stream());
     }
 
 }
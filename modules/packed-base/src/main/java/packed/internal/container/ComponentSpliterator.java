@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.container;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import app.packed.component.Component;
+import app.packed.util.Nullable;
+
+/**
+ * A spliterator over a range of components in a {@link ComponentTree}.
+ * <p>
+ * As components are stored in pre-order, any subtree is a contiguous range of indexes. So traversal is a simple loop
+ * and splitting never has to copy anything. Splits are aligned to subtree boundaries, so each half of a split contains
+ * mostly complete subtrees and parallel streams scale with the size of the tree, not its depth.
+ * <p>
+ * Depth limiting and index based filtering are fused into the traversal. Subtrees that are deeper than the maximum depth
+ * are skipped in a single step. Filters that are answered by one of the indexes of the tree, such as filtering on type,
+ * replace the range of components with the (pre-ordered) matches from the index. So only matching components are ever
+ * visited or created.
+ */
+final class ComponentSpliterator implements Spliterator<Component> {
+
+    /** Characteristics that all component spliterators have. */
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+    /** Creates the component object for an index. */
+    private final IntFunction<? extends Component> components;
+
+    /** The (exclusive) end of the range, into {@link #matches} if it is non-null. */
+    private final int fence;
+
+    /** The position of the next component to visit, into {@link #matches} if it is non-null. */
+    private int index;
+
+    /** The indexes of all components that match a filter in pre-order, or null if there are no filters. */
+    @Nullable
+    private final int[] matches;
+
+    /** The maximum depth of components to include, or {@link Integer#MAX_VALUE} if there is no limit. */
+    private final int maxDepth;
+
+    /** The structure of the tree. */
+    private final ComponentTree tree;
+
+    /**
+     * Creates a new spliterator over the subtree of the specified component.
+     * 
+     * @param tree
+     *            the structure of the tree
+     * @param components
+     *            creates the component object for an index
+     * @param index
+     *            the index of the root of the subtree
+     */
+    ComponentSpliterator(ComponentTree tree, IntFunction<? extends Component> components, int index) {
+        this(tree, components, null, index, tree.end(index), Integer.MAX_VALUE);
+    }
+
+    private ComponentSpliterator(ComponentTree tree, IntFunction<? extends Component> components, @Nullable int[] matches, int index, int fence,
+            int maxDepth) {
+        this.tree = requireNonNull(tree);
+        this.components = requireNonNull(components);
+        this.matches = matches;
+        this.index = index;
+        this.fence = fence;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns the position of the next component to include at or after the specified position, or the fence if there are
+     * no more components.
+     * 
+     * @param i
+     *            the position to start from
+     * @return the position of the next component to include
+     */
+    private int advance(int i) {
+        int f = fence;
+        int[] m = matches;
+        if (maxDepth == Integer.MAX_VALUE) {
+            return Math.min(i, f);
+        }
+        while (i < f) {
+            int c = m == null ? i : m[i];
+            if (tree.depth(c) <= maxDepth) {
+                return i;
+            }
+            // All descendants are even deeper
+            i = m == null ? tree.end(c) : lowerBound(m, i + 1, f, tree.end(c));
+        }
+        return f;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int characteristics() {
+        return maxDepth == Integer.MAX_VALUE ? CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED : CHARACTERISTICS;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void forEachRemaining(Consumer<? super Component> action) {
+        requireNonNull(action, "action is null");
+        int f = fence;
+        int i = index;
+        index = f;
+        int[] m = matches;
+        if (maxDepth != Integer.MAX_VALUE) {
+            for (i = advance(i); i < f; i = advance(i + 1)) {
+                action.accept(components.apply(m == null ? i : m[i]));
+            }
+        } else if (m == null) {
+            for (; i < f; i++) {
+                action.accept(components.apply(i));
+            }
+        } else {
+            for (; i < f; i++) {
+                action.accept(components.apply(m[i]));
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean tryAdvance(Consumer<? super Component> action) {
+        requireNonNull(action, "action is null");
+        int i = advance(index);
+        if (i < fence) {
+            index = i + 1;
+            action.accept(components.apply(matches == null ? i : matches[i]));
+            return true;
+        }
+        index = fence;
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable
+    public ComponentSpliterator trySplit() {
+        int lo = index;
+        int hi = fence;
+        if (hi - lo < 2) {
+            return null;
+        }
+        int split = (lo + hi) >>> 1;
+        if (matches == null) {
+            // Move the split point from the middle to the start of the largest subtree that starts in [lo + quarter, mid].
+            // Ancestors always come before their descendants, so climbing the tree moves the split point towards lo.
+            int limit = lo + Math.max(1, (hi - lo) >>> 2);
+            for (int p = tree.parent(split); p >= limit; p = tree.parent(p)) {
+                split = p;
+            }
+        }
+        index = split;
+        return new ComponentSpliterator(tree, components, matches, lo, split, maxDepth);
+    }
+
+    /**
+     * Returns a new spliterator that only includes components whose depth is less than or equal to the specified depth.
+     * 
+     * @param depth
+     *            the maximum depth of components to include
+     * @return the new spliterator
+     */
+    ComponentSpliterator withMaxDepth(int depth) {
+        return new ComponentSpliterator(tree, components, matches, index, fence, Math.min(maxDepth, depth));
+    }
+
+    /**
+     * Returns a new spliterator that only includes the components matched by the specified query.
+     * 
+     * @param query
+     *            a query on one of the indexes of the tree, returning the indexes of all matching components in pre-order
+     * @return the new spliterator
+     */
+    ComponentSpliterator withMatches(Function<ComponentTree, int[]> query) {
+        int[] filter = query.apply(tree);
+        int[] m = matches;
+        if (m == null) {
+            // Restrict the matches to the range of this spliterator
+            int lo = lowerBound(filter, 0, filter.length, index);
+            return new ComponentSpliterator(tree, components, filter, lo, lowerBound(filter, lo, filter.length, fence), maxDepth);
+        }
+        // Intersect the remaining matches of this spliterator with the filter, both are sorted
+        int[] result = new int[Math.min(fence - index, filter.length)];
+        int count = 0;
+        for (int i = index, j = 0; i < fence && j < filter.length;) {
+            if (m[i] < filter[j]) {
+                i++;
+            } else if (m[i] > filter[j]) {
+                j++;
+            } else {
+                result[count++] = m[i++];
+                j++;
+            }
+        }
+        return new ComponentSpliterator(tree, components, Arrays.copyOf(result, count), 0, count, maxDepth);
+    }
+
+    /**
+     * Returns the position of the first element in the specified range of a sorted array that is greater than or equal to
+     * the specified key.
+     * 
+     * @param a
+     *            the sorted array
+     * @param from
+     *            the (inclusive) start of the range
+     * @param to
+     *            the (exclusive) end of the range
+     * @param key
+     *            the key
+     * @return the position of the first element that is greater than or equal to the key, or to if no such element exists
+     */
+    private static int lowerBound(int[] a, int from, int to, int key) {
+        int i = Arrays.binarySearch(a, from, to, key);
+        return i >= 0 ? i : -(i + 1);
+    }
+}
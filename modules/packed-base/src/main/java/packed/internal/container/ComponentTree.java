@@ -0,0 +1,520 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.container;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import app.packed.config.ConfigSite;
+import app.packed.container.Extension;
+import app.packed.feature.FeatureKey;
+import app.packed.feature.FeatureMap;
+import app.packed.util.Nullable;
+
+/**
+ * The frozen structure of a tree of runtime components.
+ * <p>
+ * Components are identified by their index in a pre-order traversal of the tree, the root being 0. So the descendants
+ * of component {@code i} are exactly the components in the range {@code [i + 1, end(i))}. All per-component data is
+ * stored in primitive arrays, names, configuration sites and types are stored as ids into tables of distinct values. A tree
+ * is created once per {@link ArtifactInstantiationPlan}, and is shared by every artifact instantiated from the plan.
+ * <p>
+ * When the tree is created, it also builds indexes of the components by type, by the extensions used by containers and
+ * by the features set on components. Each index maps a value to the indexes of the matching components in pre-order.
+ * Since any subtree is a contiguous range of indexes, the matches within a subtree can be found by binary search.
+ */
+final class ComponentTree {
+
+    /** An empty array returned by queries that match no components. */
+    static final int[] NO_COMPONENTS = new int[0];
+
+    /** Components with more children than this use a hash index when looking up children by name. */
+    private static final int CHILD_INDEX_THRESHOLD = 16;
+
+    /** Lazily created hash tables of the children of components with many children, indexed by component. */
+    @Nullable
+    private volatile AtomicReferenceArray<int[]> childTables;
+
+    /**
+     * A copy of the features each component had when it was configured, or null if no component in the tree had any
+     * features. Copied into the features of every runtime component.
+     */
+    @Nullable
+    private final FeatureMap[] configuredFeatures;
+
+    /** The depth of each component. */
+    private final int[] depths;
+
+    /** The index of every container that uses a particular extension. */
+    private final Map<Class<? extends Extension>, int[]> extensionIndex;
+
+    /** The index of every component that had a particular feature set when it was configured. */
+    private final Map<FeatureKey<?>, int[]> featureIndex;
+
+    /** The description of each component, or null if no component in the tree has a description. */
+    @Nullable
+    private final String[] descriptions;
+
+    /** The (exclusive) end of the subtree of each component. */
+    private final int[] ends;
+
+    /** The id of the name of each component in {@link #nameTable}. */
+    private final int[] nameIds;
+
+    /** All distinct names. */
+    private final String[] nameTable;
+
+    /** The index of the parent of each component, -1 for the root. */
+    private final int[] parents;
+
+    /** The path of each component, lazily created. */
+    @Nullable
+    private volatile PackedComponentPath[] paths;
+
+    /** The id of the configuration site of each component in {@link #siteTable}. */
+    private final int[] siteIds;
+
+    /** All distinct configuration sites. */
+    private final ConfigSite[] siteTable;
+
+    /** The id of the type of each component in {@link #typeTable}. */
+    private final int[] typeIds;
+
+    /** The index of every component ordered by type id, the components of type id t start at {@code typeOffsets[t]}. */
+    private final int[] typeIndex;
+
+    /** The offset into {@link #typeIndex} of each type id, has an additional element with the number of components. */
+    private final int[] typeOffsets;
+
+    /** Cached results of {@link #ofType(Class)}. */
+    private final ConcurrentHashMap<Class<?>, int[]> typeQueries = new ConcurrentHashMap<>();
+
+    /** All distinct component types. */
+    private final Class<?>[] typeTable;
+
+    /**
+     * Creates a new tree.
+     * 
+     * @param components
+     *            all components in pre-order
+     * @param parents
+     *            the index of the parent of each component, -1 for the root
+     */
+    ComponentTree(AbstractComponentConfiguration[] components, int[] parents) {
+        int size = components.length;
+        this.parents = parents;
+        this.depths = new int[size];
+        this.nameIds = new int[size];
+        this.siteIds = new int[size];
+        this.typeIds = new int[size];
+        this.ends = new int[size];
+
+        HashMap<String, Integer> names = new HashMap<>();
+        IdentityHashMap<ConfigSite, Integer> sites = new IdentityHashMap<>();
+        IdentityHashMap<Class<?>, Integer> types = new IdentityHashMap<>();
+        HashMap<Class<? extends Extension>, ArrayList<Integer>> extensions = new HashMap<>();
+        IdentityHashMap<FeatureKey<?>, ArrayList<Integer>> features = new IdentityHashMap<>();
+        String[] descriptions = null;
+        FeatureMap[] configuredFeatures = null;
+        for (int i = 0; i < size; i++) {
+            AbstractComponentConfiguration c = components[i];
+            depths[i] = c.depth();
+            nameIds[i] = names.computeIfAbsent(c.name, k -> names.size());
+            siteIds[i] = sites.computeIfAbsent(c.configSite(), k -> sites.size());
+            typeIds[i] = types.computeIfAbsent(c.componentType(), k -> types.size());
+            String description = c.getDescription();
+            if (description != null) {
+                if (descriptions == null) {
+                    descriptions = new String[size];
+                }
+                descriptions[i] = description;
+            }
+            if (c instanceof PackedContainerConfiguration) {
+                for (Class<? extends Extension> e : ((PackedContainerConfiguration) c).extensions.keySet()) {
+                    extensions.computeIfAbsent(e, k -> new ArrayList<>()).add(i);
+                }
+            }
+            FeatureMap fm = c.features();
+            if (!fm.keys().isEmpty()) {
+                if (configuredFeatures == null) {
+                    configuredFeatures = new FeatureMap[size];
+                }
+                FeatureMap copy = configuredFeatures[i] = new FeatureMap();
+                for (FeatureKey<?> f : fm.keys()) {
+                    features.computeIfAbsent(f, k -> new ArrayList<>()).add(i);
+                    copyFeature(f, fm, copy);
+                }
+            }
+            ends[i] = i + 1;
+        }
+        // Children are always after their parents, so we can propagate the end of each subtree in reverse order
+        for (int i = size - 1; i > 0; i--) {
+            int p = parents[i];
+            ends[p] = Math.max(ends[p], ends[i]);
+        }
+        this.descriptions = descriptions;
+        this.configuredFeatures = configuredFeatures;
+        this.nameTable = new String[names.size()];
+        names.forEach((k, v) -> nameTable[v] = k);
+        this.siteTable = new ConfigSite[sites.size()];
+        sites.forEach((k, v) -> siteTable[v] = k);
+        this.typeTable = new Class<?>[types.size()];
+        types.forEach((k, v) -> typeTable[v] = k);
+
+        // Group the components by type id using a counting sort, this keeps each group in pre-order
+        this.typeOffsets = new int[typeTable.length + 1];
+        for (int i = 0; i < size; i++) {
+            typeOffsets[typeIds[i] + 1]++;
+        }
+        for (int t = 0; t < typeTable.length; t++) {
+            typeOffsets[t + 1] += typeOffsets[t];
+        }
+        this.typeIndex = new int[size];
+        int[] next = Arrays.copyOf(typeOffsets, typeTable.length);
+        for (int i = 0; i < size; i++) {
+            typeIndex[next[typeIds[i]]++] = i;
+        }
+        this.extensionIndex = toIndex(new HashMap<>(), extensions);
+        this.featureIndex = toIndex(new IdentityHashMap<>(), features);
+    }
+
+    /**
+     * Copies the features the specified component had when it was configured into the specified map.
+     * 
+     * @param index
+     *            the index of the component
+     * @param to
+     *            the map to copy the features into
+     */
+    void copyConfiguredFeatures(int index, FeatureMap to) {
+        FeatureMap[] f = configuredFeatures;
+        FeatureMap from = f == null ? null : f[index];
+        if (from != null) {
+            for (FeatureKey<?> key : from.keys()) {
+                copyFeature(key, from, to);
+            }
+        }
+    }
+
+    private static <T> void copyFeature(FeatureKey<T> key, FeatureMap from, FeatureMap to) {
+        to.set(key, from.get(key));
+    }
+
+    ConfigSite configSite(int index) {
+        return siteTable[siteIds[index]];
+    }
+
+    int depth(int index) {
+        return depths[index];
+    }
+
+    @Nullable
+    String description(int index) {
+        String[] d = descriptions;
+        return d == null ? null : d[index];
+    }
+
+    /**
+     * Returns the (exclusive) end of the subtree of the specified component. The next sibling of a component, if any, is
+     * located at this index.
+     * 
+     * @param index
+     *            the index of the component
+     * @return the end of the subtree of the component
+     */
+    int end(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the index of the component at the specified relative path, or -1 if no such component exists. The path is a
+     * sequence of names separated by {@code '/'}, empty names (for example, from a leading {@code '/'}) are ignored. The
+     * path is matched directly against the names in the tree, so no objects are allocated.
+     * 
+     * @param index
+     *            the index of the component the path is relative to
+     * @param path
+     *            the path
+     * @return the index of the component, or -1 if no such component exists
+     */
+    int find(int index, CharSequence path) {
+        int length = path.length();
+        int c = index;
+        for (int start = 0; start < length && c >= 0;) {
+            int end = start;
+            while (end < length && path.charAt(end) != '/') {
+                end++;
+            }
+            if (end > start) {
+                c = findChild(c, path, start, end);
+            }
+            start = end + 1;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the index of the child whose name is equal to the specified region of a character sequence, or -1 if the
+     * component has no such child.
+     * 
+     * @param index
+     *            the index of the parent
+     * @param s
+     *            the character sequence containing the name of the child
+     * @param start
+     *            the start of the name (inclusive)
+     * @param end
+     *            the end of the name (exclusive)
+     * @return the index of the child, or -1 if no such child exists
+     */
+    private int findChild(int index, CharSequence s, int start, int end) {
+        int e = ends[index];
+        if (e - index > CHILD_INDEX_THRESHOLD) {
+            int[] table = childTable(index);
+            int mask = table.length - 1;
+            for (int i = spread(hash(s, start, end)) & mask;; i = (i + 1) & mask) {
+                int c = table[i] - 1;
+                if (c < 0 || nameEquals(c, s, start, end)) {
+                    return c;
+                }
+            }
+        }
+        for (int c = index + 1; c < e; c = ends[c]) {
+            if (nameEquals(c, s, start, end)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an open addressing hash table of the children of the specified component, creating it if needed. Each slot
+     * contains the index of a child + 1, or 0 if the slot is empty.
+     * 
+     * @param index
+     *            the index of the parent
+     * @return the hash table
+     */
+    private int[] childTable(int index) {
+        AtomicReferenceArray<int[]> tables = childTables;
+        if (tables == null) {
+            synchronized (this) {
+                tables = childTables;
+                if (tables == null) {
+                    tables = childTables = new AtomicReferenceArray<>(parents.length);
+                }
+            }
+        }
+        int[] table = tables.get(index);
+        if (table == null) {
+            int end = ends[index];
+            int count = 0;
+            for (int c = index + 1; c < end; c = ends[c]) {
+                count++;
+            }
+            table = new int[Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1];
+            int mask = table.length - 1;
+            for (int c = index + 1; c < end; c = ends[c]) {
+                int i = spread(nameTable[nameIds[c]].hashCode()) & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = c + 1;
+            }
+            tables.set(index, table);
+        }
+        return table;
+    }
+
+    /**
+     * Returns whether or not the name of the specified component is equal to the specified region of a character sequence.
+     * 
+     * @param index
+     *            the index of the component
+     * @param s
+     *            the character sequence
+     * @param start
+     *            the start of the region (inclusive)
+     * @param end
+     *            the end of the region (exclusive)
+     * @return whether or not the name is equal to the region
+     */
+    private boolean nameEquals(int index, CharSequence s, int start, int end) {
+        String name = nameTable[nameIds[index]];
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != s.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of every container in the tree that uses the specified extension, in pre-order.
+     * 
+     * @param extensionType
+     *            the type of extension
+     * @return the index of every container that uses the specified extension
+     */
+    int[] ofExtension(Class<? extends Extension> extensionType) {
+        return extensionIndex.getOrDefault(extensionType, NO_COMPONENTS);
+    }
+
+    /**
+     * Returns the index of every component in the tree that had the specified feature set when it was configured, in
+     * pre-order.
+     * 
+     * @param key
+     *            the feature key
+     * @return the index of every component that had the specified feature
+     */
+    int[] ofFeature(FeatureKey<?> key) {
+        return featureIndex.getOrDefault(key, NO_COMPONENTS);
+    }
+
+    /**
+     * Returns the index of every component in the tree whose type is assignable to the specified type, in pre-order. The
+     * result is computed from the type index the first time a particular type is queried, and cached afterwards.
+     * 
+     * @param type
+     *            the type to test against
+     * @return the index of every component whose type is assignable to the specified type
+     */
+    int[] ofType(Class<?> type) {
+        return typeQueries.computeIfAbsent(type, k -> {
+            int count = 0;
+            for (int t = 0; t < typeTable.length; t++) {
+                if (k.isAssignableFrom(typeTable[t])) {
+                    count += typeOffsets[t + 1] - typeOffsets[t];
+                }
+            }
+            int[] result = new int[count];
+            int pos = 0;
+            for (int t = 0; t < typeTable.length; t++) {
+                if (k.isAssignableFrom(typeTable[t])) {
+                    int length = typeOffsets[t + 1] - typeOffsets[t];
+                    System.arraycopy(typeIndex, typeOffsets[t], result, pos, length);
+                    pos += length;
+                }
+            }
+            // Each group is in pre-order, but groups of different types are interleaved in the tree
+            Arrays.sort(result);
+            return result;
+        });
+    }
+
+    /**
+     * Returns the name of the specified component. The name of the root may be overridden by {@link RuntimeComponentTree}.
+     * 
+     * @param index
+     *            the index of the component
+     * @return the name of the component
+     */
+    String name(int index) {
+        return nameTable[nameIds[index]];
+    }
+
+    int parent(int index) {
+        return parents[index];
+    }
+
+    /**
+     * Returns the path of the specified component. Paths are created lazily and cached, and each path is created from the
+     * (cached) path of its parent. So all paths of the tree form a trie that shares prefixes.
+     * 
+     * @param index
+     *            the index of the component
+     * @return the path of the component
+     */
+    PackedComponentPath path(int index) {
+        PackedComponentPath[] p = paths;
+        if (p == null) {
+            p = paths = new PackedComponentPath[parents.length];
+        }
+        PackedComponentPath path = p[index];
+        if (path == null) {
+            int parent = parents[index];
+            // Paths only have final fields, so they can safely be published via a race
+            path = p[index] = parent < 0 ? (PackedComponentPath) PackedComponentPath.ROOT : new PackedComponentPath(path(parent), name(index));
+        }
+        return path;
+    }
+
+    /**
+     * Returns the number of components in the tree.
+     * 
+     * @return the number of components in the tree
+     */
+    int size() {
+        return parents.length;
+    }
+
+    Class<?> type(int index) {
+        return typeTable[typeIds[index]];
+    }
+
+    /**
+     * Returns the hash of the specified region of a character sequence, the same value as {@link String#hashCode()} of the
+     * region.
+     * 
+     * @param s
+     *            the character sequence
+     * @param start
+     *            the start of the region (inclusive)
+     * @param end
+     *            the end of the region (exclusive)
+     * @return the hash of the region
+     */
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Converts a map of lists of component indexes to a map of index arrays.
+     * 
+     * @param <K>
+     *            the type of keys
+     * @param result
+     *            the map to add the arrays to
+     * @param lists
+     *            the lists of component indexes
+     * @return an unmodifiable view of the result
+     */
+    private static <K> Map<K, int[]> toIndex(Map<K, int[]> result, Map<K, ArrayList<Integer>> lists) {
+        if (lists.isEmpty()) {
+            return Map.of();
+        }
+        lists.forEach((k, v) -> result.put(k, v.stream().mapToInt(i -> i).toArray()));
+        return Collections.unmodifiableMap(result);
+    }
+}
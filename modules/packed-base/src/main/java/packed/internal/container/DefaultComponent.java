@@ -15,15 +15,12 @@
  */
 package packed.internal.container;
 
-import app.packed.artifact.ArtifactInstantiationContext;
 import app.packed.component.Component;
 
-/**
- *
- */
+/** A component without any runtime state. Instances are flyweights created on demand by {@link RuntimeComponentTree}. */
 final class DefaultComponent extends AbstractComponent implements Component {
 
-    DefaultComponent(AbstractComponent container, AbstractComponentConfiguration configuration, ArtifactInstantiationContext ic) {
-        super(container, configuration, ic);
+    DefaultComponent(RuntimeComponentTree tree, int index) {
+        super(tree, index);
     }
 }
@@ -15,7 +15,6 @@
  */
 package packed.internal.container;
 
-import app.packed.artifact.ArtifactInstantiationContext;
 import app.packed.component.ComponentConfiguration;
 import packed.internal.componentcache.ComponentClassDescriptor;
 import packed.internal.config.site.InternalConfigSite;
@@ -32,6 +31,12 @@ public abstract class DefaultComponentConfiguration extends AbstractComponentCon
         this.ccd = ccd;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    Class<?> componentType() {
+        return ccd.type();
+    }
+
     /** {@inheritDoc} */
     @Override
     public DefaultComponentConfiguration setDescription(String description) {
@@ -45,9 +50,4 @@ public abstract class DefaultComponentConfiguration extends AbstractComponentCon
         super.setName(name);
         return this;
     }
-
-    @Override
-    public AbstractComponent instantiate(AbstractComponent parent, ArtifactInstantiationContext ic) {
-        return new DefaultComponent(parent, this, ic);
-    }
 }
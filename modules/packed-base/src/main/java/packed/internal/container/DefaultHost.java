@@ -18,7 +18,6 @@ package packed.internal.container;
 import java.util.concurrent.ConcurrentHashMap;
 
 import app.packed.app.App;
-import app.packed.artifact.ArtifactInstantiationContext;
 
 /**
  *
@@ -30,7 +29,8 @@ public class DefaultHost extends AbstractComponent implements ComponentHolder {
     /**
      * @param configuration
      */
-    DefaultHost(AbstractComponentConfiguration configuration, ArtifactInstantiationContext ic) {
-        super(null, configuration, ic);
+    DefaultHost(AbstractComponentConfiguration configuration) {
+        super(new RuntimeComponentTree(new ComponentTree(new AbstractComponentConfiguration[] { configuration }, new int[] { -1 }), configuration.name), 0);
+        tree.materialize(this);
     }
 }
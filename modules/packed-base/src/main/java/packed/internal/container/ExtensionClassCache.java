@@ -23,10 +23,14 @@ import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InaccessibleObjectException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import app.packed.container.Extension;
 import app.packed.util.IllegalAccessRuntimeException;
 import app.packed.util.NativeImage;
+import app.packed.util.Nullable;
+import packed.internal.util.LambdaUtil;
 import packed.internal.util.StringFormatter;
 import packed.internal.util.ThrowableUtil;
 
@@ -49,9 +53,17 @@ final class ExtensionClassCache<T> {
         }
     };
 
-    /** The method handle used to create a new instance of the extension. */
+    /** The method handle used to create a new instance of the extension, if a lambda could not be spun. */
     private final MethodHandle constructor;
 
+    /** A spun function for extensions that needs a {@link PackedContainerConfiguration}, or null. */
+    @Nullable
+    private final Function<PackedContainerConfiguration, ?> function;
+
+    /** A spun supplier for extensions with a no-argument constructor, or null. */
+    @Nullable
+    private final Supplier<?> supplier;
+
     /** Whether or not the constructor needs an instanceof {@link PackedContainerConfiguration}. */
     private final boolean needsPackedContainerConfiguration;
 
@@ -90,6 +102,10 @@ final class ExtensionClassCache<T> {
                     + type.getModule().getName() + "' in which the extension is located must be 'open' to 'app.packed.base'", e);
         }
 
+        // Spinning a lambda is around 2 times faster than invoking the (non-constant) method handle
+        this.supplier = needsPackedContainerConfiguration ? null : LambdaUtil.supplierOf(constructor);
+        this.function = needsPackedContainerConfiguration ? LambdaUtil.functionOf(constructor) : null;
+
         NativeImage.registerConstructor(constructor);
     }
 
@@ -108,9 +124,11 @@ final class ExtensionClassCache<T> {
         ExtensionClassCache<T> ecc = (ExtensionClassCache<T>) CACHE.get(extensionType);
         try {
             if (ecc.needsPackedContainerConfiguration) {
-                return (T) ecc.constructor.invoke(pcc);
+                Function<PackedContainerConfiguration, ?> f = ecc.function;
+                return (T) (f == null ? ecc.constructor.invoke(pcc) : f.apply(pcc));
             } else {
-                return (T) ecc.constructor.invoke();
+                Supplier<?> s = ecc.supplier;
+                return (T) (s == null ? ecc.constructor.invoke() : s.get());
             }
         } catch (Throwable t) {
             ThrowableUtil.rethrowErrorOrRuntimeException(t);
@@ -20,7 +20,6 @@ import java.util.concurrent.CompletableFuture;
 import app.packed.artifact.ArtifactRuntimeContext;
 import app.packed.artifact.ArtifactInstantiationContext;
 import app.packed.inject.Injector;
-import app.packed.util.Nullable;
 import packed.internal.inject.ServiceNodeMap;
 import packed.internal.inject.runtime.DefaultInjector;
 
@@ -34,17 +33,21 @@ public final class PackedArtifactContext extends AbstractComponent implements Ar
     private final Injector injector;
 
     /**
-     * Creates a new container
+     * Creates a new container. The container registers itself with the specified tree.
      * 
-     * @param parent
-     *            the parent of the container if it is a non-root container
+     * @param tree
+     *            the tree the container is part of
+     * @param index
+     *            the index of the container in the tree
      * @param configuration
      *            the configuration of the container
      * @param instantiationContext
      *            the instantiation context of the container
      */
-    PackedArtifactContext(@Nullable AbstractComponent parent, PackedContainerConfiguration configuration, ArtifactInstantiationContext instantiationContext) {
-        super(parent, configuration, instantiationContext);
+    PackedArtifactContext(RuntimeComponentTree tree, int index, PackedContainerConfiguration configuration,
+            ArtifactInstantiationContext instantiationContext) {
+        super(tree, index);
+        tree.materialize(this);
         Injector i = instantiationContext.get(configuration, DefaultInjector.class);
         if (i == null) {
             i = new DefaultInjector(configuration, new ServiceNodeMap());
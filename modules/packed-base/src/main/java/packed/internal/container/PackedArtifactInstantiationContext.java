@@ -17,7 +17,7 @@ package packed.internal.container;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.IdentityHashMap;
+import java.util.Arrays;
 
 import app.packed.artifact.ArtifactInstantiationContext;
 import app.packed.container.ContainerConfiguration;
@@ -27,17 +27,25 @@ import app.packed.util.Nullable;
 /**
  * An instantiation context is created for every delimited tree hierachy.
  * <p>
+ * Context objects are stored in an array indexed by the position of the container in the
+ * {@link ArtifactInstantiationPlan plan} that is being instantiated. Instead of in a map per container.
+ * <p>
  * <strong>Note that this implementation is not synchronized.</strong>
  */
 // ArtifactInstantiationContext
 final class PackedArtifactInstantiationContext implements ArtifactInstantiationContext {
 
-    /** All context objects. */
-    private final IdentityHashMap<ContainerConfiguration, IdentityHashMap<Class<?>, Object>> map = new IdentityHashMap<>();
+    /** The plan that is being instantiated. */
+    private final ArtifactInstantiationPlan plan;
+
+    /** Alternating {@code Class, Object} entries for each container in the plan. Lazily initialized. */
+    private final Object[][] values;
 
     private final WireletList wirelets;
 
-    PackedArtifactInstantiationContext(WireletList wirelets) {
+    PackedArtifactInstantiationContext(ArtifactInstantiationPlan plan, WireletList wirelets) {
+        this.plan = requireNonNull(plan);
+        this.values = new Object[plan.containers.length][];
         this.wirelets = requireNonNull(wirelets);
     }
 
@@ -57,31 +65,54 @@ final class PackedArtifactInstantiationContext implements ArtifactInstantiationC
     public <T> T get(ContainerConfiguration configuration, Class<T> type) {
         requireNonNull(configuration, "configuration is null");
         requireNonNull(type, "type is null");
-        var e = map.get(configuration);
-        return e == null ? null : (T) e.get(type);
+        int index = plan.indexOf(configuration);
+        Object[] e = index < 0 ? null : values[index];
+        if (e != null) {
+            for (int i = 0; i < e.length && e[i] != null; i += 2) {
+                if (e[i] == type) {
+                    return (T) e[i + 1];
+                }
+            }
+        }
+        return null;
     }
 
     @Override
     public void put(ContainerConfiguration configuration, Object obj) {
         requireNonNull(configuration, "configuration is null");
         requireNonNull(obj, "obj is null");
-        map.computeIfAbsent(configuration, e -> new IdentityHashMap<>()).put(obj.getClass(), obj);
+        int index = plan.indexOf(configuration);
+        if (index < 0) {
+            throw new IllegalArgumentException("The specified configuration is not part of the artifact being instantiated");
+        }
+        Class<?> type = obj.getClass();
+        Object[] e = values[index];
+        if (e == null) {
+            e = values[index] = new Object[4];
+        }
+        int i = 0;
+        while (i < e.length && e[i] != null && e[i] != type) {
+            i += 2;
+        }
+        if (i == e.length) {
+            e = values[index] = Arrays.copyOf(e, e.length * 2);
+        }
+        e[i] = type;
+        e[i + 1] = obj;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T use(ContainerConfiguration configuration, Class<T> type) {
         requireNonNull(configuration, "configuration is null");
-        requireNonNull(type, "type is null");
-        var e = map.get(configuration);
-        if (e == null) {
+        int index = plan.indexOf(configuration);
+        if (index < 0 || values[index] == null) {
             throw new IllegalArgumentException();
         }
-        Object o = e.get(type);
-        if (o == null) {
+        T t = get(configuration, type);
+        if (t == null) {
             throw new IllegalStateException();
         }
-        return (T) o;
+        return t;
     }
 
     @Override
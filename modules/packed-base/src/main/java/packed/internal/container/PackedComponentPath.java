@@ -18,27 +18,81 @@ package packed.internal.container;
 import static java.util.Objects.requireNonNull;
 
 import java.util.Arrays;
-import java.util.StringJoiner;
 
 import app.packed.component.ComponentPath;
 import app.packed.util.Nullable;
 
-/** The default implementation of {@link ComponentPath}. */
+/**
+ * The default implementation of {@link ComponentPath}.
+ * <p>
+ * A path is a node in a trie, it only stores the name of its last element and a reference to the path of its parent. So
+ * paths that share a prefix share the objects representing the prefix, and {@link #parent()} never allocates. Paths of
+ * runtime components are interned per {@link ComponentTree}, so the path of a component is created at most once.
+ * <p>
+ * The hash code of a path is the hash code of its string representation, it is calculated incrementally from the hash
+ * code of the parent when the path is created.
+ */
 public final class PackedComponentPath implements ComponentPath {
+
     /** A component path representing the root of a hierarchy. */
-    //
     public static final ComponentPath ROOT = new PackedComponentPath();
 
-    private final String[] elements;
+    /** The number of elements in this path. */
+    private final int depth;
+
+    /** The hash code of this path. */
+    private final int hash;
 
-    /** The hash of this path, lazily calculated. */
-    private int hash;
+    /** The name of the last element of this path, or the empty string for the root. */
+    private final String name;
+
+    /** The parent of this path, or null if this path is the root. */
+    @Nullable
+    private final PackedComponentPath parent;
 
     /** String representation, created lazily */
     private volatile String string;
 
+    /**
+     * Creates a new path from the root with the specified elements.
+     * 
+     * @param elements
+     *            the elements of the path
+     */
     PackedComponentPath(String... elements) {
-        this.elements = requireNonNull(elements);
+        this(elements.length < 2 ? (PackedComponentPath) ROOT : new PackedComponentPath(Arrays.copyOf(elements, elements.length - 1)),
+                elements[elements.length - 1]);
+    }
+
+    /**
+     * Creates a new path.
+     * 
+     * @param parent
+     *            the parent path
+     * @param name
+     *            the name of the last element
+     */
+    PackedComponentPath(PackedComponentPath parent, String name) {
+        this.parent = requireNonNull(parent);
+        this.name = requireNonNull(name);
+        this.depth = parent.depth + 1;
+        int h = parent.hash;
+        if (parent.parent != null) {
+            h = 31 * h + '/';
+        }
+        for (int i = 0; i < name.length(); i++) {
+            h = 31 * h + name.charAt(i);
+        }
+        this.hash = h;
+    }
+
+    /** Creates the root path. */
+    private PackedComponentPath() {
+        this.parent = null;
+        this.name = "";
+        this.depth = 0;
+        this.hash = "/".hashCode();
+        this.string = "/";
     }
 
     /** {@inheritDoc} */
@@ -56,32 +110,29 @@ public final class PackedComponentPath implements ComponentPath {
     /** {@inheritDoc} */
     @Override
     public int depth() {
-        return elements.length;
+        return depth;
     }
 
     /** {@inheritDoc} */
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof PackedComponentPath) {
-            PackedComponentPath pcp = (PackedComponentPath) obj;
-            if (pcp.elements.length != elements.length) {
+        if (obj == this) {
+            return true;
+        } else if (obj instanceof PackedComponentPath) {
+            PackedComponentPath p = (PackedComponentPath) obj;
+            if (p.hash != hash || p.depth != depth) {
                 return false;
             }
-            for (int i = 0; i < elements.length; i++) {
-                if (!pcp.elements[i].equals(elements[i])) {
+            // Walk up until we reach a shared prefix, which is always the case for paths from the same tree
+            for (PackedComponentPath q = this; q != p; q = q.parent, p = p.parent) {
+                if (!q.name.equals(p.name)) {
                     return false;
                 }
             }
             return true;
         } else if (obj instanceof ComponentPath) {
-            ComponentPath pcp = (ComponentPath) obj;
-            if (pcp.depth() != elements.length) {
-                return false;
-            }
-            if (elements.length == 0) {
-                return true;
-            }
-            return pcp.toString().equals(toString());
+            ComponentPath p = (ComponentPath) obj;
+            return p.depth() == depth && p.toString().equals(toString());
         }
         return false;
     }
@@ -89,22 +140,13 @@ public final class PackedComponentPath implements ComponentPath {
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
-        int h = hash;
-        if (h == 0) {
-            for (String e : elements) {
-                for (int i = 0; i < e.length(); i++) {
-                    h = 31 * h + (e.charAt(i) & 0xff); // Do this work for UTF16?? or only Latin1
-                }
-            }
-            hash = h;
-        }
-        return h;
+        return hash;
     }
 
     /** {@inheritDoc} */
     @Override
     public boolean isRoot() {
-        return elements.length == 0;
+        return parent == null;
     }
 
     /** {@inheritDoc} */
@@ -116,10 +158,7 @@ public final class PackedComponentPath implements ComponentPath {
     /** {@inheritDoc} */
     @Override
     public @Nullable ComponentPath parent() {
-        if (isRoot()) {
-            return null;
-        }
-        return new PackedComponentPath(Arrays.copyOf(elements, elements.length - 1));
+        return parent;
     }
 
     /** {@inheritDoc} */
@@ -133,82 +172,19 @@ public final class PackedComponentPath implements ComponentPath {
     public String toString() {
         String s = string;
         if (s == null) {
-            StringJoiner sj = new StringJoiner("/", "/", "");
-            for (String ss : elements) {
-                sj.add(ss);
-            }
-
-            s = string = sj.toString();
+            s = string = parent.parent == null ? "/" + name : parent.toString() + "/" + name;
         }
         return s;
-
     }
 
     static ComponentPath of(AbstractComponent component) {
-        int depth = component.depth();
-        switch (depth) {
-        case 0:
-            return ROOT;
-        case 1:
-            return new PackedComponentPath(component.name());
-        default:
-            String[] paths = new String[depth];
-            AbstractComponent acc = component;
-            for (int i = depth - 1; i >= 0; i--) {
-                paths[i] = acc.name();
-                acc = acc.parent;
-            }
-            return new PackedComponentPath(paths);
-        }
+        return component.tree.tree.path(component.index);
     }
 
-    static ComponentPath of(AbstractComponentConfiguration cc) {
-        int depth = cc.depth();
-        switch (depth) {
-        case 0:
-            return ROOT;
-        case 1:
-            return new PackedComponentPath(cc.name);
-        default:
-            String[] paths = new String[depth];
-            AbstractComponentConfiguration acc = cc;
-            for (int i = depth - 1; i >= 0; i--) {
-                paths[i] = acc.name;
-                acc = acc.parent;
-            }
-            return new PackedComponentPath(paths);
+    static PackedComponentPath of(AbstractComponentConfiguration cc) {
+        if (cc.depth() == 0) {
+            return (PackedComponentPath) ROOT;
         }
+        return new PackedComponentPath(of(cc.parent), cc.name);
     }
 }
-/// ** {@inheritDoc} */
-// @Override
-// public String toString() {
-// String cached = this.cached;
-// if (cached != null) {
-// return cached;
-// }
-// if (component.parent == null) {
-// cached = "/";
-// } else {
-// StringBuilder sb = new StringBuilder();
-// toString(component, sb);
-// cached = sb.toString();
-// }
-// return this.cached = cached;
-// }
-//
-/// **
-// * Used for recursively constructing the path string.
-// *
-// * @param component
-// * the component to add
-// * @param sb
-// * the string builder to add to
-// */
-// private static void toString(AbstractComponent component, StringBuilder sb) {
-// if (component.parent != null) {
-// toString(component.parent, sb);
-// sb.append("/");
-// sb.append(component.name());
-// }
-// }
\ No newline at end of file
@@ -1,32 +1,49 @@
-/*
- * Copyright (c) 2008 Kasper Nielsen.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
 package packed.internal.container;
 
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import app.packed.component.Component;
 import app.packed.component.ComponentStream;
+import app.packed.container.Extension;
+import app.packed.feature.FeatureKey;
+import app.packed.util.Nullable;
 import packed.internal.util.AbstractDelegatingStream;
 
-/** The default implementation of {@link ComponentStream}. */
+/**
+ * The default implementation of {@link ComponentStream}.
+ * <p>
+ * A stream created directly from a {@link ComponentSpliterator} remembers the spliterator until another operation is
+ * applied. This allows depth limiting to be fused into the traversal of the component tree, and filtering on type,
+ * extension or feature to be answered from the indexes of the tree instead of being applied as filters on every
+ * component.
+ */
 final class PackedComponentStream extends AbstractDelegatingStream<Component> implements ComponentStream {
 
+    /** The spliterator the stream was created from, or null if any operations have been applied to the stream. */
+    @Nullable
+    private final ComponentSpliterator spliterator;
+
+    /**
+     * Creates a new component stream from the specified spliterator.
+     *
+     * @param spliterator
+     *            the spliterator to create the stream from
+     * @param parallel
+     *            whether or not the stream should be parallel
+     */
+    PackedComponentStream(ComponentSpliterator spliterator, boolean parallel) {
+        super(StreamSupport.stream(spliterator, parallel));
+        this.spliterator = spliterator;
+    }
+
     /**
      * Creates a new internal component stream.
      *
@@ -35,6 +52,7 @@ final class PackedComponentStream extends AbstractDelegatingStream<Component> im
      */
     PackedComponentStream(Stream<Component> stream) {
         super(stream);
+        this.spliterator = null;
     }
 
     /** {@inheritDoc} */
@@ -49,18 +67,87 @@ final class PackedComponentStream extends AbstractDelegatingStream<Component> im
         return with(stream.filter(predicate));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public ComponentStream filterOnDepth(int maxDepth) {
+        ComponentSpliterator s = spliterator;
+        if (s != null) {
+            return new PackedComponentStream(s.withMaxDepth(maxDepth), stream.isParallel());
+        }
+        return with(stream.filter(c -> c.depth() <= maxDepth));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ComponentStream filterOnExtension(Class<? extends Extension> extensionType) {
+        requireNonNull(extensionType, "extensionType is null");
+        return filterOnIndex(t -> t.ofExtension(extensionType),
+                c -> c instanceof PackedContainerConfiguration && ((PackedContainerConfiguration) c).extensions.containsKey(extensionType));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ComponentStream filterOnFeature(FeatureKey<?> key) {
+        requireNonNull(key, "key is null");
+        return filterOnIndex(t -> t.ofFeature(key), c -> c.features().keys().contains(key));
+    }
+
+    /**
+     * Filters the stream using one of the indexes of the component tree.
+     * 
+     * @param query
+     *            the query on the tree
+     * @param test
+     *            the test to use for components that are backed by a configuration instead of a tree
+     * @return the new stream
+     */
+    private ComponentStream filterOnIndex(Function<ComponentTree, int[]> query, Predicate<AbstractComponentConfiguration> test) {
+        ComponentSpliterator s = spliterator;
+        if (s != null) {
+            return new PackedComponentStream(s.withMatches(query), stream.isParallel());
+        }
+        return with(stream.filter(component -> {
+            if (component instanceof AbstractComponent) {
+                AbstractComponent c = (AbstractComponent) component;
+                return Arrays.binarySearch(query.apply(c.tree.tree), c.index) >= 0;
+            } else if (component instanceof ComponentConfigurationToComponentAdaptor) {
+                return test.test(((ComponentConfigurationToComponentAdaptor) component).componentConfiguration);
+            }
+            return false;
+        }));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ComponentStream filterOnType(Class<?> type) {
+        requireNonNull(type, "type is null");
+        return filterOnIndex(t -> t.ofType(type), c -> type.isAssignableFrom(c.componentType()));
+    }
+
     /** {@inheritDoc} */
     @Override
     public ComponentStream limit(long maxSize) {
         return with(stream.limit(maxSize));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public ComponentStream parallel() {
+        return spliterator == null ? with(stream.parallel()) : new PackedComponentStream(spliterator, true);
+    }
+
     /** {@inheritDoc} */
     @Override
     public ComponentStream peek(Consumer<? super Component> action) {
         return with(stream.peek(action));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public ComponentStream sequential() {
+        return spliterator == null ? with(stream.sequential()) : new PackedComponentStream(spliterator, false);
+    }
+
     /** {@inheritDoc} */
     @Override
     public ComponentStream skip(long n) {
@@ -54,16 +54,19 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
     final ContainerSource configurator;
 
     /** A configurator cache object, shared among container sources of the same type. */
-    private final ContainerConfiguratorCache configuratorCache;
+    final ContainerConfiguratorCache configuratorCache;
 
     /** All registered extensions, in order of registration. */
-    private final LinkedHashMap<Class<? extends Extension>, Extension> extensions = new LinkedHashMap<>();
+    final LinkedHashMap<Class<? extends Extension>, Extension> extensions = new LinkedHashMap<>();
 
     private HashMap<String, DefaultLayer> layers;
 
     /** A lookup object. shared among friendly people. */
     public ComponentLookup lookup;
 
+    /** The index of this container in the instantiation plan of the artifact. Set when the plan is created. */
+    int planIndex = -1;
+
     /** Any wirelets that was given by the user when creating this configuration. */
     private final WireletList wirelets;
 
@@ -97,6 +100,12 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
         return buildContext;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    Class<?> componentType() {
+        return configurator.configuratorType;
+    }
+
     public void buildDescriptor(BundleDescriptor.Builder builder) {
         doBuild();
         builder.setBundleDescription(getDescription());
@@ -108,7 +117,6 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
 
     public DefaultInjector buildInjector() {
         doBuild();
-        new PackedArtifactContext(null, this, new PackedArtifactInstantiationContext(wirelets));
         if (extensions.containsKey(InjectionExtension.class)) {
             return use(InjectionExtension.class).builder.publicInjector;
         } else {
@@ -126,6 +134,9 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
                 install(bundle);
             }
             AppPackedContainerSupport.invoke().doConfigure(bundle, this);
+            for (Class<?> c : configuratorCache.componentScan()) {
+                install(c);
+            }
         }
         // Initializes the name of the container, and sets the state to State.FINAL
         initializeName(State.FINAL, null);
@@ -140,13 +151,7 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
 
     public PackedArtifactContext doInstantiate(WireletList additionalWirelets) {
         // TODO support instantiation wirelets for images
-        PackedArtifactInstantiationContext pic = new PackedArtifactInstantiationContext(wirelets.plus(additionalWirelets));
-        extensionsPrepareInstantiation(pic);
-
-        // Will instantiate the whole container hierachy
-        PackedArtifactContext pc = new PackedArtifactContext(null, this, pic);
-        methodHandlePassing0(pc, pic);
-        return pc;
+        return ArtifactInstantiationPlan.of(this).instantiate(additionalWirelets);
     }
 
     /** {@inheritDoc} */
@@ -172,14 +177,6 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
         }
     }
 
-    @Override
-    void extensionsPrepareInstantiation(ArtifactInstantiationContext ic) {
-        for (Extension e : extensions.values()) {
-            e.onPrepareContainerInstantiate(ic);
-        }
-        super.extensionsPrepareInstantiation(ic);
-    }
-
     public ComponentConfiguration install(Class<?> implementation) {
         return install(Factory.findInjectable(implementation));
     }
@@ -227,10 +224,19 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
         return descriptor.initialize(this, dcc);
     }
 
-    /** {@inheritDoc} */
-    @Override
-    PackedArtifactContext instantiate(AbstractComponent parent, ArtifactInstantiationContext ic) {
-        return new PackedArtifactContext(parent, this, ic);
+    /**
+     * Creates a new container from this configuration. The container registers itself with the specified tree.
+     * 
+     * @param tree
+     *            the tree the container is part of
+     * @param index
+     *            the index of the container in the tree
+     * @param ic
+     *            the instantiation context
+     * @return the new container
+     */
+    PackedArtifactContext instantiate(RuntimeComponentTree tree, int index, ArtifactInstantiationContext ic) {
+        return new PackedArtifactContext(tree, index, this, ic);
     }
 
     public void link(Bundle bundle, Wirelet... wirelets) {
@@ -259,20 +265,6 @@ public final class PackedContainerConfiguration extends AbstractComponentConfigu
         this.lookup = lookup == null ? configuratorCache : configuratorCache.withLookup(lookup);
     }
 
-    private void methodHandlePassing0(AbstractComponent ac, ArtifactInstantiationContext ic) {
-        if (children != null) {
-            for (AbstractComponentConfiguration a : children.values()) {
-                AbstractComponent child = ac.children.get(a.name);
-                if (a instanceof PackedContainerConfiguration) {
-                    ((PackedContainerConfiguration) a).methodHandlePassing0(child, ic);
-                } else {
-                    DefaultComponentConfiguration dcc = (DefaultComponentConfiguration) a;
-                    dcc.ccd.process(this, ic);
-                }
-            }
-        }
-    }
-
     /** {@inheritDoc} */
     @Override
     public ContainerLayer newLayer(String name, ContainerLayer... dependencies) {
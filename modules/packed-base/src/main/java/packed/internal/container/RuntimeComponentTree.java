@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.container;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import app.packed.feature.FeatureMap;
+import app.packed.util.Nullable;
+
+/**
+ * The components of a single artifact. The structure of the artifact is kept in a shared {@link ComponentTree}. Only
+ * components with runtime state, such as containers, are instantiated eagerly. All other components are created as
+ * flyweights whenever they are requested, and are never stored. So any state that must survive between lookups of the
+ * same component, such as its features, is stored in this class indexed by component.
+ */
+final class RuntimeComponentTree {
+
+    /** The features of each component, lazily created. Most artifacts never access the features of any component. */
+    @Nullable
+    private volatile AtomicReferenceArray<FeatureMap> features;
+
+    /** All components that have been instantiated eagerly, indexed by their index in the tree. */
+    private final AbstractComponent[] materialized;
+
+    /** The name of the root component. */
+    private final String rootName;
+
+    /** The shared structure of the tree. */
+    final ComponentTree tree;
+
+    /**
+     * Creates a new runtime tree.
+     * 
+     * @param tree
+     *            the shared structure of the tree
+     * @param rootName
+     *            the name of the root component
+     */
+    RuntimeComponentTree(ComponentTree tree, String rootName) {
+        this.tree = requireNonNull(tree);
+        this.rootName = requireNonNull(rootName);
+        this.materialized = new AbstractComponent[tree.size()];
+    }
+
+    /**
+     * Returns the component with the specified index.
+     * 
+     * @param index
+     *            the index of the component
+     * @return the component with the specified index
+     */
+    AbstractComponent component(int index) {
+        AbstractComponent c = materialized[index];
+        return c == null ? new DefaultComponent(this, index) : c;
+    }
+
+    /**
+     * Returns the features of the component with the specified index, creating them if needed. The features are created
+     * with the features the component had when it was configured.
+     * 
+     * @param index
+     *            the index of the component
+     * @return the features of the component
+     */
+    FeatureMap features(int index) {
+        AtomicReferenceArray<FeatureMap> f = features;
+        if (f == null) {
+            synchronized (this) {
+                f = features;
+                if (f == null) {
+                    f = features = new AtomicReferenceArray<>(materialized.length);
+                }
+            }
+        }
+        FeatureMap m = f.get(index);
+        if (m == null) {
+            FeatureMap n = new FeatureMap();
+            tree.copyConfiguredFeatures(index, n);
+            m = f.compareAndExchange(index, null, n);
+            if (m == null) {
+                m = n;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Registers a component that has been instantiated eagerly.
+     * 
+     * @param component
+     *            the component
+     */
+    void materialize(AbstractComponent component) {
+        materialized[component.index] = component;
+    }
+
+    String name(int index) {
+        return index == 0 ? rootName : tree.name(index);
+    }
+}
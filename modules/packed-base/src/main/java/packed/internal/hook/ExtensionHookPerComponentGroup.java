@@ -19,6 +19,8 @@ import static java.util.Objects.requireNonNull;
 
 import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -41,8 +43,14 @@ import packed.internal.util.ThrowableUtil;
  */
 public final class ExtensionHookPerComponentGroup {
 
-    /** A list of callbacks for the particular extension. */
-    private final List<Callback> callbacks;
+    /** The type of a compiled callback chain. */
+    private static final MethodType CHAIN_TYPE = MethodType.methodType(void.class, Extension.class, ComponentConfiguration.class);
+
+    /** All callbacks for the particular extension compiled into a single method handle of type {@link #CHAIN_TYPE}. */
+    private final MethodHandle chain;
+
+    /** The number of callbacks in the chain. */
+    private final int numberOfCallbacks;
 
     /** The type of extension that will be activated. */
     private final Class<? extends Extension> extensionType;
@@ -52,11 +60,12 @@ public final class ExtensionHookPerComponentGroup {
     private ExtensionHookPerComponentGroup(Builder b) {
         this.extensionType = requireNonNull(b.extensionType);
         this.methodConsumers = List.copyOf(b.consumers);
-        this.callbacks = b.callbacks;
+        this.chain = compile(b.callbacks);
+        this.numberOfCallbacks = b.callbacks.size();
     }
 
     public int getNumberOfCallbacks() {
-        return callbacks.size();
+        return numberOfCallbacks;
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -64,15 +73,33 @@ public final class ExtensionHookPerComponentGroup {
         Extension extension = container.use((Class) extensionType);
 
         try {
-            for (Callback c : callbacks) {
-                c.mh.invoke(extension, cc, c.o);
-            }
+            chain.invokeExact(extension, cc);
         } catch (Throwable e) {
             ThrowableUtil.rethrowErrorOrRuntimeException(e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Compiles the specified callbacks into a single method handle that invokes each callback in order. The hook or
+     * aggregate of each callback is bound, so the resulting method handle only takes the extension and the component
+     * configuration.
+     * 
+     * @param callbacks
+     *            the callbacks to compile
+     * @return the compiled method handle
+     */
+    private static MethodHandle compile(List<Callback> callbacks) {
+        MethodHandle chain = MethodHandles.empty(CHAIN_TYPE);
+        for (int i = callbacks.size() - 1; i >= 0; i--) {
+            Callback c = callbacks.get(i);
+            MethodHandle mh = MethodHandles.insertArguments(c.mh, 2, c.o).asType(CHAIN_TYPE);
+            // A void combiner is invoked before the target, with the same arguments
+            chain = i == callbacks.size() - 1 ? mh : MethodHandles.foldArguments(chain, mh);
+        }
+        return chain;
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public static class Builder {
 
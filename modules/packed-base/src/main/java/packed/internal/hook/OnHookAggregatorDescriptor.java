@@ -36,6 +36,8 @@ import app.packed.hook.OnHook;
 import app.packed.util.IllegalAccessRuntimeException;
 import app.packed.util.InvalidDeclarationException;
 import app.packed.util.NativeImage;
+import app.packed.util.Nullable;
+import packed.internal.util.LambdaUtil;
 import packed.internal.util.StringFormatter;
 import packed.internal.util.ThrowableUtil;
 import packed.internal.util.TypeUtil;
@@ -68,9 +70,13 @@ final class OnHookAggregatorDescriptor {
     /** A map of all methods that takes a {@link AnnotatedMethodHook}. */
     final IdentityHashMap<Class<? extends Annotation>, MethodHandle> annotatedTypes;
 
-    /** A constructor for creating new aggregator instance. */
+    /** A constructor for creating new aggregator instance, if a lambda could not be spun. */
     private final MethodHandle constructor;
 
+    /** A spun supplier that creates new aggregator instances, or null. */
+    @Nullable
+    private final Supplier<Supplier<?>> factory;
+
     /** The type of result the aggregator produces. */
     private final Class<?> resultType;
 
@@ -82,6 +88,7 @@ final class OnHookAggregatorDescriptor {
      */
     private OnHookAggregatorDescriptor(Builder builder) {
         this.constructor = requireNonNull(builder.constructor);
+        this.factory = builder.factory;
         this.aggregatorType = builder.aggregatorType;
         this.resultType = builder.resultType;
         this.annotatedMethods = builder.annotatedMethods;
@@ -148,7 +155,8 @@ final class OnHookAggregatorDescriptor {
      */
     Supplier<?> newAggregatorInstance() {
         try {
-            return (Supplier<?>) constructor.invoke();
+            Supplier<Supplier<?>> f = factory;
+            return f == null ? (Supplier<?>) constructor.invoke() : f.get();
         } catch (Throwable e) {
             throw new RuntimeException(e);
         }
@@ -179,6 +187,9 @@ final class OnHookAggregatorDescriptor {
 
         private MethodHandle constructor;
 
+        @Nullable
+        private Supplier<Supplier<?>> factory;
+
         final Class<?> resultType;
 
         @SuppressWarnings({ "rawtypes" })
@@ -277,6 +288,8 @@ final class OnHookAggregatorDescriptor {
                         + "' must define at least one method annotated with @" + OnHook.class.getSimpleName());
             }
 
+            this.factory = LambdaUtil.supplierOf(constructor);
+
             // Register the constructor if we are generating a native image
             NativeImage.registerConstructor(constructor);
 
@@ -17,25 +17,39 @@ package packed.internal.inject;
 
 import static java.util.Objects.requireNonNull;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
-import app.packed.component.Component;
-import app.packed.inject.InjectionException;
 import app.packed.inject.Injector;
+import app.packed.inject.InjectorTemplate;
 import app.packed.inject.ProvideHelper;
+import app.packed.inject.ServiceHandle;
 import app.packed.util.Key;
 import app.packed.util.Nullable;
-import packed.internal.annotations.AtDependable;
 import packed.internal.componentcache.deprecated.ServiceClassDescriptor;
 import packed.internal.inject.util.InternalDependencyDescriptor;
-import packed.internal.invoke.FieldFunctionHandle;
 
 /** An abstract implementation of an injector. */
 public abstract class AbstractInjector implements Injector {
 
+    /**
+     * Injection plans for {@link #injectMembers(Object, MethodHandles.Lookup)}, created lazily for each descriptor. There
+     * is a single descriptor for each class, lookup class and lookup modes. The map itself is also created lazily, as most
+     * injectors never inject members.
+     */
+    @Nullable
+    private volatile ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> injectionPlans;
+
+    /** {@inheritDoc} */
+    @Override
+    public final <T> T bind(Class<T> type) {
+        requireNonNull(type, "type is null");
+        return type.cast(ServiceAccessorClass.of(type).newInstance(this));
+    }
+
     public abstract List<ServiceNode<?>> copyNodes();
 
     /**
@@ -67,14 +81,36 @@ public abstract class AbstractInjector implements Injector {
         return Optional.ofNullable(getInstanceOrNull(key));
     }
 
+    /**
+     * Returns an instance of the service with the specified key, or null if no such service exists.
+     * 
+     * @param <T>
+     *            the type of service
+     * @param key
+     *            the key of the service
+     * @return an instance of the service, or null if no such service exists
+     */
     @Nullable
-    private <T> T getInstanceOrNull(Class<T> key) {
-        requireNonNull(key, "key is null");
-        return getInstanceOrNull(Key.of(key));
+    protected <T> T getInstanceOrNull(Class<T> key) {
+        ServiceNode<T> n = findNode(key);
+        if (n == null) {
+            return null;
+        }
+        // Only create a ProvideHelper (and a key) if the node actually needs it
+        return n.getInstance(n.needsInjectionSite() ? ProvideHelper.of(this, Key.of(key)) : null);
     }
 
+    /**
+     * Returns an instance of the service with the specified key, or null if no such service exists.
+     * 
+     * @param <T>
+     *            the type of service
+     * @param key
+     *            the key of the service
+     * @return an instance of the service, or null if no such service exists
+     */
     @Nullable
-    private <T> T getInstanceOrNull(Key<T> key) {
+    protected <T> T getInstanceOrNull(Key<T> key) {
         ServiceNode<T> n = findNode(key);
         if (n == null) {
             return null;
@@ -82,6 +118,29 @@ public abstract class AbstractInjector implements Injector {
         return n.getInstance(ProvideHelper.of(this, key));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public final <T> ServiceHandle<T> handle(Class<T> key) {
+        ServiceNode<T> n = findNode(key);
+        if (n == null) {
+            failedGet(Key.of(key));
+            throw new UnsupportedOperationException("No service with the specified key could  be found, key = " + key);
+        }
+        return PackedServiceHandle.of(this, Key.of(key), n);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final <T> ServiceHandle<T> handle(Key<T> key) {
+        requireNonNull(key, "key is null");
+        ServiceNode<T> n = findNode(key);
+        if (n == null) {
+            failedGet(key);
+            throw new UnsupportedOperationException("No service with the specified key could  be found, key = " + key);
+        }
+        return PackedServiceHandle.of(this, key, n);
+    }
+
     /** {@inheritDoc} */
     @Override
     public final boolean hasService(Class<?> key) {
@@ -94,62 +153,53 @@ public abstract class AbstractInjector implements Injector {
         return findNode(key) != null;
     }
 
-    protected final void injectMembers(ServiceClassDescriptor descriptor, Object instance, @Nullable Component component) {
-        // Inject fields
-        if (!descriptor.inject.fields.isEmpty()) {
-            for (AtDependable atInject : descriptor.inject.fields) {
-                InternalDependencyDescriptor dependency = atInject.dependencies.get(0);
-                FieldFunctionHandle<?> field = (FieldFunctionHandle<?>) atInject.invokable;
-                ServiceNode<?> node = findNode(dependency.key());
-                if (node != null) {
-                    Object value = node.getInstance(this, dependency, component);
-                    value = dependency.wrapIfOptional(value);
-                    field.setOnInstance(instance, value);
-                } else if (dependency.isOptional()) {
-                    // 3 Valgmuligheder
-
-                    // Altid overskriv
-
-                    // Overskriv Optional, ikke for nullable
-
-                    // Aldrig overskriv
-
-                    // I think we want to set optional fields????
-                    // But not nullable
-                    // I think
-                    // if field == null, inject, otherwise leave to value
-                    // Hmm, should we override existing value???
-                    // For consistentsee reason yes, but hmm it is useful not to override
-                } else {
-                    String msg = "Could not find a valid value for " + dependency.key() + " on field " + field.toString();
-                    throw new InjectionException(msg);
-                }
-            }
+    /** {@inheritDoc} */
+    @Override
+    public final <T> T injectMembers(T instance, MethodHandles.Lookup lookup) {
+        requireNonNull(instance, "instance is null");
+        requireNonNull(lookup, "lookup is null");
+        ServiceClassDescriptor descriptor = ServiceClassDescriptor.from(lookup, instance.getClass());
+        ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> plans = injectionPlans();
+        InjectionPlan plan = plans.get(descriptor);
+        if (plan == null) {
+            plan = new InjectionPlan(this, descriptor);
+            plans.put(descriptor, plan);
         }
+        plan.inject(instance, this);
+        return instance;
+    }
 
-        // Inject methods
-        if (!descriptor.inject.methods.isEmpty()) {
-            for (AtDependable method : descriptor.inject.methods) {
-                Object[] arguments = new Object[method.dependencies.size()];
-                System.out.println(Arrays.toString(arguments));
-                for (InternalDependencyDescriptor dependency : method.dependencies) {
-                    ServiceNode<?> node = findNode(dependency.key());
-                    System.out.println(node);
-
-                }
-                System.out.println("Should have injected " + method);
-            }
+    /**
+     * Returns the injection plans of this injector.
+     * 
+     * @return the injection plans of this injector
+     */
+    ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> injectionPlans() {
+        ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> plans = injectionPlans;
+        if (plans == null) {
+            injectionPlans = plans = new ConcurrentHashMap<>(); // At worst we loose a few plans if racing
         }
+        return plans;
+    }
+
+    /**
+     * Returns a method handle of type {@code (AbstractInjector)Object} that provides the value of the specified dependency
+     * when injecting members. The injector that injects the members is passed to the method handle.
+     * 
+     * @param dependency
+     *            the dependency
+     * @return the method handle, or null if there is no service for the dependency
+     */
+    @Nullable
+    MethodHandle injectionValue(InternalDependencyDescriptor dependency) {
+        ServiceNode<?> node = findNode(dependency.key());
+        return node == null ? null : InjectionPlan.nodeValue(dependency, node);
     }
 
     /** {@inheritDoc} */
     @Override
-    public final <T> T injectMembers(T instance, MethodHandles.Lookup lookup) {
-        requireNonNull(instance, "instance is null");
-        requireNonNull(lookup, "lookup is null");
-        ServiceClassDescriptor scd = ServiceClassDescriptor.from(lookup, instance.getClass());
-        injectMembers(scd, instance, null);
-        return instance;
+    public final InjectorTemplate template(Key<?>... inputs) {
+        return new PackedInjectorTemplate(this, inputs);
     }
 
     /** {@inheritDoc} */
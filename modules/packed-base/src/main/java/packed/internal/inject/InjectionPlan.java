@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+import app.packed.inject.InjectionException;
+import app.packed.inject.Injector;
+import app.packed.inject.ProvideHelper;
+import app.packed.inject.ServiceDependency;
+import app.packed.util.InvalidDeclarationException;
+import app.packed.util.Nullable;
+import packed.internal.annotations.AtDependable;
+import packed.internal.componentcache.deprecated.ServiceClassDescriptor;
+import packed.internal.inject.runtime.RuntimeSingletonServiceNode;
+import packed.internal.inject.util.InternalDependencyDescriptor;
+import packed.internal.invoke.ExecutableFunctionHandle;
+import packed.internal.invoke.FieldFunctionHandle;
+import packed.internal.util.ThrowableUtil;
+
+/**
+ * A compiled plan for injecting the members of instances of a single class, as used by
+ * {@link AbstractInjector#injectMembers(Object, java.lang.invoke.MethodHandles.Lookup)}.
+ * <p>
+ * All dependencies are resolved via {@link AbstractInjector#injectionValue(InternalDependencyDescriptor)} when the plan
+ * is created. And all fields and methods that should be injected are compiled into a single method handle, that injects
+ * fields first and methods second, each in the order they were found. The injector that injects the members is passed
+ * to the method handle. So injectors that only differ in a few values, such as the injectors spawned from a template,
+ * can share a plan.
+ */
+final class InjectionPlan {
+
+    /** A method handle for {@link ServiceNode#getInstance(ProvideHelper)}. */
+    private static final MethodHandle GET_INSTANCE;
+
+    /** A method handle for {@link ProvideHelper#of(Injector, ServiceDependency)}. */
+    private static final MethodHandle PROVIDE_HELPER_OF;
+
+    /** The type of method handle returned by {@link #injectorValue(InternalDependencyDescriptor, MethodHandle)}. */
+    static final MethodType VALUE_TYPE = MethodType.methodType(Object.class, AbstractInjector.class);
+
+    /** A method handle for {@link InternalDependencyDescriptor#wrapIfOptional(Object)}. */
+    private static final MethodHandle WRAP_IF_OPTIONAL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GET_INSTANCE = lookup.findVirtual(ServiceNode.class, "getInstance", MethodType.methodType(Object.class, ProvideHelper.class));
+            PROVIDE_HELPER_OF = lookup.findStatic(ProvideHelper.class, "of",
+                    MethodType.methodType(ProvideHelper.class, Injector.class, ServiceDependency.class));
+            WRAP_IF_OPTIONAL = lookup.findVirtual(InternalDependencyDescriptor.class, "wrapIfOptional",
+                    MethodType.methodType(Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** A method handle of type {@code (Object, AbstractInjector)void} that injects all members of the specified instance. */
+    private final MethodHandle injector;
+
+    /**
+     * Creates a new plan.
+     *
+     * @param injector
+     *            the injector to resolve dependencies against
+     * @param descriptor
+     *            the descriptor of the class to inject into
+     * @throws InjectionException
+     *             if a mandatory dependency could not be resolved
+     * @throws InvalidDeclarationException
+     *             if a static method is annotated with {@link app.packed.inject.Inject}
+     */
+    InjectionPlan(AbstractInjector injector, ServiceClassDescriptor descriptor) {
+        List<AtDependable> fields = descriptor.inject.fields;
+        List<AtDependable> methods = descriptor.inject.methods;
+
+        // Fold from the back, so the members are injected in the order they were found
+        MethodHandle mh = MethodHandles.empty(MethodType.methodType(void.class, Object.class, AbstractInjector.class));
+        for (int i = methods.size() - 1; i >= 0; i--) {
+            mh = MethodHandles.foldArguments(mh, compileMethod(injector, methods.get(i)));
+        }
+        for (int i = fields.size() - 1; i >= 0; i--) {
+            MethodHandle field = compileField(injector, fields.get(i));
+            if (field != null) {
+                mh = MethodHandles.foldArguments(mh, field);
+            }
+        }
+        this.injector = mh;
+    }
+
+    /**
+     * Injects all members of the specified instance.
+     *
+     * @param instance
+     *            the instance to inject members into
+     * @param injector
+     *            the injector that injects the members
+     */
+    void inject(Object instance, AbstractInjector injector) {
+        try {
+            this.injector.invokeExact(instance, injector);
+        } catch (Throwable e) {
+            ThrowableUtil.rethrowErrorOrRuntimeException(e);
+            throw new InjectionException("Failed to inject members of " + instance.getClass(), e);
+        }
+    }
+
+    /**
+     * Returns a method handle of type {@code (Object, AbstractInjector)void} that sets the field, or null if it should be
+     * left untouched.
+     */
+    @Nullable
+    private static MethodHandle compileField(AbstractInjector injector, AtDependable atInject) {
+        InternalDependencyDescriptor dependency = atInject.dependencies.get(0);
+        FieldFunctionHandle<?> field = (FieldFunctionHandle<?>) atInject.invokable;
+        MethodHandle value = injector.injectionValue(dependency);
+        if (value == null) {
+            if (dependency.isOptional()) {
+                return null; // We never override existing values of optional fields
+            }
+            String msg = "Could not find a valid value for " + dependency.key() + " on field " + field.field;
+            throw new InjectionException(msg);
+        }
+        return MethodHandles.collectArguments(field.toSetter(), 1, value);
+    }
+
+    /** Returns a method handle of type {@code (Object, AbstractInjector)void} that invokes the method. */
+    private static MethodHandle compileMethod(AbstractInjector injector, AtDependable atInject) {
+        ExecutableFunctionHandle<?> method = (ExecutableFunctionHandle<?>) atInject.invokable;
+        if (method.isStatic()) {
+            // Static @Inject methods are factory methods, there is no instance to inject them on
+            throw new InvalidDeclarationException("Static methods annotated with @Inject cannot be used for injecting members, method = " + method
+                    + ", to resolve remove @Inject or make the method non-static");
+        }
+        List<InternalDependencyDescriptor> dependencies = atInject.dependencies;
+        int size = dependencies.size();
+        MethodHandle mh = method.toMethodHandle(size + 1);
+        mh = mh.asType(mh.type().changeReturnType(void.class));
+        // Collect from the back, so the position of the remaining parameters does not change
+        for (int i = size - 1; i >= 0; i--) {
+            InternalDependencyDescriptor dependency = dependencies.get(i);
+            MethodHandle value = injector.injectionValue(dependency);
+            if (value == null) {
+                if (!dependency.isOptional()) {
+                    String msg = "Could not find a valid value for " + dependency.key() + " on method " + atInject.invokable;
+                    throw new InjectionException(msg);
+                }
+                value = MethodHandles.dropArguments(MethodHandles.constant(Object.class, dependency.emptyValue()), 0, AbstractInjector.class);
+            }
+            mh = MethodHandles.collectArguments(mh, i + 1, value);
+        }
+        // Every value takes the injector, pass the same injector to all of them
+        int[] reorder = new int[size + 1];
+        for (int i = 1; i <= size; i++) {
+            reorder[i] = 1;
+        }
+        return MethodHandles.permuteArguments(mh, MethodType.methodType(void.class, Object.class, AbstractInjector.class), reorder);
+    }
+
+    /**
+     * Returns a method handle of type {@code (AbstractInjector)Object} that provides the value of the specified dependency
+     * from the specified node.
+     *
+     * @param dependency
+     *            the dependency
+     * @param node
+     *            the node that provides the value
+     * @return the method handle
+     */
+    static MethodHandle nodeValue(InternalDependencyDescriptor dependency, ServiceNode<?> node) {
+        MethodHandle mh;
+        if (node instanceof RuntimeSingletonServiceNode) {
+            mh = MethodHandles.constant(Object.class, dependency.wrapIfOptional(((RuntimeSingletonServiceNode<?>) node).get()));
+            return MethodHandles.dropArguments(mh, 0, AbstractInjector.class);
+        }
+        mh = GET_INSTANCE.bindTo(node);
+        if (node.needsInjectionSite()) {
+            // The injection site is created for the injector that injects the members
+            MethodHandle site = MethodHandles.insertArguments(PROVIDE_HELPER_OF, 1, dependency);
+            mh = MethodHandles.filterArguments(mh, 0, site.asType(MethodType.methodType(ProvideHelper.class, AbstractInjector.class)));
+        } else {
+            mh = MethodHandles.dropArguments(MethodHandles.insertArguments(mh, 0, (Object) null), 0, AbstractInjector.class);
+        }
+        return wrapIfOptional(dependency, mh);
+    }
+
+    /**
+     * Returns a method handle of type {@code (AbstractInjector)Object} that provides the value of the specified dependency
+     * from the injector that injects the members.
+     *
+     * @param dependency
+     *            the dependency
+     * @param getter
+     *            a method handle of type {@code (AbstractInjector)Object} that extracts the value from the injector
+     * @return the method handle
+     */
+    static MethodHandle injectorValue(InternalDependencyDescriptor dependency, MethodHandle getter) {
+        return wrapIfOptional(dependency, getter.asType(VALUE_TYPE));
+    }
+
+    private static MethodHandle wrapIfOptional(InternalDependencyDescriptor dependency, MethodHandle mh) {
+        if (dependency.isOptional()) {
+            mh = MethodHandles.filterReturnValue(mh, WRAP_IF_OPTIONAL.bindTo(dependency));
+        }
+        return mh;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import app.packed.inject.Injector;
+import app.packed.inject.InjectorTemplate;
+import app.packed.util.Key;
+import app.packed.util.Nullable;
+import packed.internal.componentcache.deprecated.ServiceClassDescriptor;
+import packed.internal.util.TypeUtil;
+
+/** The default implementation of {@link InjectorTemplate}. */
+final class PackedInjectorTemplate implements InjectorTemplate {
+
+    /** The raw class of each input key without a qualifier and whose type is not parameterized, otherwise null. */
+    final Class<?>[] classes;
+
+    /** The input keys. */
+    final Key<?>[] keys;
+
+    /**
+     * Injection plans shared by all spawned injectors. Plans read the input values from the spawned injector that injects
+     * the members, so they do not depend on a particular set of values. Created lazily.
+     */
+    @Nullable
+    private volatile ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> injectionPlans;
+
+    /** The input keys as an immutable list. */
+    private final List<Key<?>> inputs;
+
+    /** The injector that spawned injectors delegates to. */
+    final AbstractInjector parent;
+
+    /** The (boxed) raw type of each input key, used for validating input values. */
+    private final Class<?>[] types;
+
+    /**
+     * Creates a new template.
+     * 
+     * @param parent
+     *            the injector the template is created from
+     * @param inputs
+     *            the input keys
+     */
+    PackedInjectorTemplate(AbstractInjector parent, Key<?>... inputs) {
+        this.parent = requireNonNull(parent);
+        this.inputs = List.of(requireNonNull(inputs, "inputs is null")); // checks for null keys
+        this.keys = inputs.clone();
+        this.classes = new Class<?>[keys.length];
+        this.types = new Class<?>[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (keys[i].equals(keys[j])) {
+                    throw new IllegalArgumentException("The same key was specified more than once, key = " + keys[i]);
+                }
+            }
+            classes[i] = ServiceNodeTable.rawClassOf(keys[i]);
+            types[i] = TypeUtil.boxClass(keys[i].typeLiteral().rawType());
+        }
+    }
+
+    /**
+     * Returns the injection plans that are shared by all spawned injectors.
+     * 
+     * @return the injection plans that are shared by all spawned injectors
+     */
+    ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> injectionPlans() {
+        ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> plans = injectionPlans;
+        if (plans == null) {
+            injectionPlans = plans = new ConcurrentHashMap<>(); // At worst we loose a few plans if racing
+        }
+        return plans;
+    }
+
+    /**
+     * Returns the index of the input with the specified unqualified class, or -1 if there is no such input.
+     * 
+     * @param type
+     *            the (boxed) class to find
+     * @return the index of the input, or -1 if there is no such input
+     */
+    int indexOf(Class<?> type) {
+        Class<?>[] c = classes;
+        for (int i = 0; i < c.length; i++) {
+            if (c[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the input with the specified key, or -1 if there is no such input.
+     * 
+     * @param key
+     *            the key to find
+     * @return the index of the input, or -1 if there is no such input
+     */
+    int indexOf(Key<?> key) {
+        Class<?> rawClass = ServiceNodeTable.rawClassOf(key);
+        if (rawClass != null) {
+            return indexOf(rawClass);
+        }
+        Key<?>[] k = keys;
+        for (int i = 0; i < k.length; i++) {
+            if (k[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Key<?>> inputs() {
+        return inputs;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Injector parent() {
+        return parent;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Injector spawn(Object... values) {
+        requireNonNull(values, "values is null");
+        if (values.length != keys.length) {
+            throw new IllegalArgumentException("Expected " + keys.length + " values, but was " + values.length + ", inputs = " + inputs);
+        }
+        Object[] v = values.clone(); // Guard against later modifications of the array
+        for (int i = 0; i < v.length; i++) {
+            Object o = v[i];
+            if (o == null) {
+                throw new NullPointerException("values[" + i + "] is null");
+            } else if (!types[i].isInstance(o)) {
+                throw new IllegalArgumentException(
+                        "Expected an instance of " + types[i].getName() + " for " + keys[i] + ", but was an instance of " + o.getClass().getName());
+            }
+        }
+        return new SpawnedInjector(this, v);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "InjectorTemplate" + inputs;
+    }
+}
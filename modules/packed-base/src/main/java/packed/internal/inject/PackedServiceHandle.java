@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import static java.util.Objects.requireNonNull;
+
+import app.packed.inject.Injector;
+import app.packed.inject.ProvideHelper;
+import app.packed.inject.ServiceHandle;
+import app.packed.util.Key;
+import app.packed.util.Nullable;
+import packed.internal.inject.runtime.RuntimeSingletonServiceNode;
+
+/** The default implementation of {@link ServiceHandle}. */
+abstract class PackedServiceHandle<T> implements ServiceHandle<T> {
+
+    /** The key of the service. */
+    private final Key<T> key;
+
+    /**
+     * Creates a new handle.
+     * 
+     * @param key
+     *            the key of the service
+     */
+    PackedServiceHandle(Key<T> key) {
+        this.key = requireNonNull(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final Key<T> key() {
+        return key;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final String toString() {
+        return "ServiceHandle[" + key + "]";
+    }
+
+    /**
+     * Creates a new handle for the specified node.
+     * 
+     * @param <T>
+     *            the type of service
+     * @param injector
+     *            the injector the node was resolved from
+     * @param key
+     *            the key the node was resolved for
+     * @param node
+     *            the resolved node
+     * @return a new handle
+     */
+    static <T> ServiceHandle<T> of(Injector injector, Key<T> key, ServiceNode<T> node) {
+        if (node instanceof RuntimeSingletonServiceNode) {
+            return new OfInstance<>(key, ((RuntimeSingletonServiceNode<T>) node).get());
+        }
+        // The injection site never changes, so we only need to create it once
+        return new OfNode<>(key, node, node.needsInjectionSite() ? ProvideHelper.of(injector, key) : null);
+    }
+
+    /** A handle for a service that is always the same instance. */
+    static final class OfInstance<T> extends PackedServiceHandle<T> {
+
+        /** The service instance. */
+        private final T instance;
+
+        OfInstance(Key<T> key, T instance) {
+            super(key);
+            this.instance = requireNonNull(instance);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T get() {
+            return instance;
+        }
+    }
+
+    /** A handle that delegates to a service node. */
+    static final class OfNode<T> extends PackedServiceHandle<T> {
+
+        /** The node to delegate to. */
+        private final ServiceNode<T> node;
+
+        /** The injection site, or null if the node does not need one. */
+        @Nullable
+        private final ProvideHelper site;
+
+        OfNode(Key<T> key, ServiceNode<T> node, @Nullable ProvideHelper site) {
+            super(key);
+            this.node = requireNonNull(node);
+            this.site = site;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T get() {
+            return node.getInstance(site);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import static packed.internal.thirdparty.asm.Opcodes.AALOAD;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_FINAL;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_PRIVATE;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_PUBLIC;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_SUPER;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_SYNTHETIC;
+import static packed.internal.thirdparty.asm.Opcodes.ALOAD;
+import static packed.internal.thirdparty.asm.Opcodes.CHECKCAST;
+import static packed.internal.thirdparty.asm.Opcodes.GETFIELD;
+import static packed.internal.thirdparty.asm.Opcodes.INVOKEINTERFACE;
+import static packed.internal.thirdparty.asm.Opcodes.INVOKESPECIAL;
+import static packed.internal.thirdparty.asm.Opcodes.INVOKEVIRTUAL;
+import static packed.internal.thirdparty.asm.Opcodes.IRETURN;
+import static packed.internal.thirdparty.asm.Opcodes.PUTFIELD;
+import static packed.internal.thirdparty.asm.Opcodes.RETURN;
+import static packed.internal.thirdparty.asm.Opcodes.V11;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import app.packed.inject.Injector;
+import app.packed.inject.ServiceHandle;
+import app.packed.util.InvalidDeclarationException;
+import app.packed.util.Key;
+import packed.internal.thirdparty.asm.ClassWriter;
+import packed.internal.thirdparty.asm.MethodVisitor;
+import packed.internal.thirdparty.asm.Type;
+import packed.internal.util.TypeUtil;
+
+/**
+ * A generated implementation of an accessor interface, as used by {@link Injector#bind(Class)}.
+ * <p>
+ * For every abstract method of the interface the generated class has a final field holding a {@link ServiceHandle} for
+ * the key of the method. And the method itself does nothing but invoke the handle and cast the result. The class is
+ * generated once per interface and defined in the package of the interface. Each invocation of
+ * {@link #newInstance(Injector)} then resolves the handles for a particular injector.
+ */
+final class ServiceAccessorClass {
+
+    /** A cache of accessor classes. */
+    private static final ClassValue<ServiceAccessorClass> CACHE = new ClassValue<>() {
+
+        /** {@inheritDoc} */
+        @Override
+        protected ServiceAccessorClass computeValue(Class<?> type) {
+            return new ServiceAccessorClass(type);
+        }
+    };
+
+    /** Used for naming generated classes, as a class value might generate the same class more than once. */
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private static final String HANDLE = Type.getInternalName(ServiceHandle.class);
+
+    private static final String HANDLE_DESCRIPTOR = Type.getDescriptor(ServiceHandle.class);
+
+    /** The constructor of the generated class, of type {@code (ServiceHandle[])Object}. */
+    private final MethodHandle constructor;
+
+    /** The key of each method, in the order the handles are passed to the constructor. */
+    private final Key<?>[] keys;
+
+    /**
+     * Generates a class implementing the specified interface.
+     * 
+     * @param type
+     *            the interface to implement
+     */
+    private ServiceAccessorClass(Class<?> type) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException("The specified type must be an interface, type = " + type);
+        }
+        ArrayList<Method> methods = abstractMethodsOf(type);
+        this.keys = new Key<?>[methods.size()];
+
+        String className = Type.getInternalName(type) + "$$PackedAccessor" + COUNTER.incrementAndGet();
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V11, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, "java/lang/Object", new String[] { Type.getInternalName(type) });
+
+        MethodVisitor init = cw.visitMethod(0, "<init>", "([" + HANDLE_DESCRIPTOR + ")V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+
+        for (int i = 0; i < keys.length; i++) {
+            Method m = methods.get(i);
+            if (m.getParameterCount() > 0) {
+                throw new InvalidDeclarationException("The methods of an accessor interface cannot have parameters, method = " + m);
+            }
+            keys[i] = Key.fromMethodReturnType(m);
+            String field = "h" + i;
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, field, HANDLE_DESCRIPTOR, null, null).visitEnd();
+
+            init.visitVarInsn(ALOAD, 0);
+            init.visitVarInsn(ALOAD, 1);
+            init.visitLdcInsn(i);
+            init.visitInsn(AALOAD);
+            init.visitFieldInsn(PUTFIELD, className, field, HANDLE_DESCRIPTOR);
+
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, m.getName(), Type.getMethodDescriptor(m), null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, field, HANDLE_DESCRIPTOR);
+            mv.visitMethodInsn(INVOKEINTERFACE, HANDLE, "get", "()Ljava/lang/Object;", true);
+            Class<?> returnType = m.getReturnType();
+            Class<?> boxed = TypeUtil.boxClass(returnType);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(boxed));
+            if (returnType.isPrimitive()) {
+                mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(boxed), returnType.getName() + "Value", "()" + Type.getDescriptor(returnType), false);
+            }
+            mv.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+        cw.visitEnd();
+
+        try {
+            // Define the class in the package of the interface, so it works for non-public interfaces as well
+            Injector.class.getModule().addReads(type.getModule());
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            Class<?> c = lookup.defineClass(cw.toByteArray());
+            MethodHandle mh = lookup.findConstructor(c, MethodType.methodType(void.class, ServiceHandle[].class));
+            this.constructor = mh.asType(MethodType.methodType(Object.class, ServiceHandle[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("The package of " + type + " must be open to " + Injector.class.getModule(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not generate an implementation of " + type, e);
+        }
+    }
+
+    /**
+     * Creates a new instance of the generated class, resolving the service of every method from the specified injector.
+     * 
+     * @param injector
+     *            the injector to resolve services from
+     * @return a new instance of the generated class
+     * @throws UnsupportedOperationException
+     *             if the injector does not provide a service for every method
+     */
+    Object newInstance(Injector injector) {
+        ServiceHandle<?>[] handles = new ServiceHandle<?>[keys.length];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = injector.handle(keys[i]);
+        }
+        try {
+            return (Object) constructor.invokeExact(handles);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create an instance of a generated accessor", e);
+        }
+    }
+
+    /**
+     * Returns the accessor class for the specified interface, generating it if needed.
+     * 
+     * @param type
+     *            the interface
+     * @return the accessor class
+     */
+    static ServiceAccessorClass of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Returns all abstract methods of the specified interface, including inherited ones, in a deterministic order.
+     * Abstract redeclarations of the public methods of {@link Object} are ignored.
+     */
+    private static ArrayList<Method> abstractMethodsOf(Class<?> type) {
+        ArrayList<Method> result = new ArrayList<>();
+        HashSet<String> seen = new HashSet<>();
+        for (Method m : type.getMethods()) {
+            if (Modifier.isAbstract(m.getModifiers()) && !isObjectMethod(m) && seen.add(m.getName() + Type.getMethodDescriptor(m))) {
+                result.add(m);
+            }
+        }
+        result.sort(Comparator.comparing(m -> m.getName() + Type.getMethodDescriptor(m)));
+        return result;
+    }
+
+    private static boolean isObjectMethod(Method m) {
+        try {
+            Object.class.getMethod(m.getName(), m.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
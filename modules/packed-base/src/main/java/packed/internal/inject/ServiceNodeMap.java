@@ -27,6 +27,7 @@ import java.util.stream.Stream;
 import app.packed.inject.ServiceDependency;
 import app.packed.util.Key;
 import app.packed.util.Nullable;
+import packed.internal.util.TypeUtil;
 
 /**
  *
@@ -35,6 +36,10 @@ public class ServiceNodeMap implements Iterable<ServiceNode<?>> {
 
     private final HashMap<Key<?>, ServiceNode<?>> nodes = new HashMap<>();
 
+    /** A frozen lookup table created by {@link #toRuntimeNodes()}, or null if this map has not been frozen. */
+    @Nullable
+    private ServiceNodeTable table;
+
     /** Any parent this node map might have */
     @Nullable
     public final ServiceNodeMap parent;
@@ -64,9 +69,33 @@ public class ServiceNodeMap implements Iterable<ServiceNode<?>> {
         return getRecursive(dependency.key());
     }
 
+    /**
+     * Returns the node for the specified unqualified class. If this map has been frozen, the node is found by identity
+     * without creating a {@link Key}.
+     * 
+     * @param <T>
+     *            the type of service
+     * @param type
+     *            the class to lookup
+     * @return the node, or null if no node exists for the specified class in this map or any of its parents
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ServiceNode<T> getRecursive(Class<T> type) {
+        ServiceNodeTable t = table;
+        if (t == null) {
+            return getRecursive(Key.of(type));
+        }
+        ServiceNode<T> node = (ServiceNode<T>) t.get(type.isPrimitive() ? TypeUtil.boxClass(type) : type);
+        if (node == null && parent != null) {
+            return parent.getRecursive(type);
+        }
+        return node;
+    }
+
     @SuppressWarnings("unchecked")
     public <T> ServiceNode<T> getRecursive(Key<T> type) {
-        ServiceNode<T> node = (ServiceNode<T>) nodes.get(type);
+        ServiceNodeTable t = table;
+        ServiceNode<T> node = (ServiceNode<T>) (t == null ? nodes.get(type) : t.get(type));
         if (node == null && parent != null) {
             return parent.getRecursive(type);
         }
@@ -82,19 +111,26 @@ public class ServiceNodeMap implements Iterable<ServiceNode<?>> {
     public void put(ServiceNode<?> node) {
         requireNonNull(node.key());
         nodes.put(node.key(), node);
+        table = null; // any modification invalidates the frozen table
     }
 
     public boolean putIfAbsent(ServiceNode<?> node) {
         requireNonNull(node.key());
-        return nodes.putIfAbsent(node.key(), node) == null;
+        if (nodes.putIfAbsent(node.key(), node) == null) {
+            table = null;
+            return true;
+        }
+        return false;
     }
 
     public Stream<ServiceNode<?>> stream() {
         return nodes.values().stream();
     }
 
+    /** Converts all nodes to runtime nodes, and freezes this map into a table optimized for lookups. */
     public void toRuntimeNodes() {
         nodes.replaceAll((k, v) -> v.toRuntimeNode());
+        table = new ServiceNodeTable(nodes.values());
     }
 
     @Override
@@ -107,19 +143,13 @@ public class ServiceNodeMap implements Iterable<ServiceNode<?>> {
 // We will probably have a couple of maps
 // One for 1 entry, one for no entries, etc? Want to be able to a quick newInjector(String.class,"ssdd);
 
-// For the big one.
-// We use an array of twos.
-// With good hashfunctions, we should get almost no collisions.
-// If we have Keys or type literals created from a raw type. It is unpacked before it is stored.
-// In this we can just search for identity when calling get(Class<?>) as classes are internalized.
-
-// The same goes with TypeLiteral, if it does not have an annotation. Unpack it.
+// The big one is implemented in ServiceNodeTable.
+// Unqualified keys of a raw type are unpacked and stored by their class, so get(Class<?>) just searches for identity
+// as classes are internalized. Everything else is stored by key in a secondary table.
 
 // For some of the comples types, we can have an int switch in the type indicating
 // what kind type is and provide faster equals, und so weiter.
 
-// If key or typeliteral is a rawtype, it should have the same hashcode as the rawtype
-
 // The wildcard things are going to be slow:(
 // Maybe have a special map implementation that searches differently because it knows about wildcards
 
@@ -128,4 +158,4 @@ public class ServiceNodeMap implements Iterable<ServiceNode<?>> {
 
 // Or maybe we store it in a special value.
 // So we have the generic + All its specialized (if any)
-// The hashcode would be of the raw type
\ No newline at end of file
+// The hashcode would be of the raw type
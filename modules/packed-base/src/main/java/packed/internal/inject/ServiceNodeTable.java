@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.reflect.Type;
+
+import app.packed.util.Key;
+import app.packed.util.Nullable;
+
+/**
+ * An immutable open-addressing table of service nodes. Created by {@link ServiceNodeMap#toRuntimeNodes()} once all
+ * nodes have been converted to runtime nodes.
+ * <p>
+ * Keys without a qualifier whose type is a raw class are stored by their {@link Class}. As classes are unique, they can
+ * be probed by identity without creating a {@link Key}. All other keys (qualified or parameterized) are stored in a
+ * secondary table that uses {@link Key#hashCode()} and {@link Key#equals(Object)}.
+ * <p>
+ * Both tables are arrays of alternating keys and nodes, with a load factor of at most 0.5. So a successful lookup is
+ * typically a single probe touching a single cache line.
+ */
+final class ServiceNodeTable {
+
+    /** An empty array used for tables with no entries. */
+    private static final Object[] EMPTY = new Object[2];
+
+    /** Alternating {@code Class, ServiceNode} entries for all unqualified raw class keys. */
+    private final Object[] classes;
+
+    /** Alternating {@code Key, ServiceNode} entries for all qualified or parameterized keys. */
+    private final Object[] keys;
+
+    /** The number of nodes in this table. */
+    private final int size;
+
+    /**
+     * Creates a new table.
+     *
+     * @param nodes
+     *            the nodes to add, if multiple nodes have the same key the first one is used
+     */
+    ServiceNodeTable(Iterable<? extends ServiceNode<?>> nodes) {
+        int classCount = 0;
+        int keyCount = 0;
+        for (ServiceNode<?> n : nodes) {
+            if (rawClassOf(n.key()) != null) {
+                classCount++;
+            } else {
+                keyCount++;
+            }
+        }
+        Object[] classes = classCount == 0 ? EMPTY : new Object[tableLength(classCount)];
+        Object[] keys = keyCount == 0 ? EMPTY : new Object[tableLength(keyCount)];
+        int size = 0;
+        for (ServiceNode<?> n : nodes) {
+            Key<?> key = requireNonNull(n.key());
+            Class<?> rawClass = rawClassOf(key);
+            boolean added = rawClass == null ? insert(keys, key, key.hashCode(), n) : insert(classes, rawClass, System.identityHashCode(rawClass), n);
+            if (added) {
+                size++;
+            }
+        }
+        this.classes = classes;
+        this.keys = keys;
+        this.size = size;
+    }
+
+    /**
+     * Returns the node for the specified unqualified class, or null if no such node exists.
+     *
+     * @param type
+     *            the (boxed) class to lookup
+     * @return the node, or null if no such node exists
+     */
+    @Nullable
+    ServiceNode<?> get(Class<?> type) {
+        Object[] tab = classes;
+        int mask = tab.length - 1;
+        int i = index(System.identityHashCode(type), mask);
+        for (;;) {
+            Object k = tab[i];
+            if (k == type) {
+                return (ServiceNode<?>) tab[i + 1];
+            } else if (k == null) {
+                return null;
+            }
+            i = (i + 2) & mask;
+        }
+    }
+
+    /**
+     * Returns the node for the specified key, or null if no such node exists.
+     *
+     * @param key
+     *            the key to lookup
+     * @return the node, or null if no such node exists
+     */
+    @Nullable
+    ServiceNode<?> get(Key<?> key) {
+        Class<?> rawClass = rawClassOf(key);
+        if (rawClass != null) {
+            return get(rawClass);
+        }
+        Object[] tab = keys;
+        int mask = tab.length - 1;
+        int i = index(key.hashCode(), mask);
+        for (;;) {
+            Object k = tab[i];
+            if (k == null) {
+                return null;
+            } else if (k == key || k.equals(key)) {
+                return (ServiceNode<?>) tab[i + 1];
+            }
+            i = (i + 2) & mask;
+        }
+    }
+
+    /**
+     * Returns the number of nodes in this table.
+     *
+     * @return the number of nodes in this table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the first slot to probe for the specified hash.
+     *
+     * @param hash
+     *            the hash
+     * @param mask
+     *            the length of the table - 1
+     * @return the (even) index to start probing from
+     */
+    private static int index(int hash, int mask) {
+        return ((hash ^ (hash >>> 16)) << 1) & mask;
+    }
+
+    private static boolean insert(Object[] tab, Object key, int hash, ServiceNode<?> node) {
+        int mask = tab.length - 1;
+        int i = index(hash, mask);
+        for (;;) {
+            Object k = tab[i];
+            if (k == null) {
+                tab[i] = key;
+                tab[i + 1] = node;
+                return true;
+            } else if (k.equals(key)) {
+                return false; // first node wins
+            }
+            i = (i + 2) & mask;
+        }
+    }
+
+    /**
+     * Returns the raw class of the specified key if it has no qualifier and its type is not parameterized. Otherwise null.
+     *
+     * @param key
+     *            the key
+     * @return the raw class of the key, or null
+     */
+    @Nullable
+    static Class<?> rawClassOf(Key<?> key) {
+        if (key.hasQualifier()) {
+            return null;
+        }
+        Type t = key.typeLiteral().type();
+        return t instanceof Class ? (Class<?>) t : null;
+    }
+
+    /**
+     * Returns the length of an array that can hold the specified number of entries with a load factor of at most 0.5.
+     *
+     * @param entries
+     *            the number of entries
+     * @return the length of the array (always a power of two)
+     */
+    private static int tableLength(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1;
+        return capacity * 2;
+    }
+}
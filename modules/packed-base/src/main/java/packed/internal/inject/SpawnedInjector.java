@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import app.packed.config.ConfigSite;
+import app.packed.inject.Injector;
+import app.packed.inject.ServiceDescriptor;
+import app.packed.util.Key;
+import app.packed.util.Nullable;
+import packed.internal.componentcache.deprecated.ServiceClassDescriptor;
+import packed.internal.inject.runtime.RuntimeSingletonServiceNode;
+import packed.internal.inject.util.InternalDependencyDescriptor;
+import packed.internal.util.KeyBuilder;
+import packed.internal.util.TypeUtil;
+
+/**
+ * An injector spawned from an {@link PackedInjectorTemplate}. Provides the input values of the template, and delegates
+ * everything else to the parent of the template.
+ * <p>
+ * To keep spawning cheap, this class only holds the template and the input values. Nodes for the input values are only
+ * created if they are explicitly needed, for example, via {@link #handle(Key)} or {@link #services()}.
+ */
+final class SpawnedInjector extends AbstractInjector {
+
+    /** A method handle for {@link #input(int)}. */
+    private static final MethodHandle INPUT;
+
+    static {
+        try {
+            INPUT = MethodHandles.lookup().findVirtual(SpawnedInjector.class, "input", MethodType.methodType(Object.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** The template this injector was spawned from. */
+    private final PackedInjectorTemplate template;
+
+    /** The input values, in the same order as the keys of the template. */
+    private final Object[] values;
+
+    /**
+     * Creates a new injector.
+     * 
+     * @param template
+     *            the template the injector was spawned from
+     * @param values
+     *            the (validated) input values
+     */
+    SpawnedInjector(PackedInjectorTemplate template, Object[] values) {
+        this.template = template;
+        this.values = values;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ConfigSite configSite() {
+        return template.parent.configSite();
+    }
+
+    @Override
+    public List<ServiceNode<?>> copyNodes() {
+        ArrayList<ServiceNode<?>> result = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            result.add(inputNode(i));
+        }
+        for (ServiceNode<?> n : template.parent.copyNodes()) {
+            if (template.indexOf(n.key()) < 0) {
+                result.add(n);
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<String> description() {
+        return template.parent.description();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable
+    protected <T> ServiceNode<T> findNode(Class<T> key) {
+        requireNonNull(key, "key is null");
+        Class<T> type = TypeUtil.boxClass(key);
+        int index = template.indexOf(type);
+        if (index >= 0) {
+            return inputNode(index);
+        } else if (type == Injector.class) {
+            return injectorNode();
+        }
+        return template.parent.findNode(type);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @Nullable
+    protected <T> ServiceNode<T> findNode(Key<T> key) {
+        int index = template.indexOf(key);
+        if (index >= 0) {
+            return inputNode(index);
+        } else if (key.equals(KeyBuilder.INJECTOR_KEY)) {
+            return injectorNode();
+        }
+        return template.parent.findNode(key);
+    }
+
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override
+    @Nullable
+    protected <T> T getInstanceOrNull(Class<T> key) {
+        int index = template.indexOf(TypeUtil.boxClass(key));
+        if (index >= 0) {
+            return (T) values[index];
+        } else if (key == Injector.class) {
+            return (T) this;
+        }
+        return super.getInstanceOrNull(key);
+    }
+
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override
+    @Nullable
+    protected <T> T getInstanceOrNull(Key<T> key) {
+        int index = template.indexOf(key);
+        if (index >= 0) {
+            return (T) values[index];
+        }
+        return super.getInstanceOrNull(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    ConcurrentHashMap<ServiceClassDescriptor, InjectionPlan> injectionPlans() {
+        return template.injectionPlans();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The plans are shared by all injectors spawned from the same template. So input values and the injector itself are
+     * read from the injector that injects the members, while everything else is resolved against the parent.
+     */
+    @Override
+    @Nullable
+    MethodHandle injectionValue(InternalDependencyDescriptor dependency) {
+        Key<?> key = dependency.key();
+        int index = template.indexOf(key);
+        if (index >= 0) {
+            return InjectionPlan.injectorValue(dependency, MethodHandles.insertArguments(INPUT, 1, index));
+        } else if (key.equals(KeyBuilder.INJECTOR_KEY)) {
+            return InjectionPlan.injectorValue(dependency, MethodHandles.identity(AbstractInjector.class));
+        }
+        // Do not use template.parent.injectionValue(), as the parent might itself be spawned
+        ServiceNode<?> node = template.parent.findNode(key);
+        return node == null ? null : InjectionPlan.nodeValue(dependency, node);
+    }
+
+    /**
+     * Returns the input value with the specified index.
+     * 
+     * @param index
+     *            the index of the input
+     * @return the input value
+     */
+    private Object input(int index) {
+        return values[index];
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <T> ServiceNode<T> injectorNode() {
+        return new RuntimeSingletonServiceNode(configSite(), KeyBuilder.INJECTOR_KEY, this);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <T> ServiceNode<T> inputNode(int index) {
+        return new RuntimeSingletonServiceNode(configSite(), template.keys[index], values[index]);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Stream<ServiceDescriptor> services() {
+        Stream<ServiceDescriptor> inputs = Stream.iterate(0, i -> i < values.length, i -> i + 1).map(this::inputNode);
+        return Stream.concat(inputs, template.parent.services().filter(d -> template.indexOf(d.key()) < 0));
+    }
+}
@@ -51,8 +51,14 @@ public abstract class BuildServiceNode<T> implements ServiceNode<T> {
 
     public String description;
 
-    /** A flag used to detect cycles in the dependency graph. */
-    boolean detectCycleVisited;
+    /** The order in which the node was visited by {@link DependencyGraphCycleDetector}, or 0 if not visited yet. */
+    int detectCycleIndex;
+
+    /** The smallest index of any node known to be reachable from this node, used by {@link DependencyGraphCycleDetector}. */
+    int detectCycleLowLink;
+
+    /** Whether or not the node is on the stack of {@link DependencyGraphCycleDetector}. */
+    boolean detectCycleOnStack;
 
     /** Whether or this node contains a dependency on {@link ProvideHelper}. */
     final boolean hasDependencyOnInjectionSite;
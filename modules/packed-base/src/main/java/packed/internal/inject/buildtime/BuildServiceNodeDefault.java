@@ -60,6 +60,12 @@ public class BuildServiceNodeDefault<T> extends BuildServiceNode<T> {
     /** The instantiation mode of this node. */
     private InstantiationMode instantionMode;
 
+    /**
+     * Whether or not instances might be created by multiple threads in parallel. Set by
+     * {@link DependencyGraphParallelInstantiator} before it starts creating instances.
+     */
+    boolean parallel;
+
     /** The parent, if this node is the result of a member annotated with {@link Provide}. */
     private final BuildServiceNodeDefault<?> parent;
 
@@ -127,11 +133,32 @@ public class BuildServiceNodeDefault<T> extends BuildServiceNode<T> {
             return newInstance();
         }
 
-        T i = instance;
-        if (i == null) {
-            instance = i = newInstance();
+        if (!parallel) {
+            T i = instance;
+            if (i == null) {
+                instance = i = newInstance();
+            }
+            return i;
+        }
+        // Singletons are being created in parallel, see DependencyGraphParallelInstantiator.
+        // Locks are always acquired in dependency order, and the graph has no cycles. So we cannot deadlock.
+        synchronized (this) {
+            T i = instance;
+            if (i == null) {
+                instance = i = newInstance();
+            }
+            return i;
         }
-        return i;
+    }
+
+    /**
+     * Returns whether or not this node has an instance, either because it was created from an instance or because the
+     * instance has already been created.
+     * 
+     * @return whether or not this node has an instance
+     */
+    final synchronized boolean hasInstance() {
+        return instance != null;
     }
 
     public BuildServiceNodeDefault<T> instantiateAs(InstantiationMode mode) {
@@ -18,9 +18,9 @@ package packed.internal.inject.buildtime;
 import static java.util.Objects.requireNonNull;
 
 import java.lang.invoke.MethodHandles;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.StringJoiner;
 
 import app.packed.inject.InjectionException;
 import app.packed.inject.Injector;
@@ -41,6 +41,9 @@ public final class DependencyGraph {
     /** A list of nodes to use when detecting dependency cycles. */
     ArrayList<BuildServiceNode<?>> detectCyclesFor;
 
+    /** All nodes that needs resolving in topological order, dependencies first. Set when detecting cycles. */
+    List<BuildServiceNode<?>> instantiationOrder;
+
     /** The root injector builder. */
     final PackedContainerConfiguration root;
 
@@ -91,33 +94,29 @@ public final class DependencyGraph {
     }
 
     /**
-     * Tries to find a dependency cycle.
+     * Tries to find dependency cycles.
      *
      * @throws InjectionException
-     *             if a dependency cycle was detected
+     *             if one or more dependency cycles were detected
      */
     public void dependencyCyclesDetect() {
-        DependencyCycle c = dependencyCyclesFind();
-        if (c != null) {
-            throw new InjectionException("Dependency cycle detected: " + c);
+        List<DependencyCycle> cycles = dependencyCyclesFind();
+        if (cycles.size() == 1) {
+            throw new InjectionException("Dependency cycle detected: " + cycles.get(0));
+        } else if (!cycles.isEmpty()) {
+            StringJoiner sj = new StringJoiner(", ", cycles.size() + " dependency cycles detected: [", "]");
+            cycles.forEach(c -> sj.add(c.toString()));
+            throw new InjectionException(sj.toString());
         }
     }
 
-    DependencyCycle dependencyCyclesFind() {
+    List<DependencyCycle> dependencyCyclesFind() {
         if (detectCyclesFor == null) {
             throw new IllegalStateException("Must resolve nodes before detecting cycles");
         }
-        ArrayDeque<BuildServiceNode<?>> stack = new ArrayDeque<>();
-        ArrayDeque<BuildServiceNode<?>> dependencies = new ArrayDeque<>();
-        for (BuildServiceNode<?> node : detectCyclesFor) {
-            if (!node.detectCycleVisited) { // only process those nodes that have not been visited yet
-                DependencyCycle dc = DependencyGraphCycleDetector.detectCycle(node, stack, dependencies);
-                if (dc != null) {
-                    return dc;
-                }
-            }
-        }
-        return null;
+        DependencyGraphCycleDetector detector = DependencyGraphCycleDetector.detect(detectCyclesFor);
+        instantiationOrder = detector.order;
+        return detector.cycles;
     }
 
     public void instantiate() {
@@ -126,12 +125,17 @@ public final class DependencyGraph {
         // Instantiate all singletons
         // System.out.println(root.box.services().exports);
 
-        for (ServiceNode<?> node : ib.nodes) {
-            if (node instanceof BuildServiceNodeDefault) {
-                BuildServiceNodeDefault<?> s = (BuildServiceNodeDefault<?>) node;
-                if (s.instantiationMode() == InstantiationMode.SINGLETON) {
-                    s.getInstance(null);// getInstance() caches the new instance, newInstance does not
-                }
+        ParallelInstantiationWirelet parallel = root.wirelets().findLastOrNull(ParallelInstantiationWirelet.class);
+        if (parallel != null) {
+            DependencyGraphParallelInstantiator.instantiate(instantiationOrder, ib.nodes, parallel.listener);
+        } else {
+            // Start with the nodes in topological order, so all dependencies of a node have been created before the node itself.
+            // Instead of creating them recursively from the node.
+            for (BuildServiceNode<?> node : instantiationOrder) {
+                instantiateIfSingleton(node);
+            }
+            for (ServiceNode<?> node : ib.nodes) {
+                instantiateIfSingleton(node);
             }
         }
 
@@ -140,6 +144,21 @@ public final class DependencyGraph {
         if (ib.nodes != ib.exports) {
             ib.exports.toRuntimeNodes();
         }
+        if (root.wirelets().findLastOrNull(GenerateDispatcherWirelet.class) != null) {
+            ib.privateInjector.generateDispatcher();
+            if (ib.publicInjector != ib.privateInjector) {
+                ib.publicInjector.generateDispatcher();
+            }
+        }
+    }
+
+    private static void instantiateIfSingleton(ServiceNode<?> node) {
+        if (node instanceof BuildServiceNodeDefault) {
+            BuildServiceNodeDefault<?> s = (BuildServiceNodeDefault<?>) node;
+            if (s.instantiationMode() == InstantiationMode.SINGLETON) {
+                s.getInstance(null);// getInstance() caches the new instance, newInstance does not
+            }
+        }
     }
 
     // Requirements -> cannot require any exposed services, or internally registered services...
@@ -19,98 +19,195 @@ import static java.util.Objects.requireNonNull;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
-import app.packed.inject.InjectionException;
+import app.packed.util.Nullable;
 import packed.internal.inject.ServiceNode;
 
-/** A utility class that can find cycles in a dependency graph. */
+/**
+ * Finds all cycles in a dependency graph, using an iterative version of Tarjan's strongly connected components
+ * algorithm. The graph is processed in a single pass, in time linear in the number of nodes and dependencies, and
+ * without recursion. So it works for arbitrary long chains of dependencies.
+ * <p>
+ * As a side effect the detector produces a topological order of all nodes, where each node comes after all of its
+ * dependencies. Which is exactly the order singletons can be instantiated in.
+ */
 final class DependencyGraphCycleDetector {
 
+    /** All cycles that was found, one for each strongly connected component that is not a single node. */
+    final ArrayList<DependencyCycle> cycles = new ArrayList<>();
+
+    /** The number of nodes visited so far. */
+    private int index;
+
+    /** All visited nodes in topological order, dependencies before the nodes that depend on them. */
+    final ArrayList<BuildServiceNode<?>> order = new ArrayList<>();
+
+    /** The stack of nodes that have not yet been assigned to a strongly connected component. */
+    private final ArrayDeque<BuildServiceNode<?>> stack = new ArrayDeque<>();
+
+    private DependencyGraphCycleDetector() {}
+
+    /** Emits the strongly connected component rooted at the specified node. */
+    private void emitComponent(BuildServiceNode<?> root, boolean selfLoop) {
+        int start = order.size();
+        BuildServiceNode<?> n;
+        do {
+            n = stack.pop();
+            n.detectCycleOnStack = false;
+            order.add(n);
+        } while (n != root);
+        if (order.size() - start > 1 || selfLoop) {
+            cycles.add(findCycle(root, order.subList(start, order.size())));
+        }
+    }
+
+    /** Visits all nodes reachable from the specified node that have not already been visited. */
+    private void visit(BuildServiceNode<?> node) {
+        ArrayDeque<Frame> frames = new ArrayDeque<>();
+        frames.push(push(node));
+        while (!frames.isEmpty()) {
+            Frame f = frames.peek();
+            BuildServiceNode<?> v = f.node;
+            if (f.next < v.resolvedDependencies.length) {
+                BuildServiceNode<?> w = target(v.resolvedDependencies[f.next++]);
+                if (w == null) {
+                    continue;
+                } else if (w == v) {
+                    f.selfLoop = true;
+                } else if (w.detectCycleIndex == 0) {
+                    frames.push(push(w));
+                } else if (w.detectCycleOnStack) {
+                    v.detectCycleLowLink = Math.min(v.detectCycleLowLink, w.detectCycleIndex);
+                }
+            } else {
+                frames.pop();
+                Frame parent = frames.peek();
+                if (parent != null) {
+                    parent.node.detectCycleLowLink = Math.min(parent.node.detectCycleLowLink, v.detectCycleLowLink);
+                }
+                if (v.detectCycleLowLink == v.detectCycleIndex) {
+                    emitComponent(v, f.selfLoop);
+                }
+            }
+        }
+    }
+
+    private Frame push(BuildServiceNode<?> node) {
+        node.detectCycleIndex = node.detectCycleLowLink = ++index;
+        node.detectCycleOnStack = true;
+        stack.push(node);
+        return new Frame(node);
+    }
+
     /**
-     * Recursively invoked for each node.
-     *
-     * @param stack
-     *            the stack of all visited dependencies so far
-     * @param dependencies
-     *            the stack of locally visited dependencies so far
-     * @param node
-     *            the node to visit
-     * @return stuff
-     * @throws InjectionException
-     *             if there is a cycle in the graph
+     * Detects all cycles among the specified nodes and their dependencies. Nodes that have already been visited by a
+     * previous invocation are ignored.
+     * 
+     * @param nodes
+     *            the nodes to start from
+     * @return the detector, containing any cycles that was found and the topological order of all visited nodes
      */
-    static DependencyCycle detectCycle(BuildServiceNode<?> node, ArrayDeque<BuildServiceNode<?>> stack, ArrayDeque<BuildServiceNode<?>> dependencies) {
-        stack.push(node);
-        for (int i = 0; i < node.resolvedDependencies.length; i++) {
-            ServiceNode<?> dependency = node.resolvedDependencies[i];
-            if (dependency instanceof BuildServiceNode) {
-                BuildServiceNode<?> to = (BuildServiceNode<?>) dependency;
-                // If the dependency is a @Provides method, we need to use the declaring node
-                BuildServiceNode<?> owner = to.declaringNode();
-                if (owner != null) {
-                    to = owner;
-                }
+    static DependencyGraphCycleDetector detect(List<? extends BuildServiceNode<?>> nodes) {
+        DependencyGraphCycleDetector d = new DependencyGraphCycleDetector();
+        for (BuildServiceNode<?> node : nodes) {
+            if (node.detectCycleIndex == 0) { // only process those nodes that have not been visited yet
+                d.visit(node);
+            }
+        }
+        return d;
+    }
 
-                if (to.needsResolving() && to instanceof BuildServiceNodeDefault) {
-                    BuildServiceNodeDefault<?> ic = (BuildServiceNodeDefault<?>) to;
-                    if (!ic.detectCycleVisited) {
-                        dependencies.push(to);
-                        // See if the component is already on the stack -> A cycle has been detected
-                        if (stack.contains(to)) {
-                            // clear links not part of the circle, for example, for A->B->C->B we want to remove A
-                            while (stack.peekLast() != to) {
-                                stack.pollLast();
-                                dependencies.pollLast();
-                            }
-                            return new DependencyCycle(dependencies);
-                        }
-                        DependencyCycle cycle = detectCycle(ic, stack, dependencies);
-                        if (cycle != null) {
-                            return cycle;
-                        }
-                        dependencies.pop();
-                    }
+    /**
+     * Finds a single cycle in a strongly connected component, by following dependencies that stay within the component
+     * until a node is seen for the second time.
+     */
+    private static DependencyCycle findCycle(BuildServiceNode<?> root, List<BuildServiceNode<?>> component) {
+        Set<BuildServiceNode<?>> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        members.addAll(component);
+        IdentityHashMap<BuildServiceNode<?>, Integer> positions = new IdentityHashMap<>();
+        ArrayList<BuildServiceNode<?>> path = new ArrayList<>();
+        BuildServiceNode<?> n = root;
+        while (!positions.containsKey(n)) {
+            positions.put(n, path.size());
+            path.add(n);
+            BuildServiceNode<?> next = null;
+            for (ServiceNode<?> d : n.resolvedDependencies) {
+                BuildServiceNode<?> w = target(d);
+                if (w != null && members.contains(w)) {
+                    next = w;
+                    break;
                 }
             }
+            n = requireNonNull(next); // every node in a strongly connected component has a dependency in the component
+        }
+        ArrayList<BuildServiceNode<?>> cycle = new ArrayList<>(path.subList(positions.get(n), path.size()));
+        cycle.add(n);
+        return new DependencyCycle(cycle);
+    }
+
+    /**
+     * Returns the node that must be created before the specified dependency can be provided, if it is part of the graph.
+     * Otherwise null.
+     */
+    @Nullable
+    private static BuildServiceNode<?> target(@Nullable ServiceNode<?> dependency) {
+        if (dependency instanceof BuildServiceNode) {
+            BuildServiceNode<?> to = (BuildServiceNode<?>) dependency;
+            // If the dependency is a @Provides method, we need to use the declaring node
+            BuildServiceNode<?> owner = to.declaringNode();
+            if (owner != null) {
+                to = owner;
+            }
+            if (to.needsResolving() && to instanceof BuildServiceNodeDefault) {
+                return to;
+            }
         }
-        stack.pop(); // assert stack.pop() == node
-        node.detectCycleVisited = true;
         return null;
     }
 
     /** A class indicating a dependency cycle. */
     public static class DependencyCycle {
 
-        final ArrayDeque<BuildServiceNode<?>> dependencies;
+        /** The nodes of the cycle, where each node depends on the next node. The first and last node are identical. */
+        final List<BuildServiceNode<?>> dependencies;
 
-        DependencyCycle(ArrayDeque<BuildServiceNode<?>> dependencies) {
+        DependencyCycle(List<BuildServiceNode<?>> dependencies) {
             this.dependencies = requireNonNull(dependencies);
         }
 
         @Override
         public String toString() {
-            ArrayList<BuildServiceNode<?>> list = new ArrayList<>(dependencies);
-            // This method does not yet support Provides methods
-
             // Try checking this out and running some examples, it should have better error messages.
             // https://github.com/cakeframework/cake-container/blob/23d7f3a083a0fc08efbe45dad0016d5195450a0c/modules/org.cakeframework.base/src/main/java/cake/internal/inject/ErrorMessages.java
-
             StringBuilder sb = new StringBuilder();
-
-            // Should be BuildNodeFactory instead, but now mirror is gone...Maybe put it back again
-            // BuildNodeFactory<?> s = (BuildNodeFactory<?>) list.get(0);
-            // Collections.reverse(list);
-
-            // Uncomments the 3
-            // sb.append(format(s.factory.mirror.getType()));
-            for (BuildServiceNode<?> n : list) {
-                System.out.println(n);
-                sb.append(" -");
-                // s = (BuildNodeOldFactory<?>) n;
-                // sb.append("> ").append(format(s.factory.mirror.getType()));
+            for (BuildServiceNode<?> n : dependencies) {
+                if (sb.length() > 0) {
+                    sb.append(" -> ");
+                }
+                sb.append(n);
             }
-
             return sb.toString();
         }
     }
+
+    /** A node that is being visited, and the index of the next dependency of the node to visit. */
+    private static final class Frame {
+
+        /** The index of the next dependency to visit. */
+        int next;
+
+        /** The node that is being visited. */
+        final BuildServiceNode<?> node;
+
+        /** Whether or not the node depends on itself. */
+        boolean selfLoop;
+
+        Frame(BuildServiceNode<?> node) {
+            this.node = node;
+        }
+    }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.buildtime;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ManagedBlocker;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import app.packed.inject.InstantiationMode;
+import app.packed.inject.ServiceDescriptor;
+import app.packed.util.Nullable;
+import packed.internal.inject.ServiceNode;
+import packed.internal.util.ThrowableUtil;
+
+/**
+ * Instantiates all singletons of a dependency graph in parallel. Selected by {@link ParallelInstantiationWirelet}.
+ * <p>
+ * Every singleton is assigned a level: nodes without any dependencies have level 0, all other nodes have a level that is
+ * one higher than the highest level of any of their dependencies. Nodes with the same level cannot depend on each other.
+ * So all singletons of a level are created in parallel on the common {@link java.util.concurrent.ForkJoinPool}, one level
+ * at a time. Lazy services that are shared between singletons of the same level are guarded by
+ * {@link BuildServiceNodeDefault#getInstance(packed.internal.inject.ProvideHelper)} and are only created once.
+ */
+final class DependencyGraphParallelInstantiator {
+
+    /** Not used. */
+    private DependencyGraphParallelInstantiator() {}
+
+    /**
+     * Groups all nodes reachable from the specified nodes by level. The nodes are first sorted topologically, by an
+     * iterative depth-first search so deep dependency chains does not overflow the stack. The levels are then calculated
+     * in a single pass over the sorted nodes, as one higher than the highest level of any dependency.
+     * 
+     * @param <N>
+     *            the type of nodes
+     * @param nodes
+     *            the nodes to start from
+     * @param edges
+     *            a function returning the nodes a node depends on, the graph must not contain cycles
+     * @return the nodes grouped by level, each level in topological order
+     */
+    static <N> List<List<N>> byLevel(Iterable<? extends N> nodes, Function<? super N, ? extends List<? extends N>> edges) {
+        // The edges of every visited node, a node is visited when it is pushed
+        IdentityHashMap<N, List<? extends N>> visited = new IdentityHashMap<>();
+        ArrayList<N> order = new ArrayList<>();
+        ArrayDeque<Frame<N>> frames = new ArrayDeque<>();
+        for (N root : nodes) {
+            if (!visited.containsKey(root)) {
+                frames.push(push(visited, edges, root));
+                while (!frames.isEmpty()) {
+                    Frame<N> f = frames.peek();
+                    List<? extends N> e = visited.get(f.node);
+                    if (f.next < e.size()) {
+                        N n = e.get(f.next++);
+                        // A node that has been visited is either sorted, or an ancestor on the stack which is a cycle
+                        if (!visited.containsKey(n)) {
+                            frames.push(push(visited, edges, n));
+                        }
+                    } else {
+                        frames.pop();
+                        order.add(f.node);
+                    }
+                }
+            }
+        }
+
+        IdentityHashMap<N, Integer> levels = new IdentityHashMap<>();
+        ArrayList<List<N>> result = new ArrayList<>();
+        for (N node : order) {
+            int level = 0;
+            for (N n : visited.get(node)) {
+                level = Math.max(level, levels.get(n) + 1);
+            }
+            levels.put(node, level);
+            while (result.size() <= level) {
+                result.add(new ArrayList<>());
+            }
+            result.get(level).add(node);
+        }
+        return result;
+    }
+
+    private static <N> Frame<N> push(IdentityHashMap<N, List<? extends N>> visited, Function<? super N, ? extends List<? extends N>> edges, N node) {
+        visited.put(node, edges.apply(node));
+        return new Frame<>(node);
+    }
+
+    /**
+     * Returns the nodes the specified node must wait for before it can be created.
+     * 
+     * @param node
+     *            the node
+     * @return the nodes the specified node depends on
+     */
+    private static List<BuildServiceNodeDefault<?>> edgesOf(BuildServiceNodeDefault<?> node) {
+        ArrayList<BuildServiceNodeDefault<?>> result = new ArrayList<>(node.resolvedDependencies.length + 1);
+        for (ServiceNode<?> n : node.resolvedDependencies) {
+            if (n instanceof BuildServiceNodeExported) {
+                n = ((BuildServiceNodeExported<?>) n).exportOf;
+            }
+            if (n instanceof BuildServiceNodeDefault) {
+                result.add((BuildServiceNodeDefault<?>) n);
+            }
+        }
+        BuildServiceNode<?> declaringNode = node.declaringNode();
+        if (declaringNode instanceof BuildServiceNodeDefault) {
+            result.add((BuildServiceNodeDefault<?>) declaringNode);
+        }
+        return result;
+    }
+
+    /**
+     * Instantiates all singletons in the specified nodes.
+     * 
+     * @param order
+     *            the nodes that needs resolving in topological order
+     * @param nodes
+     *            all nodes of the injector
+     * @param listener
+     *            a listener that is notified with the time it took to create each singleton, or null
+     */
+    static void instantiate(List<BuildServiceNode<?>> order, Iterable<ServiceNode<?>> nodes,
+            @Nullable BiConsumer<? super ServiceDescriptor, ? super Duration> listener) {
+        ArrayList<BuildServiceNodeDefault<?>> roots = new ArrayList<>();
+        for (BuildServiceNode<?> node : order) {
+            if (node instanceof BuildServiceNodeDefault) {
+                roots.add((BuildServiceNodeDefault<?>) node);
+            }
+        }
+        for (ServiceNode<?> node : nodes) {
+            if (node instanceof BuildServiceNodeDefault) {
+                roots.add((BuildServiceNodeDefault<?>) node);
+            }
+        }
+
+        List<List<BuildServiceNodeDefault<?>>> levels = byLevel(roots, DependencyGraphParallelInstantiator::edgesOf);
+        for (List<BuildServiceNodeDefault<?>> level : levels) {
+            for (BuildServiceNodeDefault<?> node : level) {
+                node.parallel = true; // Before any tasks are forked
+            }
+        }
+        for (List<BuildServiceNodeDefault<?>> level : levels) {
+            ArrayList<Task> tasks = new ArrayList<>(level.size());
+            for (BuildServiceNodeDefault<?> node : level) {
+                if (node.instantiationMode() == InstantiationMode.SINGLETON && !node.hasInstance()) {
+                    tasks.add(new Task(node));
+                }
+            }
+            if (tasks.isEmpty()) {
+                continue;
+            } else if (tasks.size() == 1) {
+                tasks.get(0).compute(); // No need to involve other threads
+            } else {
+                ForkJoinTask.invokeAll(tasks);
+            }
+            for (Task t : tasks) {
+                if (t.failure != null) {
+                    ThrowableUtil.throwAny(t.failure);
+                }
+            }
+            if (listener != null) {
+                for (Task t : tasks) {
+                    listener.accept(t.node.toDescriptor(), Duration.ofNanos(t.nanos));
+                }
+            }
+        }
+    }
+
+    /**
+     * A task that creates a single singleton. Singletons that are expensive to create often block, for example, when
+     * reading files or opening connections. So the singleton is created from a {@link ManagedBlocker}, allowing the pool
+     * to add threads instead of leaving the other singletons of the level waiting.
+     */
+    @SuppressWarnings("serial")
+    private static final class Task extends RecursiveAction implements ManagedBlocker {
+
+        /** Any failure thrown while creating the singleton. We keep it so we can rethrow the original exception. */
+        @Nullable
+        private Throwable failure;
+
+        /** The number of nanoseconds it took to create the singleton. */
+        private long nanos;
+
+        /** The node to instantiate. */
+        private final BuildServiceNodeDefault<?> node;
+
+        private Task(BuildServiceNodeDefault<?> node) {
+            this.node = node;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean block() {
+            node.getInstance(null);
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            try {
+                ForkJoinPool.managedBlock(this);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            nanos = System.nanoTime() - start;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isReleasable() {
+            return false;
+        }
+    }
+
+    /** A node on the stack of the depth-first search, and the index of the next edge to follow. */
+    private static final class Frame<N> {
+
+        /** The index of the next edge to follow. */
+        private int next;
+
+        /** The node. */
+        private final N node;
+
+        private Frame(N node) {
+            this.node = node;
+        }
+    }
+}
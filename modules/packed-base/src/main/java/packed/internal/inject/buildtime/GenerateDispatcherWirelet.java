@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.buildtime;
+
+import app.packed.container.Wirelet;
+import app.packed.inject.ServiceWirelets;
+
+/** The wirelet returned by {@link ServiceWirelets#generateDispatcher()}. */
+public final class GenerateDispatcherWirelet extends Wirelet {
+
+    /** The single instance. */
+    public static final GenerateDispatcherWirelet INSTANCE = new GenerateDispatcherWirelet();
+
+    /** Singleton */
+    private GenerateDispatcherWirelet() {}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.buildtime;
+
+import java.time.Duration;
+import java.util.function.BiConsumer;
+
+import app.packed.container.Wirelet;
+import app.packed.inject.ServiceDescriptor;
+import app.packed.inject.ServiceWirelets;
+import app.packed.util.Nullable;
+
+/** The wirelet returned by {@link ServiceWirelets#parallelInstantiation()}. */
+public final class ParallelInstantiationWirelet extends Wirelet {
+
+    /** An instance without a listener. */
+    public static final ParallelInstantiationWirelet INSTANCE = new ParallelInstantiationWirelet(null);
+
+    /** A listener that is notified with the time it took to create each singleton, or null. */
+    @Nullable
+    final BiConsumer<? super ServiceDescriptor, ? super Duration> listener;
+
+    /**
+     * Creates a new wirelet.
+     * 
+     * @param listener
+     *            a listener that is notified with the time it took to create each singleton, or null
+     */
+    public ParallelInstantiationWirelet(@Nullable BiConsumer<? super ServiceDescriptor, ? super Duration> listener) {
+        this.listener = listener;
+    }
+}
@@ -17,10 +17,14 @@ package packed.internal.inject.runtime;
 
 import static java.util.Objects.requireNonNull;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Optional;
 
 import app.packed.config.ConfigSite;
 import app.packed.inject.InstantiationMode;
+import app.packed.inject.ProvideHelper;
 import app.packed.util.Key;
 import app.packed.util.Nullable;
 import packed.internal.inject.ServiceNode;
@@ -29,6 +33,18 @@ import packed.internal.inject.buildtime.BuildServiceNode;
 /** A node that represents a service at runtime. */
 public abstract class AbstractRuntimeServiceNode<T> implements ServiceNode<T> {
 
+    /** A method handle for {@link #getInstance(ProvideHelper)}. */
+    private static final MethodHandle GET_INSTANCE;
+
+    static {
+        try {
+            GET_INSTANCE = MethodHandles.lookup().findVirtual(AbstractRuntimeServiceNode.class, "getInstance",
+                    MethodType.methodType(Object.class, ProvideHelper.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /** The point where this node was registered. */
     private final ConfigSite configSite;
 
@@ -51,6 +67,20 @@ public abstract class AbstractRuntimeServiceNode<T> implements ServiceNode<T> {
         this.key = requireNonNull(node.key());
     }
 
+    /**
+     * Creates a new runtime node that was not created from a build node.
+     *
+     * @param configSite
+     *            the point where the node was registered
+     * @param key
+     *            the key under which the service is available
+     */
+    AbstractRuntimeServiceNode(ConfigSite configSite, Key<T> key) {
+        this.configSite = requireNonNull(configSite);
+        this.description = null;
+        this.key = requireNonNull(key);
+    }
+
     /** {@inheritDoc} */
     @Override
     public final ConfigSite configSite() {
@@ -84,6 +114,17 @@ public abstract class AbstractRuntimeServiceNode<T> implements ServiceNode<T> {
         return false;
     }
 
+    /**
+     * Returns a method handle of type {@code ()Object} that provides an instance of the service. Used for compiling the
+     * dependencies of a node into a single method handle. The default implementation invokes
+     * {@link #getInstance(ProvideHelper)} with a null injection site.
+     * 
+     * @return a method handle that provides an instance of the service
+     */
+    MethodHandle toMethodHandle() {
+        return MethodHandles.insertArguments(GET_INSTANCE.bindTo(this), 0, (Object) null);
+    }
+
     /** {@inheritDoc} */
     @Override
     public final AbstractRuntimeServiceNode<T> toRuntimeNode() {
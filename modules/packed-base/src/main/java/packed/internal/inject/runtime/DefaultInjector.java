@@ -25,6 +25,7 @@ import app.packed.config.ConfigSite;
 import app.packed.container.ContainerConfiguration;
 import app.packed.inject.Injector;
 import app.packed.inject.ServiceDescriptor;
+import app.packed.inject.ServiceWirelets;
 import app.packed.util.Key;
 import app.packed.util.Nullable;
 import packed.internal.inject.AbstractInjector;
@@ -35,6 +36,10 @@ import packed.internal.util.KeyBuilder;
 /** The default implementation of {@link Injector}. */
 public final class DefaultInjector extends AbstractInjector {
 
+    /** A generated dispatcher for the services of this injector, or null if no dispatcher has been generated. */
+    @Nullable
+    private ServiceDispatcher dispatcher;
+
     /** The configuration site of this injector. */
     private final ConfigSite configSite;
 
@@ -73,6 +78,17 @@ public final class DefaultInjector extends AbstractInjector {
         return Optional.ofNullable(description);
     }
 
+    /**
+     * Generates a dispatcher for the services in this injector, which is consulted before the lookup table whenever a
+     * service is requested by its class. Must be invoked after all nodes have been converted to runtime nodes, and before
+     * the injector is made available to other threads.
+     * 
+     * @see ServiceWirelets#generateDispatcher()
+     */
+    public void generateDispatcher() {
+        dispatcher = ServiceDispatcherGenerator.generate(services);
+    }
+
     @Override
     protected void failedGet(Key<?> key) {
         // Oehhh hvad med internal injector, skal vi have en reference til den.
@@ -84,6 +100,14 @@ public final class DefaultInjector extends AbstractInjector {
         super.failedGet(key);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    @Nullable
+    protected <T> ServiceNode<T> findNode(Class<T> key) {
+        requireNonNull(key, "key is null");
+        return services.getRecursive(key);
+    }
+
     /** {@inheritDoc} */
     @Override
     @Nullable
@@ -91,6 +115,21 @@ public final class DefaultInjector extends AbstractInjector {
         return services.getRecursive(key);
     }
 
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override
+    @Nullable
+    protected <T> T getInstanceOrNull(Class<T> key) {
+        ServiceDispatcher d = dispatcher;
+        if (d != null) {
+            Object instance = d.instanceOf(key);
+            if (instance != ServiceDispatcher.MISS) {
+                return (T) instance;
+            }
+        }
+        return super.getInstanceOrNull(key);
+    }
+
     /** {@inheritDoc} */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
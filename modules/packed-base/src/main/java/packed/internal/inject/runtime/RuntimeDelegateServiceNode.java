@@ -17,6 +17,8 @@ package packed.internal.inject.runtime;
 
 import static java.util.Objects.requireNonNull;
 
+import java.lang.invoke.MethodHandle;
+
 import app.packed.inject.ProvideHelper;
 import app.packed.inject.InstantiationMode;
 import packed.internal.inject.ServiceNode;
@@ -29,7 +31,7 @@ import packed.internal.inject.buildtime.BuildServiceNode;
 public final class RuntimeDelegateServiceNode<T> extends AbstractRuntimeServiceNode<T> {
 
     /** The runtime node to delegate to. */
-    private final AbstractRuntimeServiceNode<T> aliasOf;
+    final AbstractRuntimeServiceNode<T> aliasOf;
 
     /**
      * Creates a new runtime alias node.
@@ -54,6 +56,12 @@ public final class RuntimeDelegateServiceNode<T> extends AbstractRuntimeServiceN
         return aliasOf.getInstance(site);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    MethodHandle toMethodHandle() {
+        return aliasOf.toMethodHandle();
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean needsInjectionSite() {
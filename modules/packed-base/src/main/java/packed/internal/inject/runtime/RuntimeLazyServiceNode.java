@@ -17,26 +17,49 @@ package packed.internal.inject.runtime;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.concurrent.Semaphore;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CountDownLatch;
 
-import app.packed.inject.ProvideHelper;
+import app.packed.inject.InjectionException;
 import app.packed.inject.InstantiationMode;
+import app.packed.inject.ProvideHelper;
 import app.packed.util.Nullable;
 import packed.internal.inject.Provider;
 import packed.internal.inject.buildtime.BuildServiceNode;
 import packed.internal.invoke.FunctionHandle;
 import packed.internal.util.ThrowableUtil;
 
-/** A lazy runtime node if the service was not requested at configuration time. */
+/**
+ * A runtime node for a lazy service.
+ * <p>
+ * The node keeps all of its mutable state in a single field that is updated via a {@link VarHandle}. The field is null
+ * until some thread starts creating the instance. It then transitions, exactly once, to a {@link Creating} state and
+ * from there to either the instance itself or a {@link Failed} state. Once the instance has been published, getting it
+ * is a single acquiring read. Threads that request the instance while another thread is creating it, park until it has
+ * been created. No monitors are held while the factory is running, so virtual threads are never pinned.
+ */
 public final class RuntimeLazyServiceNode<T> extends AbstractRuntimeServiceNode<T> {
 
-    /** The lazily instantiated instance. */
+    /** A var handle for {@link #state}. */
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(RuntimeLazyServiceNode.class, "state", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** The factory used for creating the instance, cleared once the outcome has been published. */
     @Nullable
-    private volatile T instance;
+    private Provider<T> factory; // Only read by the thread that installs the Creating state
 
-    /** Lazy calculates the value, and is then nulled out. */
+    /** Null if creation has not been started, the instance if it has been created, otherwise a {@link State}. */
     @Nullable
-    private volatile Sync lazy;
+    @SuppressWarnings("unused") // Accessed via STATE
+    private Object state;
 
     /**
      * Creates a new node
@@ -48,7 +71,7 @@ public final class RuntimeLazyServiceNode<T> extends AbstractRuntimeServiceNode<
      */
     public RuntimeLazyServiceNode(BuildServiceNode<T> node, FunctionHandle<T> factory, @Nullable AbstractRuntimeServiceNode<T> parent) {
         super(node);
-        this.lazy = new Sync(new RuntimePrototypeServiceNode<>(node, factory), parent);
+        this.factory = new RuntimePrototypeServiceNode<>(node, factory);
     }
 
     /** {@inheritDoc} */
@@ -58,90 +81,115 @@ public final class RuntimeLazyServiceNode<T> extends AbstractRuntimeServiceNode<
     }
 
     /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
     @Override
     public T getInstance(ProvideHelper site) {
-        for (;;) {
-            T i = instance;
-            if (i != null) {
-                return i;
-            }
+        Object s = STATE.getAcquire(this);
+        if (s != null && !(s instanceof State)) {
+            return (T) s;
+        }
+        return getInstanceSlow(s);
+    }
 
-            // Lazy calculate the value
-
-            // Where should we check for null????
-            // Also, should
-            Sync l = lazy;
-            if (l != null) {
-                i = l.tryCreate();
-                if (i != null) {
-                    instance = i;
-                    lazy = null;
-                    return i;
+    /**
+     * Creates the instance, or waits for another thread to create it.
+     * 
+     * @param s
+     *            the state as read by {@link #getInstance(ProvideHelper)}
+     * @return the instance
+     */
+    @SuppressWarnings("unchecked")
+    private T getInstanceSlow(Object s) {
+        for (;;) {
+            if (s == null) {
+                Creating c = new Creating();
+                if (STATE.compareAndSet(this, null, c)) {
+                    return create(c);
+                }
+            } else if (s instanceof Creating) {
+                Creating c = (Creating) s;
+                if (c.owner == Thread.currentThread()) {
+                    throw new IllegalStateException("Service " + key() + " was requested while it was being created, the service depends on itself");
                 }
+                c.awaitUninterruptibly();
+            } else if (s instanceof Failed) {
+                // Wrap the failure, so every caller gets its own stack trace
+                throw new InjectionException("Failed to create lazy service " + key(), ((Failed) s).failure);
+            } else {
+                return (T) s;
             }
+            s = STATE.getAcquire(this);
         }
     }
 
+    /**
+     * Creates the instance, publishes the outcome, and wakes up any waiting threads.
+     * 
+     * @param c
+     *            the creating state that was installed by the current thread
+     * @return the instance
+     */
+    private T create(Creating c) {
+        Object result;
+        Throwable failure = null;
+        try {
+            result = requireNonNull(factory.get(), "factory produced a null instance");
+        } catch (Throwable e) {
+            result = new Failed(e);
+            failure = e;
+        }
+        factory = null; // The factory is never used again, so do not keep it (and its dependencies) reachable
+        STATE.setRelease(this, result);
+        c.done.countDown();
+        if (failure != null) {
+            ThrowableUtil.throwAny(failure); // The thread that created the instance sees the original failure
+        }
+        return getInstanceSlow(result);
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean needsInjectionSite() {
         return false;
     }
 
-    /** A helper class for lazy calculating the value */
-    @SuppressWarnings("serial")
-    final class Sync extends Semaphore {
-
-        /** The factory used for creating a new instance. */
-        private Provider<T> factory;
+    /** The non-instance states of the node. */
+    private static abstract class State {}
 
-        /** Any failure encountered while creating a new value. */
-        private Throwable failure;
+    /** The state while the instance is being created. */
+    private static final class Creating extends State {
 
-        AbstractRuntimeServiceNode<T> parent;
+        /** Counted down when the instance has been created or failed to be created. */
+        private final CountDownLatch done = new CountDownLatch(1);
 
-        /**
-         * Creates a new Sync object
-         * 
-         * @param factory
-         *            the factory node that will create the value
-         */
-        Sync(Provider<T> factory, @Nullable AbstractRuntimeServiceNode<T> parent) {
-            super(1);
-            this.factory = requireNonNull(factory);
-        }
+        /** The thread that is creating the instance. */
+        private final Thread owner = Thread.currentThread();
 
-        /**
-         * Try and create a new value.
-         * 
-         * @return the newly created value, or null if the value has already been created
-         */
-        T tryCreate() {
-            acquireUninterruptibly();
-            try {
-                if (failure != null) {
-                    // We should not Rethrow it, We need to wrap it in some ProvisionException
-                    ThrowableUtil.rethrowErrorOrRuntimeException(failure);
-                }
-                if (factory != null) {
-                    try {
-                        T newInstance = factory.get();
-                        if (newInstance == null) {
-                            // TODO throw Provision Exception instead
-                            requireNonNull(instance, "factory produced a null instance");
-                        }
-                        return newInstance;
-                    } catch (RuntimeException | Error e) {
-                        failure = e;
-                        throw e;
-                    } finally {
-                        factory = null;
-                    }
+        /** Parks the current thread until the instance has been created, retaining the interrupt status. */
+        void awaitUninterruptibly() {
+            boolean interrupted = false;
+            for (;;) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
-            } finally {
-                release();
             }
-            return null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** The state if the instance could not be created. */
+    private static final class Failed extends State {
+
+        /** The failure that was encountered while creating the instance. */
+        private final Throwable failure;
+
+        Failed(Throwable failure) {
+            this.failure = failure;
         }
     }
 }
@@ -17,43 +17,44 @@ package packed.internal.inject.runtime;
 
 import static java.util.Objects.requireNonNull;
 
-import app.packed.inject.ProvideHelper;
-import app.packed.inject.Injector;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import app.packed.inject.InjectionException;
 import app.packed.inject.InstantiationMode;
+import app.packed.inject.ProvideHelper;
 import packed.internal.inject.Provider;
 import packed.internal.inject.buildtime.BuildServiceNode;
 import packed.internal.invoke.FunctionHandle;
+import packed.internal.util.ThrowableUtil;
 
-/** A runtime service node for prototypes. */
-// 3 typer?? Saa kan de foerste to implementere Provider
-// No params
-// No InjectionSite parameters
-// InjectionSite parameters
+/**
+ * A runtime service node for prototypes.
+ * <p>
+ * When the node is created, the function and the providers of all of its dependencies are compiled into a single method
+ * handle of type {@code ()Object}. Dependencies that are singletons become constants, and dependencies that are
+ * prototypes are inlined with their own compiled handle. So creating a new instance is a single
+ * {@link MethodHandle#invokeExact(Object...) invokeExact} without any intermediate arrays.
+ */
 public final class RuntimePrototypeServiceNode<T> extends AbstractRuntimeServiceNode<T> implements Provider<T> {
 
-    /** An empty object array. */
-    private final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
-
-    /** The factory used for creating new instances. */
-    private final FunctionHandle<T> invoker;
-
-    Provider<?>[] providers;
+    /** A method handle of type {@code ()Object} that creates new instances. */
+    private final MethodHandle factory;
 
     /**
      * @param node
      */
     public RuntimePrototypeServiceNode(BuildServiceNode<T> node, FunctionHandle<T> function) {
         super(node);
-        this.invoker = requireNonNull(function);
-        this.providers = new Provider[node.dependencies.size()];
-        for (int i = 0; i < providers.length; i++) {
-            AbstractRuntimeServiceNode<?> forReal = node.resolvedDependencies[i].toRuntimeNode();
-            ProvideHelper is = null;
-            ProvideHelper.of(Injector.configure(c -> {}), node.dependencies.get(i));
-            providers[i] = () -> forReal.getInstance(is);
+        requireNonNull(function);
+        int size = node.dependencies.size();
+        MethodHandle mh = function.toMethodHandle(size);
+        // Collect from the back, so the position of the remaining parameters does not change
+        for (int i = size - 1; i >= 0; i--) {
+            AbstractRuntimeServiceNode<?> dependency = node.resolvedDependencies[i].toRuntimeNode();
+            mh = MethodHandles.collectArguments(mh, i, dependency.toMethodHandle());
         }
-        // Create local injection site for each parameter.
-        // Wrap them in Function<InjectionSite, O>
+        this.factory = mh;
     }
 
     /** {@inheritDoc} */
@@ -85,14 +86,21 @@ public final class RuntimePrototypeServiceNode<T> extends AbstractRuntimeService
      *
      * @return the new service instance
      */
+    @SuppressWarnings("unchecked")
     private T newInstance() {
-        Object[] params = EMPTY_OBJECT_ARRAY;
-        if (providers.length > 0) {
-            params = new Object[providers.length];
-            for (int i = 0; i < providers.length; i++) {
-                params[i] = providers[i].get();
-            }
+        Object instance;
+        try {
+            instance = factory.invokeExact();
+        } catch (Throwable e) {
+            ThrowableUtil.rethrowErrorOrRuntimeException(e);
+            throw new InjectionException("Failed to create a new instance of " + key(), e);
         }
-        return invoker.invoke(params);
+        return (T) instance;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    MethodHandle toMethodHandle() {
+        return factory;
     }
 }
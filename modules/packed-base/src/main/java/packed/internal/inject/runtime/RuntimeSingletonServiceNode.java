@@ -17,8 +17,13 @@ package packed.internal.inject.runtime;
 
 import static java.util.Objects.requireNonNull;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import app.packed.config.ConfigSite;
 import app.packed.inject.InstantiationMode;
 import app.packed.inject.ProvideHelper;
+import app.packed.util.Key;
 import packed.internal.inject.Provider;
 import packed.internal.inject.buildtime.BuildServiceNode;
 
@@ -51,6 +56,22 @@ public final class RuntimeSingletonServiceNode<T> extends AbstractRuntimeService
         this.instantionMode = buildNode.instantiationMode();
     }
 
+    /**
+     * Creates a new node for an instance that is bound directly at runtime.
+     *
+     * @param configSite
+     *            the point where the instance was bound
+     * @param key
+     *            the key under which the instance is available
+     * @param instance
+     *            the singleton instance
+     */
+    public RuntimeSingletonServiceNode(ConfigSite configSite, Key<T> key, T instance) {
+        super(configSite, key);
+        this.instance = requireNonNull(instance);
+        this.instantionMode = InstantiationMode.SINGLETON;
+    }
+
     /** {@inheritDoc} */
     @Override
     public T get() {
@@ -69,6 +90,12 @@ public final class RuntimeSingletonServiceNode<T> extends AbstractRuntimeService
         return instance;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    MethodHandle toMethodHandle() {
+        return MethodHandles.constant(Object.class, instance);
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean needsInjectionSite() {
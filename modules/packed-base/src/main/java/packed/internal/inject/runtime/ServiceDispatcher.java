@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.runtime;
+
+/**
+ * Maps unqualified service classes directly to service instances. Implementations are generated at runtime by
+ * {@link ServiceDispatcherGenerator}. Injectors whose services have the same layout share a single class.
+ */
+abstract class ServiceDispatcher {
+
+    /** Returned by {@link #instanceOf(Class)} if the dispatcher cannot deliver an instance of the specified class. */
+    static final Object MISS = new Object();
+
+    /**
+     * Returns an instance of the service registered under the specified class. Or {@link #MISS} if no service is
+     * registered under the class, or if the service needs an injection site. In which case the lookup must be retried
+     * using the injector's normal lookup table.
+     * 
+     * @param type
+     *            the class of the service
+     * @return an instance of the service, or {@link #MISS}
+     */
+    abstract Object instanceOf(Class<?> type);
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.runtime;
+
+import static java.util.Objects.requireNonNull;
+import static packed.internal.thirdparty.asm.Opcodes.AALOAD;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_FINAL;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_PRIVATE;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_SUPER;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_SYNTHETIC;
+import static packed.internal.thirdparty.asm.Opcodes.ACC_VOLATILE;
+import static packed.internal.thirdparty.asm.Opcodes.ACONST_NULL;
+import static packed.internal.thirdparty.asm.Opcodes.ALOAD;
+import static packed.internal.thirdparty.asm.Opcodes.ARETURN;
+import static packed.internal.thirdparty.asm.Opcodes.ASTORE;
+import static packed.internal.thirdparty.asm.Opcodes.CHECKCAST;
+import static packed.internal.thirdparty.asm.Opcodes.GETFIELD;
+import static packed.internal.thirdparty.asm.Opcodes.GETSTATIC;
+import static packed.internal.thirdparty.asm.Opcodes.GOTO;
+import static packed.internal.thirdparty.asm.Opcodes.IFNULL;
+import static packed.internal.thirdparty.asm.Opcodes.IF_ACMPNE;
+import static packed.internal.thirdparty.asm.Opcodes.INVOKEINTERFACE;
+import static packed.internal.thirdparty.asm.Opcodes.INVOKESPECIAL;
+import static packed.internal.thirdparty.asm.Opcodes.INVOKESTATIC;
+import static packed.internal.thirdparty.asm.Opcodes.INVOKEVIRTUAL;
+import static packed.internal.thirdparty.asm.Opcodes.PUTFIELD;
+import static packed.internal.thirdparty.asm.Opcodes.RETURN;
+import static packed.internal.thirdparty.asm.Opcodes.V11;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import app.packed.inject.ProvideHelper;
+import app.packed.util.Key;
+import app.packed.util.Nullable;
+import packed.internal.inject.ServiceNode;
+import packed.internal.thirdparty.asm.ClassWriter;
+import packed.internal.thirdparty.asm.Label;
+import packed.internal.thirdparty.asm.MethodVisitor;
+
+/**
+ * Generates a {@link ServiceDispatcher} class for a set of runtime nodes.
+ * <p>
+ * For each node registered under an unqualified raw class the generated class has:
+ * <ul>
+ * <li>A final field holding the class, which is matched by identity after a {@code lookupswitch} on
+ * {@link System#identityHashCode(Object)}. The hash codes are computed when the class is generated, so the switch
+ * works as a perfect hash in all but the (rare) case of collisions, where the candidates are tried one at a time.</li>
+ * <li>For a singleton, a final field holding the instance.</li>
+ * <li>For a lazy service, a volatile field holding the instance once it has been created, behind a generated
+ * double-checked getter that delegates to the lazy node the first time.</li>
+ * <li>For a prototype, a final field holding the node whose compiled factory is invoked directly.</li>
+ * </ul>
+ * Nodes that need an injection site and nodes with qualified or parameterized keys are left out. Lookups for them
+ * return {@link ServiceDispatcher#MISS}. No dispatcher is generated for more than {@link #MAX_NODES} nodes.
+ * <p>
+ * The class is defined in this package as a hidden class. Which means it can access the package-private runtime nodes,
+ * but not the (possible non-exported) service classes. As a consequence prototypes are created via the factory method
+ * handle of the node, rather than by invoking their constructor directly. Unlike classes defined via
+ * {@link MethodHandles.Lookup#defineClass(byte[])}, a hidden class is not strongly reachable from its class loader. So
+ * it is unloaded once no dispatcher uses it. Hidden classes were added in Java 15, on earlier versions no dispatcher is
+ * generated.
+ * <p>
+ * The bytecode only depends on the hash codes of the classes and the kinds of nodes, not on the classes or instances
+ * themselves, which are passed to the constructor. So a generated class is shared by all live injectors with the same
+ * {@link Shape}. The cache of generated classes only references them weakly.
+ */
+final class ServiceDispatcherGenerator {
+
+    /**
+     * The maximum number of nodes to include. Each node adds at most 30 bytes to {@code instanceOf}, including its entry
+     * in the {@code lookupswitch}, which has a fixed overhead of 20 bytes. So the method stays below HotSpot's default
+     * {@code HugeMethodLimit} of 8000 bytes, above which methods are never compiled. Larger injectors only use the lookup
+     * table. The {@code lookupswitch} is a binary search, so the cost of a lookup only grows logarithmically with the
+     * number of nodes.
+     */
+    static final int MAX_NODES = 256;
+
+    /** Generated classes, by the shape of the classes. */
+    private static final ConcurrentHashMap<Shape, ShapeReference> CLASSES = new ConcurrentHashMap<>();
+
+    /** {@code Lookup.defineHiddenClass(bytes, true)}, or null if hidden classes are not supported. */
+    @Nullable
+    private static final MethodHandle DEFINE_HIDDEN_CLASS = defineHiddenClass();
+
+    /** Generated classes that have been unloaded. */
+    private static final ReferenceQueue<Class<?>> UNLOADED = new ReferenceQueue<>();
+
+    /** Used for naming generated classes. */
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private static final String SUPER = internalName(ServiceDispatcher.class);
+
+    private static final String CLASS_DESCRIPTOR = "Ljava/lang/Class;";
+
+    private static final String OBJECT_DESCRIPTOR = "Ljava/lang/Object;";
+
+    private static final String GET_INSTANCE_DESCRIPTOR = "(L" + internalName(ProvideHelper.class) + ";)" + OBJECT_DESCRIPTOR;
+
+    /** The kind of a singleton node. */
+    static final byte SINGLETON = 0;
+
+    /** The kind of a prototype node. */
+    static final byte PROTOTYPE = 1;
+
+    /** The kind of a lazy node. */
+    static final byte LAZY = 2;
+
+    /** The kind of any other node. */
+    static final byte OTHER = 3;
+
+    /** The name of the class that is being generated. */
+    private final String className;
+
+    /** The names of all final fields, in the order they are passed to the generated constructor. */
+    private final ArrayList<String> fieldNames = new ArrayList<>();
+
+    /** The types of all final fields, in the same order as {@link #fieldNames}. */
+    private final ArrayList<Class<?>> fieldTypes = new ArrayList<>();
+
+    private final ClassWriter cw;
+
+    /** The size of the bytecode of the generated {@code instanceOf} method. */
+    private int instanceOfSize;
+
+    private ServiceDispatcherGenerator() {
+        this.className = SUPER + "$$" + COUNTER.incrementAndGet();
+        this.cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+
+            /** {@inheritDoc} */
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // We only ever merge reference types that are stored as Object, so avoid loading any classes
+                return "java/lang/Object";
+            }
+        };
+    }
+
+    private byte[] define(Shape shape) {
+        cw.visit(V11, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, SUPER, null);
+
+        MethodVisitor mv = cw.visitMethod(0, "instanceOf", "(" + CLASS_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR, null, null);
+        mv.visitCode();
+        Label miss = new Label();
+        int[] hashes = shape.distinctHashes();
+        Label[] labels = new Label[hashes.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "identityHashCode", "(" + OBJECT_DESCRIPTOR + ")I", false);
+        mv.visitLookupSwitchInsn(miss, hashes, labels);
+
+        int h = -1;
+        for (int index = 0; index < shape.size(); index++) {
+            if (index == 0 || shape.hashes[index] != shape.hashes[index - 1]) {
+                if (index > 0) {
+                    mv.visitJumpInsn(GOTO, miss);
+                }
+                mv.visitLabel(labels[++h]);
+            }
+            Label next = new Label();
+            String classField = "c" + index;
+            addField(classField, Class.class);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, classField, CLASS_DESCRIPTOR);
+            mv.visitJumpInsn(IF_ACMPNE, next);
+            emitInstance(mv, index, shape.kinds[index]);
+            mv.visitInsn(ARETURN);
+            mv.visitLabel(next);
+        }
+        if (shape.size() > 0) {
+            mv.visitJumpInsn(GOTO, miss);
+        }
+
+        mv.visitLabel(miss);
+        mv.visitFieldInsn(GETSTATIC, SUPER, "MISS", OBJECT_DESCRIPTOR);
+        mv.visitInsn(ARETURN);
+        Label end = new Label();
+        mv.visitLabel(end);
+        instanceOfSize = end.getOffset();
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        emitConstructor();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /** Adds a final field whose value is passed to the generated constructor. */
+    private void addField(String name, Class<?> type) {
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, name, descriptorOf(type), null, null).visitEnd();
+        fieldNames.add(name);
+        fieldTypes.add(type);
+    }
+
+    /** Emits the code that leaves an instance of the specified kind of node on the stack. */
+    private void emitInstance(MethodVisitor mv, int index, byte kind) {
+        mv.visitVarInsn(ALOAD, 0);
+        if (kind == SINGLETON) {
+            addField("s" + index, Object.class);
+            mv.visitFieldInsn(GETFIELD, className, "s" + index, OBJECT_DESCRIPTOR);
+        } else if (kind == PROTOTYPE) {
+            addField("p" + index, RuntimePrototypeServiceNode.class);
+            mv.visitFieldInsn(GETFIELD, className, "p" + index, descriptorOf(RuntimePrototypeServiceNode.class));
+            mv.visitMethodInsn(INVOKEVIRTUAL, internalName(RuntimePrototypeServiceNode.class), "get", "()" + OBJECT_DESCRIPTOR, false);
+        } else if (kind == LAZY) {
+            addField("n" + index, RuntimeLazyServiceNode.class);
+            emitLazyGetter(index);
+            mv.visitMethodInsn(INVOKESPECIAL, className, "lazy" + index, "()" + OBJECT_DESCRIPTOR, false);
+        } else {
+            addField("o" + index, ServiceNode.class);
+            mv.visitFieldInsn(GETFIELD, className, "o" + index, descriptorOf(ServiceNode.class));
+            mv.visitInsn(ACONST_NULL);
+            mv.visitMethodInsn(INVOKEINTERFACE, internalName(ServiceNode.class), "getInstance", GET_INSTANCE_DESCRIPTOR, true);
+        }
+    }
+
+    /** Emits a double-checked getter that caches the instance of a lazy node in a volatile field. */
+    private void emitLazyGetter(int index) {
+        String instanceField = "l" + index;
+        cw.visitField(ACC_PRIVATE | ACC_VOLATILE, instanceField, OBJECT_DESCRIPTOR, null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE, "lazy" + index, "()" + OBJECT_DESCRIPTOR, null, null);
+        mv.visitCode();
+        Label create = new Label();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, instanceField, OBJECT_DESCRIPTOR);
+        mv.visitVarInsn(ASTORE, 1);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitJumpInsn(IFNULL, create);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitInsn(ARETURN);
+
+        // The lazy node guarantees that only a single instance is ever created, so a racy store is harmless
+        mv.visitLabel(create);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, "n" + index, descriptorOf(RuntimeLazyServiceNode.class));
+        mv.visitInsn(ACONST_NULL);
+        mv.visitMethodInsn(INVOKEVIRTUAL, internalName(RuntimeLazyServiceNode.class), "getInstance", GET_INSTANCE_DESCRIPTOR, false);
+        mv.visitVarInsn(ASTORE, 1);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, className, instanceField, OBJECT_DESCRIPTOR);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /** Emits a constructor that takes an array with the values of all final fields. */
+    private void emitConstructor() {
+        MethodVisitor mv = cw.visitMethod(0, "<init>", "([" + OBJECT_DESCRIPTOR + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, SUPER, "<init>", "()V", false);
+        for (int i = 0; i < fieldNames.size(); i++) {
+            emitStore(mv, i, fieldNames.get(i), fieldTypes.get(i));
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void emitStore(MethodVisitor mv, int argument, String field, Class<?> type) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitLdcInsn(argument);
+        mv.visitInsn(AALOAD);
+        if (type != Object.class) {
+            mv.visitTypeInsn(CHECKCAST, internalName(type));
+        }
+        mv.visitFieldInsn(PUTFIELD, className, field, descriptorOf(type));
+    }
+
+    /**
+     * Generates a new dispatcher for the specified runtime nodes.
+     * 
+     * @param nodes
+     *            the nodes to generate a dispatcher for, if multiple nodes have the same key the first one is used
+     * @return a new dispatcher, or null if there are more than {@link #MAX_NODES} nodes to include or if hidden classes
+     *         are not supported
+     */
+    @Nullable
+    static ServiceDispatcher generate(Iterable<? extends ServiceNode<?>> nodes) {
+        requireNonNull(nodes, "nodes is null");
+        if (DEFINE_HIDDEN_CLASS == null) {
+            return null;
+        }
+        // Find all the nodes we can dispatch to, sorted by the identity hash code of their class
+        IdentityHashMap<Class<?>, AbstractRuntimeServiceNode<?>> included = new IdentityHashMap<>();
+        TreeMap<Integer, ArrayList<Class<?>>> byHash = new TreeMap<>();
+        for (ServiceNode<?> n : nodes) {
+            Class<?> type = rawClassOf(n.key());
+            if (type != null && !included.containsKey(type)) { // first node wins
+                AbstractRuntimeServiceNode<?> node = unwrap(n.toRuntimeNode());
+                if (!node.needsInjectionSite()) {
+                    if (included.size() == MAX_NODES) {
+                        return null;
+                    }
+                    included.put(type, node);
+                    byHash.computeIfAbsent(System.identityHashCode(type), k -> new ArrayList<>(1)).add(type);
+                }
+            }
+        }
+
+        // Collect the shape of the class, and the arguments to its constructor in the order of its fields
+        int size = included.size();
+        Shape shape = new Shape(new int[size], new byte[size]);
+        Object[] arguments = new Object[2 * size];
+        int index = 0;
+        for (ArrayList<Class<?>> types : byHash.values()) {
+            for (Class<?> type : types) {
+                AbstractRuntimeServiceNode<?> node = included.get(type);
+                byte kind = kindOf(node);
+                shape.hashes[index] = System.identityHashCode(type);
+                shape.kinds[index] = kind;
+                arguments[2 * index] = type;
+                arguments[2 * index + 1] = kind == SINGLETON ? ((RuntimeSingletonServiceNode<?>) node).get() : node;
+                index++;
+            }
+        }
+
+        // Remove the entries of classes that have been unloaded
+        for (Reference<?> r; (r = UNLOADED.poll()) != null;) {
+            CLASSES.remove(((ShapeReference) r).shape, r);
+        }
+        Class<?>[] generated = new Class<?>[1]; // Keeps the class reachable until the dispatcher has been created
+        CLASSES.compute(shape, (s, r) -> {
+            Class<?> c = r == null ? null : r.get();
+            if (c == null) {
+                c = defineClass(s);
+                r = new ShapeReference(s, c);
+            }
+            generated[0] = c;
+            return r;
+        });
+        try {
+            MethodHandle constructor = MethodHandles.lookup().findConstructor(generated[0], MethodType.methodType(void.class, Object[].class));
+            return (ServiceDispatcher) constructor.invoke(arguments);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create a service dispatcher", e);
+        }
+    }
+
+    /**
+     * Generates and defines a hidden class for the specified shape.
+     * 
+     * @param shape
+     *            the shape of the class
+     * @return the new class
+     */
+    private static Class<?> defineClass(Shape shape) {
+        try {
+            return ((MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invokeExact(MethodHandles.lookup(), new ServiceDispatcherGenerator().define(shape))).lookupClass();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not generate a service dispatcher", e);
+        }
+    }
+
+    /**
+     * Returns a method handle for {@code Lookup.defineHiddenClass(bytes, true)}. Which is looked up reflectively as this
+     * module targets Java 11.
+     * 
+     * @return the method handle, or null if hidden classes are not supported
+     */
+    @Nullable
+    private static MethodHandle defineHiddenClass() {
+        try {
+            Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            Object options = Array.newInstance(option, 0);
+            MethodHandle mh = MethodHandles.publicLookup().findVirtual(MethodHandles.Lookup.class, "defineHiddenClass",
+                    MethodType.methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, options.getClass()));
+            return MethodHandles.insertArguments(mh, 2, true, options);
+        } catch (ReflectiveOperationException e) {
+            return null; // Java 14 or earlier
+        }
+    }
+
+    /**
+     * Returns the size of the bytecode of the {@code instanceOf} method that is generated for the specified shape. Used
+     * for testing.
+     * 
+     * @param shape
+     *            the shape of the class
+     * @return the size of the bytecode of the {@code instanceOf} method
+     */
+    static int instanceOfSize(Shape shape) {
+        ServiceDispatcherGenerator g = new ServiceDispatcherGenerator();
+        g.define(shape);
+        return g.instanceOfSize;
+    }
+
+    private static byte kindOf(AbstractRuntimeServiceNode<?> node) {
+        if (node instanceof RuntimeSingletonServiceNode) {
+            return SINGLETON;
+        } else if (node instanceof RuntimePrototypeServiceNode) {
+            return PROTOTYPE;
+        } else if (node instanceof RuntimeLazyServiceNode) {
+            return LAZY;
+        }
+        return OTHER;
+    }
+
+    private static String descriptorOf(Class<?> type) {
+        return "L" + internalName(type) + ";";
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    /** Returns the raw class of the specified key if it has no qualifier and its type is not parameterized. */
+    private static Class<?> rawClassOf(Key<?> key) {
+        if (key.hasQualifier()) {
+            return null;
+        }
+        Type t = key.typeLiteral().type();
+        return t instanceof Class ? (Class<?>) t : null;
+    }
+
+    /** Follows delegating nodes to the node that actually provides the instance. */
+    private static AbstractRuntimeServiceNode<?> unwrap(AbstractRuntimeServiceNode<?> node) {
+        while (node instanceof RuntimeDelegateServiceNode) {
+            node = ((RuntimeDelegateServiceNode<?>) node).aliasOf;
+        }
+        return node;
+    }
+
+    /** A weak reference to a generated class, that remembers its shape so it can be removed once the class is unloaded. */
+    private static final class ShapeReference extends WeakReference<Class<?>> {
+
+        /** The shape of the class. */
+        private final Shape shape;
+
+        ShapeReference(Shape shape, Class<?> generated) {
+            super(generated, UNLOADED);
+            this.shape = shape;
+        }
+    }
+
+    /**
+     * The layout of a generated class. The identity hash codes of the included classes in ascending order, and the kind
+     * of node for each class.
+     */
+    static final class Shape {
+
+        /** The identity hash codes of the classes, in ascending order. */
+        final int[] hashes;
+
+        /** The kind of node for each class. */
+        final byte[] kinds;
+
+        Shape(int[] hashes, byte[] kinds) {
+            this.hashes = requireNonNull(hashes);
+            this.kinds = requireNonNull(kinds);
+        }
+
+        /** Returns the distinct hash codes, in ascending order. */
+        int[] distinctHashes() {
+            return Arrays.stream(hashes).distinct().toArray();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Shape && Arrays.equals(hashes, ((Shape) obj).hashes) && Arrays.equals(kinds, ((Shape) obj).kinds);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(hashes) + Arrays.hashCode(kinds);
+        }
+
+        /** Returns the number of classes. */
+        int size() {
+            return hashes.length;
+        }
+    }
+}
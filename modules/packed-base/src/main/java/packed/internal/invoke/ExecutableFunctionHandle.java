@@ -19,6 +19,8 @@ import static java.util.Objects.requireNonNull;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Modifier;
 
 import app.packed.inject.Factory;
@@ -46,12 +48,25 @@ public class ExecutableFunctionHandle<T> extends InvokableMember<T> {
     /** A special method handle that should for this factory. */
     final MethodHandle methodHandle;
 
+    /**
+     * The method handle bound to any instance, with a fixed arity, and adapted to {@code (Object, ..., Object)Object}. Or
+     * null if there is no method handle.
+     */
+    @Nullable
+    private final MethodHandle exact;
+
+    /** {@link #exact} adapted to {@code (Object[])Object}. Or null if there is no method handle. */
+    @Nullable
+    private final MethodHandle spreader;
+
     @SuppressWarnings("unchecked")
     public ExecutableFunctionHandle(MethodDescriptor methodDescriptor) {
         super((TypeLiteral<T>) methodDescriptor.returnTypeLiteral(), null);
         this.executable = methodDescriptor;
         this.methodHandle = null;
         this.checkLowerBound = false;
+        this.exact = null;
+        this.spreader = null;
     }
 
     public ExecutableFunctionHandle(TypeLiteral<T> key, ExecutableDescriptor executable, MethodHandle methodHandle, @Nullable Object instance) {
@@ -59,30 +74,195 @@ public class ExecutableFunctionHandle<T> extends InvokableMember<T> {
         this.executable = executable;
         this.methodHandle = methodHandle;
         this.checkLowerBound = false;
+        if (methodHandle == null) {
+            this.exact = null;
+            this.spreader = null;
+        } else {
+            // Done once, instead of binding and adapting the method handle on every invocation
+            MethodHandle mh = methodHandle;
+            if (instance != null) {
+                mh = mh.bindTo(instance);
+            }
+            if (executable.isVarArgs()) {
+                mh = mh.asFixedArity();
+            }
+            int parameterCount = mh.type().parameterCount();
+            this.exact = mh.asType(MethodType.genericMethodType(parameterCount));
+            this.spreader = exact.asSpreader(Object[].class, parameterCount);
+        }
     }
 
     public boolean hasMethodHandle() {
         return methodHandle != null;
     }
 
+    /**
+     * Returns an exception for a throwable that was thrown by the underlying executable. Errors and runtime exceptions are
+     * rethrown as they are.
+     * 
+     * @param e
+     *            the throwable that was thrown
+     * @return an injection exception wrapping the throwable
+     */
+    private InjectionException failed(Throwable e) {
+        ThrowableUtil.rethrowErrorOrRuntimeException(e);
+        return new InjectionException("Failed to inject " + executable.descriptorTypeName(), e);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Up to four arguments are passed directly to the exact method handle, avoiding the spreader.
+     * 
+     * @throws WrongMethodTypeException
+     *             if the number of arguments does not match the number of parameters of the underlying executable
+     */
     @SuppressWarnings("unchecked")
     @Override
     @Nullable
     public T invoke(Object[] params) {
-        requireNonNull(methodHandle, "internal error");
+        switch (params.length) {
+        case 0:
+            return invoke0();
+        case 1:
+            return invoke1(params[0]);
+        case 2:
+            return invoke2(params[0], params[1]);
+        case 3:
+            return invoke3(params[0], params[1], params[2]);
+        case 4:
+            return invoke4(params[0], params[1], params[2], params[3]);
+        }
+        requireNonNull(spreader, "internal error");
+        if (params.length != exact.type().parameterCount()) {
+            throw new WrongMethodTypeException("Expected " + exact.type().parameterCount() + " arguments, but got " + params.length);
+        }
+        Object result;
         try {
-            MethodHandle mh = methodHandle;
-            if (instance != null) {
-                mh = methodHandle.bindTo(instance);
-            }
-            if (executable.isVarArgs()) {
-                mh = mh.asFixedArity();
-            }
-            return (T) mh.invokeWithArguments(params);
+            result = spreader.invokeExact(params);
+        } catch (Throwable e) {
+            throw failed(e);
+        }
+        return (T) result;
+    }
+
+    /**
+     * Invokes the underlying executable, which must take no parameters.
+     * 
+     * @return the result of the invocation
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T invoke0() {
+        requireNonNull(exact, "internal error");
+        Object result;
+        try {
+            result = exact.invokeExact();
+        } catch (Throwable e) {
+            throw failed(e);
+        }
+        return (T) result;
+    }
+
+    /**
+     * Invokes the underlying executable, which must take a single parameter.
+     * 
+     * @param a1
+     *            the first argument
+     * @return the result of the invocation
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T invoke1(Object a1) {
+        requireNonNull(exact, "internal error");
+        Object result;
+        try {
+            result = exact.invokeExact(a1);
+        } catch (Throwable e) {
+            throw failed(e);
+        }
+        return (T) result;
+    }
+
+    /**
+     * Invokes the underlying executable, which must take two parameters.
+     * 
+     * @param a1
+     *            the first argument
+     * @param a2
+     *            the second argument
+     * @return the result of the invocation
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T invoke2(Object a1, Object a2) {
+        requireNonNull(exact, "internal error");
+        Object result;
+        try {
+            result = exact.invokeExact(a1, a2);
+        } catch (Throwable e) {
+            throw failed(e);
+        }
+        return (T) result;
+    }
+
+    /**
+     * Invokes the underlying executable, which must take three parameters.
+     * 
+     * @param a1
+     *            the first argument
+     * @param a2
+     *            the second argument
+     * @param a3
+     *            the third argument
+     * @return the result of the invocation
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T invoke3(Object a1, Object a2, Object a3) {
+        requireNonNull(exact, "internal error");
+        Object result;
+        try {
+            result = exact.invokeExact(a1, a2, a3);
+        } catch (Throwable e) {
+            throw failed(e);
+        }
+        return (T) result;
+    }
+
+    /**
+     * Invokes the underlying executable, which must take four parameters.
+     * 
+     * @param a1
+     *            the first argument
+     * @param a2
+     *            the second argument
+     * @param a3
+     *            the third argument
+     * @param a4
+     *            the fourth argument
+     * @return the result of the invocation
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T invoke4(Object a1, Object a2, Object a3, Object a4) {
+        requireNonNull(exact, "internal error");
+        Object result;
+        try {
+            result = exact.invokeExact(a1, a2, a3, a4);
         } catch (Throwable e) {
-            ThrowableUtil.rethrowErrorOrRuntimeException(e);
-            throw new InjectionException("Failed to inject " + executable.descriptorTypeName(), e);
+            throw failed(e);
         }
+        return (T) result;
+    }
+
+    /**
+     * Returns whether or not the underlying executable is a static method.
+     * 
+     * @return whether or not the underlying executable is a static method
+     */
+    public boolean isStatic() {
+        return executable instanceof MethodDescriptor && ((MethodDescriptor) executable).isStatic();
     }
 
     @Override
@@ -90,6 +270,13 @@ public class ExecutableFunctionHandle<T> extends InvokableMember<T> {
         return executable instanceof MethodDescriptor && !((MethodDescriptor) executable).isStatic() && instance == null;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public MethodHandle toMethodHandle(int parameterCount) {
+        requireNonNull(exact, "internal error");
+        return exact.asType(MethodType.genericMethodType(parameterCount));
+    }
+
     @Override
     public String toString() {
         return executable.toString();
@@ -19,6 +19,7 @@ import static java.util.Objects.requireNonNull;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.lang.invoke.VarHandle;
 import java.lang.invoke.VarHandle.AccessMode;
 import java.lang.reflect.Modifier;
@@ -82,6 +83,22 @@ public final class FieldFunctionHandle<T> extends InvokableMember<T> {
         return mh;
     }
 
+    /**
+     * Returns a method handle of type {@code (Object, Object)void} that sets the value of the field on the instance that
+     * is specified as the first parameter.
+     * 
+     * @return a method handle that sets the value of the field
+     * @throws UnsupportedOperationException
+     *             if the underlying field is static
+     */
+    public MethodHandle toSetter() {
+        if (isStatic) {
+            throw new UnsupportedOperationException("Underlying field " + field + " is static");
+        }
+        MethodHandle mh = varHandle.toMethodHandle(isVolatile ? AccessMode.SET_VOLATILE : AccessMode.SET);
+        return mh.asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
     /** {@inheritDoc} */
     @Override
     public @Nullable T invoke(Object[] params) {
@@ -18,7 +18,10 @@ package packed.internal.invoke;
 import static java.util.Objects.requireNonNull;
 import static packed.internal.util.StringFormatter.format;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 
 import app.packed.inject.Factory;
 import app.packed.inject.InjectionException;
@@ -36,6 +39,17 @@ import app.packed.util.TypeLiteral;
 // Men checker den korrekte type???
 public abstract class FunctionHandle<T> extends Object {
 
+    /** A method handle for {@link #invoke(Object[])}. */
+    private static final MethodHandle INVOKE;
+
+    static {
+        try {
+            INVOKE = MethodHandles.lookup().findVirtual(FunctionHandle.class, "invoke", MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     //////// TYPES (Raw)
     // ExactType... -> Instance, Constructor
     // LowerBoundType, Field, Method
@@ -113,6 +127,19 @@ public abstract class FunctionHandle<T> extends Object {
     @Nullable
     public abstract T invoke(Object[] params);
 
+    /**
+     * Returns a method handle of type {@code (Object, ..., Object)Object} that invokes this function. The default
+     * implementation collects the arguments into an array and calls {@link #invoke(Object[])}. Subclasses that are backed
+     * by a method handle should override it to return a handle that invokes the target directly.
+     * 
+     * @param parameterCount
+     *            the number of parameters the function takes
+     * @return a method handle that invokes this function
+     */
+    public MethodHandle toMethodHandle(int parameterCount) {
+        return INVOKE.bindTo(this).asCollector(Object[].class, parameterCount);
+    }
+
     public FunctionHandle<T> withLookup(Lookup lookup) {
         throw new UnsupportedOperationException("This method is only supported by factories that were created from a field, constructor or method");
     }
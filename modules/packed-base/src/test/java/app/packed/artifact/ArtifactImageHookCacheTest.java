@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.artifact;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import app.packed.app.App;
+import app.packed.container.BaseBundle;
+import app.packed.inject.InjectionExtension;
+import app.packed.inject.Provide;
+
+/** Tests {@link ArtifactImage#writeHookCache(Path)} and {@link ArtifactImage#readHookCache(Path)}. */
+public class ArtifactImageHookCacheTest {
+
+    @Test
+    public void roundTrip(@TempDir Path dir) throws IOException {
+        Path p = dir.resolve("image.hooks");
+        ArtifactImage image = ArtifactImage.of(new Bundle());
+        image.writeHookCache(p);
+        assertThat(p).exists();
+
+        ArtifactImage.readHookCache(p);
+        App app = App.of(new Bundle());
+        assertThat(app.stream().count()).isEqualTo(3);
+    }
+
+    /** Tests that the hooks from the file are used for classes loaded from an unchanged location. */
+    @Test
+    public void unchangedLocation(@TempDir Path dir) throws IOException {
+        Path p = dir.resolve("image.hooks");
+        ArtifactImage.of(new BaseBundle() {
+            @Override
+            protected void configure() {
+                install(new Plain());
+            }
+        }).writeHookCache(p);
+
+        // Pretend that Hooks had no hooks when the file was written, by renaming the entry of Plain
+        byte[] bytes = Files.readAllBytes(p);
+        byte[] from = Plain.class.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] to = Hooks.class.getName().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i <= bytes.length - from.length; i++) {
+            if (Arrays.equals(bytes, i, i + from.length, from, 0, from.length)) {
+                System.arraycopy(to, 0, bytes, i, to.length);
+            }
+        }
+        Files.write(p, bytes);
+
+        ArtifactImage.readHookCache(p);
+        App.of(new BaseBundle() {
+            @Override
+            protected void configure() {
+                install(new Hooks());
+                assertThat(extensions()).doesNotContain(InjectionExtension.class);
+            }
+        });
+    }
+
+    /** Tests that a class loaded from a location that has changed since the file was written is scanned for hooks. */
+    @Test
+    public void changedLocation(@TempDir Path dir) throws IOException {
+        // Written before the @Provide field was added to WithHook
+        Path p = dir.resolve("image.hooks");
+        try (DataOutputStream dos = new DataOutputStream(Files.newOutputStream(p))) {
+            dos.writeInt(0x504B4953);
+            dos.writeShort(3);
+            dos.writeInt(1);
+            dos.writeUTF(WithHook.class.getProtectionDomain().getCodeSource().getLocation().toString());
+            dos.writeLong(0); // size
+            dos.writeLong(0); // last modified
+            dos.writeInt(1);
+            dos.writeUTF(WithHook.class.getName());
+            dos.writeInt(1); // number of classes in the hierarchy
+            dos.writeInt(0); // index of location
+            dos.writeInt(0); // number of hooks
+        }
+        ArtifactImage.readHookCache(p);
+        App.of(new BaseBundle() {
+            @Override
+            protected void configure() {
+                install(new WithHook());
+                assertThat(extensions()).contains(InjectionExtension.class);
+            }
+        });
+    }
+
+    @Test
+    public void notASnapshot(@TempDir Path dir) throws IOException {
+        Path p = Files.write(dir.resolve("image.hooks"), new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+        assertThatThrownBy(() -> ArtifactImage.readHookCache(p)).isExactlyInstanceOf(IOException.class).hasMessageStartingWith("Not a snapshot file");
+    }
+
+    @Test
+    public void unsupportedVersion(@TempDir Path dir) throws IOException {
+        Path p = Files.write(dir.resolve("image.hooks"), new byte[] { 'P', 'K', 'I', 'S', 0x7F, 0x7F, 0, 0, 0, 0 });
+        assertThatThrownBy(() -> ArtifactImage.readHookCache(p)).isExactlyInstanceOf(IOException.class)
+                .hasMessageStartingWith("Unsupported snapshot version");
+    }
+
+    @Test
+    public void truncated(@TempDir Path dir) throws IOException {
+        Path p = Files.write(dir.resolve("image.hooks"), new byte[] { 'P', 'K', 'I', 'S', 0, 3, 0, 0, 0, 1, 0 });
+        assertThatThrownBy(() -> ArtifactImage.readHookCache(p)).isExactlyInstanceOf(IOException.class).hasMessageStartingWith("Corrupt snapshot file");
+    }
+
+    static class Bundle extends BaseBundle {
+        @Override
+        protected void configure() {
+            install("a").setName("a");
+            install(1L).setName("b");
+        }
+    }
+
+    public static class Plain {}
+
+    public static class Hooks {
+
+        @Provide
+        public String foo = "foo";
+    }
+
+    public static class WithHook {
+
+        @Provide
+        public String foo = "foo";
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.artifact;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.app.App;
+import app.packed.component.Component;
+import app.packed.container.BaseBundle;
+import app.packed.container.Wirelet;
+
+/** Tests instantiating artifacts from an {@link ArtifactImage}. */
+public class ArtifactImageTest {
+
+    /** Apps created from an image has the same structure as apps created directly from the bundle. */
+    @Test
+    public void sameStructureAsBundle() {
+        ArtifactImage image = ArtifactImage.of(new Outer());
+        App fromImage = App.of(image);
+        App fromBundle = App.of(new Outer());
+
+        assertThat(paths(fromImage)).isEqualTo(paths(fromBundle)).containsExactly("/", "/1", "/2", "/Inner", "/Inner/ix");
+        assertThat(fromImage.name()).isEqualTo(fromBundle.name());
+        assertThat(fromImage.useComponent("/Inner/ix").depth()).isEqualTo(2);
+    }
+
+    /** Every app created from an image has its own components. */
+    @Test
+    public void newComponentsForEachApp() {
+        ArtifactImage image = ArtifactImage.of(new Outer());
+        App app1 = App.of(image);
+        App app2 = App.of(image);
+        assertThat(app1.useComponent("/Inner")).isNotSameAs(app2.useComponent("/Inner"));
+        assertThat(paths(app1)).isEqualTo(paths(app2));
+    }
+
+    /** The name of the root can be changed when instantiating. */
+    @Test
+    public void rootName() {
+        ArtifactImage image = ArtifactImage.of(new Outer());
+        assertThat(App.of(image, Wirelet.name("Foo")).name()).isEqualTo("Foo");
+        assertThat(App.of(image, Wirelet.name("Boo?")).name()).isEqualTo("Boo");
+        assertThat(App.of(image.withName("Bar")).name()).isEqualTo("Bar");
+        assertThat(App.of(image).name()).isEqualTo("Outer");
+    }
+
+    private static List<String> paths(App app) {
+        return app.stream().map(Component::path).map(Object::toString).sorted().collect(Collectors.toList());
+    }
+
+    static class Inner extends BaseBundle {
+        @Override
+        protected void configure() {
+            install("x").setName("ix");
+        }
+    }
+
+    static class Outer extends BaseBundle {
+        @Override
+        protected void configure() {
+            install("a").setName("1");
+            install("b").setName("2");
+            link(new Inner());
+        }
+    }
+}
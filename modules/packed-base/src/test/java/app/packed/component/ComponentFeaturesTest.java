@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.app.App;
+import app.packed.artifact.ArtifactImage;
+import app.packed.container.BaseBundle;
+import app.packed.feature.FeatureKey;
+
+/** Tests {@link Component#features()}. */
+public class ComponentFeaturesTest {
+
+    static final FeatureKey<String> KEY = new FeatureKey<>() {};
+
+    /** Components are created whenever they are looked up, features set on one lookup must be visible to the next. */
+    @Test
+    public void retainedBetweenLookups() {
+        App app = App.of(new Bundle());
+        app.useComponent("foo").features().set(KEY, "bar");
+        assertThat(app.useComponent("foo").features().get(KEY)).isEqualTo("bar");
+        assertThat(app.stream().filter(c -> c.name().equals("foo")).findFirst().get().features().get(KEY)).isEqualTo("bar");
+        assertThat(app.useComponent("boo").features().get(KEY)).isNull();
+    }
+
+    /** Components start out with the features they had when they were configured. */
+    @Test
+    public void configuredFeatures() {
+        App app = App.of(new BaseBundle() {
+            @Override
+            protected void configure() {
+                install("foo").setName("foo").features().set(KEY, "configured");
+            }
+        });
+        assertThat(app.useComponent("foo").features().get(KEY)).isEqualTo("configured");
+        assertThat(app.stream().filterOnFeature(KEY).count()).isEqualTo(1);
+    }
+
+    /** Artifacts created from the same image share the structure of their components, but not their features. */
+    @Test
+    public void notSharedBetweenArtifacts() {
+        ArtifactImage image = ArtifactImage.of(new Bundle());
+        App app1 = App.of(image);
+        App app2 = App.of(image);
+        app1.useComponent("foo").features().set(KEY, "bar");
+        assertThat(app1.useComponent("foo").features().get(KEY)).isEqualTo("bar");
+        assertThat(app2.useComponent("foo").features().get(KEY)).isNull();
+    }
+
+    static class Bundle extends BaseBundle {
+
+        @Override
+        protected void configure() {
+            install("foo").setName("foo");
+            install("boo").setName("boo");
+        }
+    }
+}
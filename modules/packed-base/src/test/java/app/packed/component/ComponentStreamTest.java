@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.app.App;
+import app.packed.artifact.ArtifactImage;
+import app.packed.container.BaseBundle;
+import app.packed.container.Wirelet;
+import app.packed.feature.FeatureKey;
+
+/** Tests {@link ComponentStream}. */
+public class ComponentStreamTest {
+
+    private static List<String> paths(Stream<Component> s) {
+        return s.map(c -> c.path().toString()).collect(Collectors.toList());
+    }
+
+    /** Tests that parallel streams, and depth and type filtering, behave like their sequential non-fused counterparts. */
+    @Test
+    public void filtering() {
+        App app = App.of(new Level(0));
+        List<String> all = paths(app.stream());
+        assertThat(all).hasSize(85 * 3).startsWith("/");
+        assertThat(paths(app.stream().parallel())).isEqualTo(all);
+
+        for (int depth = 0; depth < 6; depth++) {
+            int d = depth;
+            List<String> expected = paths(app.stream().filter(c -> c.depth() <= d));
+            assertThat(paths(app.stream().filterOnDepth(depth))).isEqualTo(expected);
+            assertThat(paths(app.stream().filterOnDepth(depth).parallel())).isEqualTo(expected);
+            assertThat(paths(app.stream().skip(0).filterOnDepth(depth))).isEqualTo(expected);
+        }
+
+        for (Class<?> type : List.of(Foo.class, Level.class, Object.class, String.class)) {
+            List<String> expected = paths(app.stream().skip(0).filterOnType(type));
+            assertThat(paths(app.stream().filterOnType(type))).isEqualTo(expected);
+            assertThat(paths(app.stream().parallel().filterOnType(type))).isEqualTo(expected);
+        }
+        assertThat(app.stream().filterOnType(Foo.class).count()).isEqualTo(85 * 2);
+        assertThat(app.stream().filterOnType(Level.class).count()).isEqualTo(85);
+        assertThat(app.stream().filterOnDepth(1).filterOnType(Level.class).count()).isEqualTo(5);
+    }
+
+    /**
+     * Tests that queries on type, extension and feature return the same components as a full scan. The expected components
+     * are found with predicates that does not use any indexes. Foo components are named Foo, Foo1. Every Level installs
+     * components, so uses the component extension, and has children. And the feature is set on the first Foo.
+     */
+    @Test
+    public void indexedQueries() {
+        ArtifactImage image = ArtifactImage.of(new Level(0));
+        App app = App.of(image);
+        for (Supplier<ComponentStream> s : List.<Supplier<ComponentStream>>of(app::stream, image::stream, () -> app.useComponent("/L2").stream())) {
+            assertThat(paths(s.get().filterOnType(Foo.class))).isEqualTo(paths(s.get().filter(c -> c.name().startsWith("Foo"))));
+            assertThat(paths(s.get().filterOnType(Level.class))).isEqualTo(paths(s.get().filter(c -> !c.children().isEmpty())));
+            assertThat(paths(s.get().filterOnExtension(ComponentExtension.class))).isEqualTo(paths(s.get().filter(c -> !c.children().isEmpty())));
+            assertThat(paths(s.get().filterOnFeature(KEY))).isEqualTo(paths(s.get().filter(c -> c.name().equals("Foo"))));
+            assertThat(paths(s.get().filterOnFeature(KEY))).isEqualTo(paths(s.get().filter(c -> "foo".equals(c.features().get(KEY)))));
+            assertThat(paths(s.get().filterOnDepth(2).filterOnType(Level.class).filterOnFeature(KEY))).isEmpty();
+        }
+        assertThat(app.stream().filterOnExtension(ComponentExtension.class).count()).isEqualTo(85);
+        assertThat(app.stream().filterOnFeature(KEY).count()).isEqualTo(85);
+        assertThat(app.useComponent("/L2").stream().filterOnFeature(KEY).count()).isEqualTo(21);
+    }
+
+    static final FeatureKey<String> KEY = new FeatureKey<>() {};
+
+    static class Foo {}
+
+    static class Level extends BaseBundle {
+        final int depth;
+
+        Level(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        protected void configure() {
+            install(new Foo()).features().set(KEY, "foo");
+            install(new Foo());
+            if (depth < 3) {
+                for (int i = 0; i < 4; i++) {
+                    link(new Level(depth + 1), Wirelet.name("L" + i));
+                }
+            }
+        }
+    }
+}
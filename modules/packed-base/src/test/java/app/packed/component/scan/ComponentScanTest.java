@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.component.scan;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.app.App;
+import app.packed.component.Component;
+import app.packed.component.ComponentScan;
+import app.packed.component.Install;
+import app.packed.container.BaseBundle;
+
+/** Tests {@link ComponentScan}. */
+public class ComponentScanTest {
+
+    /** Only concrete classes annotated with {@link Install} in the package of the bundle are installed. */
+    @Test
+    public void installsAnnotatedClasses() {
+        assertThat(paths(App.of(new ScanBundle()))).containsExactly("/", "/Alpha", "/Beta");
+
+        // The result of the scan is cached per bundle type
+        assertThat(paths(App.of(new ScanBundle()))).containsExactly("/", "/Alpha", "/Beta");
+    }
+
+    /** Bundles that are not annotated with {@link ComponentScan} does not scan anything. */
+    @Test
+    public void notAnnotated() {
+        assertThat(paths(App.of(new NoScanBundle()))).containsExactly("/");
+    }
+
+    private static List<String> paths(App app) {
+        return app.stream().map(Component::path).map(Object::toString).sorted().collect(Collectors.toList());
+    }
+
+    @Install
+    public static class Alpha {}
+
+    @Install
+    public abstract static class Abstract {}
+
+    @Install
+    public static class Beta {}
+
+    public static class NotInstalled {}
+
+    public static class NoScanBundle extends BaseBundle {}
+
+    @ComponentScan
+    public static class ScanBundle extends BaseBundle {}
+}
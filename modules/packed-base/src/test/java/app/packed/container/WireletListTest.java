@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package app.packed.container;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests {@link WireletList}. */
+public class WireletListTest {
+
+    /** Tests that lists created from a shared list see their own wirelets, and that lookups match a linear scan. */
+    @Test
+    public void plus() {
+        WireletList base = WireletList.of(new W1(1), new W2(2), new W3(), new W1(3), new W1(4), new W1(5));
+        WireletList a = base.plus(new W3());
+        WireletList b = base.plus(new W2(9), WireletList.of(new W1(10), new W3()));
+
+        assertThat(base.toList()).hasSize(6);
+        assertThat(a.toList()).hasSize(7).startsWith(base.toList().toArray(new Wirelet[0]));
+        assertThat(b.toList()).hasSize(9).startsWith(base.toList().toArray(new Wirelet[0]));
+
+        assertThat(base.findLastOrNull(W2.class).i).isEqualTo(2);
+        assertThat(a.findLastOrNull(W2.class).i).isEqualTo(2);
+        assertThat(b.findLastOrNull(W2.class).i).isEqualTo(9);
+        assertThat(b.findLastOrNull(W1.class).i).isEqualTo(10);
+        assertThat(a.toList(W1.class)).hasSize(5);
+
+        // Grow a list one wirelet at a time, and compare lookups with a linear scan
+        WireletList l = WireletList.of();
+        List<Wirelet> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Wirelet w = i % 3 == 0 ? new W1(i) : i % 3 == 1 ? new W2(i) : new W3();
+            l = i % 2 == 0 ? l.plus(w) : WireletList.of(l.andThen(w));
+            expected.add(w);
+            assertThat(l.toList()).isEqualTo(expected);
+            for (Class<? extends Wirelet> type : List.of(W1.class, W2.class, W3.class, Wirelet.class)) {
+                assertThat(l.findLastOrNull(type)).isSameAs(lastOf(expected, type));
+            }
+        }
+    }
+
+    private static Wirelet lastOf(List<Wirelet> wirelets, Class<?> type) {
+        for (int i = wirelets.size() - 1; i >= 0; i--) {
+            if (type.isInstance(wirelets.get(i))) {
+                return wirelets.get(i);
+            }
+        }
+        return null;
+    }
+
+    interface Marker {}
+
+    static class W1 extends Wirelet {
+        final int i;
+
+        W1(int i) {
+            this.i = i;
+        }
+    }
+
+    static class W2 extends W1 {
+        W2(int i) {
+            super(i);
+        }
+    }
+
+    static class W3 extends Wirelet implements Marker {}
+}
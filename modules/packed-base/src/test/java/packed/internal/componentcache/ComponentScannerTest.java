@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.componentcache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import app.packed.component.ComponentScan;
+import app.packed.component.Install;
+
+/** Tests {@link ComponentScanner}. */
+public class ComponentScannerTest {
+
+    /** Tests that jar files are only read again if their size or last modified time changes. */
+    @Test
+    public void jarCache(@TempDir Path dir) throws IOException {
+        ComponentScanner scanner = ComponentScanner.of(ScanBundle.class);
+        Path jar = dir.resolve("components.jar");
+        writeJar(jar, Alpha.class);
+        FileTime time = Files.getLastModifiedTime(jar);
+        assertThat(scanner.scanJar(jar)).containsExactly(Alpha.class.getName());
+
+        // Same size and last modified time, the file is not read. Otherwise it would fail as it is no longer a jar file
+        Files.write(jar, new byte[(int) Files.size(jar)]);
+        Files.setLastModifiedTime(jar, time);
+        assertThat(scanner.scanJar(jar)).containsExactly(Alpha.class.getName());
+
+        // A different size, the file is read again
+        writeJar(jar, Alpha.class, Beta.class);
+        Files.setLastModifiedTime(jar, time);
+        assertThat(scanner.scanJar(jar)).containsExactlyInAnyOrder(Alpha.class.getName(), Beta.class.getName());
+    }
+
+    private static void writeJar(Path jar, Class<?>... classes) throws IOException {
+        try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Class<?> c : classes) {
+                String name = c.getName();
+                jos.putNextEntry(new JarEntry(name.replace('.', '/') + ".class"));
+                try (InputStream is = c.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+                    is.transferTo(jos);
+                }
+                jos.closeEntry();
+            }
+        }
+    }
+
+    @Install
+    public static class Alpha {}
+
+    @Install
+    public static class Beta {}
+
+    @ComponentScan
+    public static class ScanBundle {}
+}
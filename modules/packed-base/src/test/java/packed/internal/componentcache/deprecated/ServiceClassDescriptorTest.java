@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.componentcache.deprecated;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Inject;
+import support.stubs.Letters.A;
+
+/** Tests {@link ServiceClassDescriptor}. */
+public class ServiceClassDescriptorTest {
+
+    /** Tests that descriptors are cached by lookup class and modes, so alternating lookup objects never rescan. */
+    @Test
+    public void cachedPerLookup() throws Exception {
+        MethodHandles.Lookup l1 = MethodHandles.lookup();
+        MethodHandles.Lookup l2 = MethodHandles.privateLookupIn(Target.class, l1);
+        MethodHandles.Lookup l3 = MethodHandles.lookup();
+        ServiceClassDescriptor d1 = ServiceClassDescriptor.from(l1, Target.class);
+        ServiceClassDescriptor d2 = ServiceClassDescriptor.from(l2, Target.class);
+        assertThat(d1).isNotSameAs(d2);
+        assertThat(ServiceClassDescriptor.from(l1, Target.class)).isSameAs(d1);
+        assertThat(ServiceClassDescriptor.from(l2, Target.class)).isSameAs(d2);
+        assertThat(ServiceClassDescriptor.from(l3, Target.class)).isSameAs(d1);
+        assertThat(ServiceClassDescriptor.from(l1.dropLookupMode(MethodHandles.Lookup.PRIVATE), Target.class)).isNotSameAs(d1);
+    }
+
+    static class Target {
+
+        @Inject
+        A a;
+    }
+}
@@ -36,13 +36,23 @@ public class PackedComponentTest {
         checkPath(new PackedComponentPath("Foo", "Boo"), "/Foo/Boo");
     }
 
+    @Test
+    public void equality() {
+        ComponentPath p = new PackedComponentPath("Foo", "Boo");
+        assertThat((Object) p).isEqualTo(new PackedComponentPath("Foo", "Boo"));
+        assertThat((Object) p).isNotEqualTo(new PackedComponentPath("Foo", "Bo"));
+        assertThat((Object) p).isNotEqualTo(new PackedComponentPath("Boo", "Foo"));
+        assertThat((Object) p).isNotEqualTo(new PackedComponentPath("Foo"));
+        assertThat((Object) p.parent()).isEqualTo(new PackedComponentPath("Foo"));
+        assertThat((Object) p.parent().parent()).isSameAs(PackedComponentPath.ROOT);
+    }
+
     private static void checkPath(ComponentPath p, String expected) {
 
         ///////// Object
         // hashCode
         assertThat(p.hashCode()).isEqualTo(p.hashCode());
-        // TODO create some tests
-        // assertThat(p.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(p.hashCode()).isEqualTo(expected.hashCode());
 
         // Equals
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Inject;
+import app.packed.inject.Injector;
+import app.packed.inject.InjectorTemplate;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+
+/** Tests {@link PackedInjectorTemplate}. */
+public class PackedInjectorTemplateTest {
+
+    /** Tests that injectors spawned from the same template share a single injection plan per class. */
+    @Test
+    public void sharedInjectionPlans() {
+        Injector parent = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+        });
+        InjectorTemplate t = parent.template(B.class);
+        AbstractInjector i1 = (AbstractInjector) t.spawn(new B());
+        AbstractInjector i2 = (AbstractInjector) t.spawn(new B());
+        i1.injectMembers(new Members(), MethodHandles.lookup());
+        InjectionPlan plan = i1.injectionPlans().values().iterator().next();
+
+        Members m = i2.injectMembers(new Members(), MethodHandles.lookup());
+        assertThat(m.b).isSameAs(i2.use(B.class));
+        assertThat(i2.injectionPlans()).hasSize(1);
+        assertThat(i2.injectionPlans().values().iterator().next()).isSameAs(plan);
+        assertThat(((AbstractInjector) parent).injectionPlans()).isEmpty();
+    }
+
+    static class Members {
+
+        @Inject
+        A a;
+
+        @Inject
+        B b;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Injector;
+import app.packed.util.Key;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+import support.stubs.Letters.C;
+import support.stubs.annotation.Left;
+
+/** Tests {@link ServiceNodeMap}. */
+public class ServiceNodeMapTest {
+
+    /** Tests that frozen maps delegate misses to their parent, and that nodes in a map shadow nodes in its parents. */
+    @Test
+    public void parentShadowing() {
+        AbstractInjector i1 = (AbstractInjector) Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class);
+            c.provide(A.class).as(new Key<@Left A>() {});
+        });
+        AbstractInjector i2 = (AbstractInjector) Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(B.class);
+            c.provide(C.class);
+        });
+
+        ServiceNodeMap grandParent = new ServiceNodeMap();
+        i1.copyNodes().forEach(grandParent::put);
+        grandParent.toRuntimeNodes();
+
+        ServiceNodeMap parent = new ServiceNodeMap(grandParent);
+        i2.copyNodes().stream().filter(n -> !n.isPrivate()).forEach(parent::put);
+        parent.toRuntimeNodes();
+
+        ServiceNodeMap child = new ServiceNodeMap(parent);
+        child.toRuntimeNodes();
+
+        assertThat(child.getRecursive(A.class)).isSameAs(grandParent.getRecursive(A.class));
+        assertThat(child.getRecursive(new Key<@Left A>() {})).isSameAs(grandParent.getRecursive(new Key<@Left A>() {}));
+        assertThat(child.getRecursive(B.class)).isSameAs(parent.getRecursive(B.class)).isNotSameAs(grandParent.getRecursive(B.class));
+        assertThat(child.getRecursive(Key.of(C.class))).isSameAs(parent.getRecursive(C.class));
+        assertThat(child.getRecursive(String.class)).isNull();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.buildtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests {@link DependencyGraphParallelInstantiator}. */
+public class DependencyGraphParallelInstantiatorTest {
+
+    /** Tests that a node is placed above every dependency, even if the dependency is also reachable via a sibling. */
+    @Test
+    public void diamond() {
+        // root -> a, root -> b, b -> a
+        Map<String, List<String>> edges = Map.of("root", List.of("a", "b"), "a", List.of(), "b", List.of("a"));
+        assertThat(DependencyGraphParallelInstantiator.byLevel(List.of("root"), edges::get)).containsExactly(List.of("a"), List.of("b"),
+                List.of("root"));
+        assertThat(DependencyGraphParallelInstantiator.byLevel(List.of("root", "b", "a"), edges::get)).containsExactly(List.of("a"), List.of("b"),
+                List.of("root"));
+    }
+
+    /** Tests that independent nodes share a level, and that nodes reachable from several roots are only included once. */
+    @Test
+    public void independent() {
+        Map<String, List<String>> edges = Map.of("x", List.of("a", "b"), "y", List.of("b", "c"), "a", List.of(), "b", List.of(), "c",
+                List.of());
+        assertThat(DependencyGraphParallelInstantiator.byLevel(List.of("x", "y"), edges::get)).containsExactly(List.of("a", "b", "c"),
+                List.of("x", "y"));
+    }
+
+    /** Tests that long chains of dependencies does not overflow the stack. */
+    @Test
+    public void deepChain() {
+        int depth = 100_000;
+        List<List<Integer>> levels = DependencyGraphParallelInstantiator.byLevel(List.of(depth), i -> i == 0 ? List.of() : List.of(i - 1));
+        assertThat(levels).hasSize(depth + 1);
+        assertThat(levels.get(depth)).containsExactly(depth);
+    }
+}
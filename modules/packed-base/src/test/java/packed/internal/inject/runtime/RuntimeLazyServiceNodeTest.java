@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.InjectionException;
+import app.packed.inject.Injector;
+
+/** Tests {@link RuntimeLazyServiceNode}. */
+public class RuntimeLazyServiceNodeTest {
+
+    /** Tests that concurrent threads requesting a cold lazy service all see the same single instance. */
+    @Test
+    public void concurrentCreation() throws Exception {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(Slow.class).lazy();
+        });
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Slow>> futures = new ArrayList<>();
+            for (int j = 0; j < threads; j++) {
+                futures.add(es.submit(() -> {
+                    start.await();
+                    return i.use(Slow.class);
+                }));
+            }
+            start.countDown();
+            Slow first = futures.get(0).get();
+            for (Future<Slow> f : futures) {
+                assertThat(f.get()).isSameAs(first);
+            }
+            assertThat(Slow.CREATED.get()).isEqualTo(1);
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    /** Tests that a failure while creating the instance is thrown to the creating thread, and wrapped for every later caller. */
+    @Test
+    public void failure() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(Failing.class).lazy();
+        });
+        Throwable t = null;
+        try {
+            i.use(Failing.class);
+        } catch (IllegalArgumentException e) {
+            t = e;
+        }
+        assertThat(t).isNotNull();
+        Throwable t1 = catchThrowable(() -> i.use(Failing.class));
+        Throwable t2 = catchThrowable(() -> i.use(Failing.class));
+        assertThat(t1).isExactlyInstanceOf(InjectionException.class).hasCause(t);
+        assertThat(t2).isExactlyInstanceOf(InjectionException.class).hasCause(t).isNotSameAs(t1);
+        assertThat(t1.getCause()).isSameAs(t);
+    }
+
+    public static class Slow {
+        static final AtomicInteger CREATED = new AtomicInteger();
+
+        public Slow() throws InterruptedException {
+            Thread.sleep(50);
+            CREATED.incrementAndGet();
+        }
+    }
+
+    public static class Failing {
+        public Failing() {
+            throw new IllegalArgumentException();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.inject.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Injector;
+import app.packed.inject.InjectorConfigurator;
+import app.packed.inject.ServiceWirelets;
+import packed.internal.inject.AbstractInjector;
+import packed.internal.inject.runtime.ServiceDispatcherGenerator.Shape;
+import support.stubs.Letters;
+
+/** Tests {@link ServiceDispatcherGenerator}. */
+public class ServiceDispatcherGeneratorTest {
+
+    /** The services to install, all with distinct classes. */
+    private static final Class<?>[] TYPES = { Letters.A.class, Letters.B.class, Letters.C.class, Letters.D.class, Letters.E.class,
+            Letters.F.class, Letters.G.class, Letters.H.class, Letters.I.class, Letters.J.class, Letters.K.class, Letters.L.class };
+
+    /** Tests that the generated lookup method is small enough to be compiled, and for a few nodes inlined into hot call sites. */
+    @Test
+    public void instanceOfSize() {
+        for (byte kind : new byte[] { ServiceDispatcherGenerator.SINGLETON, ServiceDispatcherGenerator.PROTOTYPE, ServiceDispatcherGenerator.LAZY,
+                ServiceDispatcherGenerator.OTHER }) {
+            assertThat(instanceOfSize(kind, 8)).isLessThan(325); // FreqInlineSize
+            assertThat(instanceOfSize(kind, ServiceDispatcherGenerator.MAX_NODES)).isLessThan(8000); // HugeMethodLimit
+        }
+    }
+
+    /** Tests that injectors with the same layout share a single generated class. */
+    @Test
+    public void sharedClass() {
+        AbstractInjector i1 = (AbstractInjector) Injector.configure(c -> install(c, 3));
+        AbstractInjector i2 = (AbstractInjector) Injector.configure(c -> install(c, 3));
+        ServiceDispatcher d1 = ServiceDispatcherGenerator.generate(i1.copyNodes());
+        ServiceDispatcher d2 = ServiceDispatcherGenerator.generate(i2.copyNodes());
+        assertThat(d1.getClass()).isSameAs(d2.getClass());
+        assertThat(d1.getClass().getName()).contains("/"); // A hidden class, that can be unloaded
+        assertThat(d1.instanceOf(Letters.A.class)).isSameAs(i1.use(Letters.A.class));
+        assertThat(d2.instanceOf(Letters.A.class)).isSameAs(i2.use(Letters.A.class)).isNotSameAs(i1.use(Letters.A.class));
+    }
+
+    /** Tests that no dispatcher is generated for more than {@link ServiceDispatcherGenerator#MAX_NODES} services. */
+    @Test
+    public void tooManyNodes() {
+        int n = ServiceDispatcherGenerator.MAX_NODES - 1; // The injector itself is also a service
+        AbstractInjector i1 = (AbstractInjector) Injector.configure(c -> provideArrays(c, n));
+        assertThat(ServiceDispatcherGenerator.generate(i1.copyNodes())).isNotNull();
+
+        AbstractInjector i2 = (AbstractInjector) Injector.configure(c -> provideArrays(c, n + 1));
+        assertThat(ServiceDispatcherGenerator.generate(i2.copyNodes())).isNull();
+
+        Injector i3 = Injector.configure(c -> provideArrays(c, n + 1), ServiceWirelets.generateDispatcher());
+        assertThat(i3.use(Object[].class)).isInstanceOf(Object[].class);
+    }
+
+    private static int instanceOfSize(byte kind, int nodes) {
+        int[] hashes = new int[nodes];
+        Arrays.setAll(hashes, i -> i * 1000);
+        byte[] kinds = new byte[hashes.length];
+        Arrays.fill(kinds, kind);
+        return ServiceDispatcherGenerator.instanceOfSize(new Shape(hashes, kinds));
+    }
+
+    private static void install(InjectorConfigurator c, int count) {
+        c.lookup(MethodHandles.lookup());
+        for (int i = 0; i < count; i++) {
+            c.provide(TYPES[i]);
+        }
+    }
+
+    /** Provides the specified number of services, all with distinct array classes. */
+    private static void provideArrays(InjectorConfigurator c, int count) {
+        for (int i = 0; i < count; i++) {
+            c.provide(Array.newInstance(i < 255 ? Object.class : String.class, new int[i % 255 + 1]));
+        }
+    }
+}
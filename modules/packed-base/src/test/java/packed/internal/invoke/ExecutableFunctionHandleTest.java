@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package packed.internal.invoke;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.InjectionException;
+import packed.internal.util.descriptor.InternalMethodDescriptor;
+
+/** Tests {@link ExecutableFunctionHandle}. */
+public class ExecutableFunctionHandleTest {
+
+    /** Tests invocation with every number of arguments that has a fixed-arity invoker, and with the spreader. */
+    @Test
+    public void invoke() {
+        for (int i = 0; i <= 6; i++) {
+            Object[] args = new Object[i];
+            Arrays.setAll(args, j -> "a" + j);
+            ExecutableFunctionHandle<?> f = handle("join" + i, i);
+            assertThat(f.invoke(args)).isEqualTo(String.join("", Arrays.copyOf(args, i, String[].class)));
+        }
+        assertThat(handle("join0", 0).invoke0()).isEqualTo("");
+        assertThat(handle("join1", 1).invoke1("x")).isEqualTo("x");
+        assertThat(handle("join2", 2).invoke2("x", "y")).isEqualTo("xy");
+        assertThat(handle("join3", 3).invoke3("x", "y", "z")).isEqualTo("xyz");
+        assertThat(handle("join4", 4).invoke4("w", "x", "y", "z")).isEqualTo("wxyz");
+    }
+
+    /** Tests that instance methods are invoked on the bound instance. */
+    @Test
+    public void invokeInstance() throws Exception {
+        Method m = ExecutableFunctionHandleTest.class.getDeclaredMethod("prefix", String.class);
+        InvokableMember<?> f = InternalMethodDescriptor.of(m).newInvoker(MethodHandles.lookup()).withInstance(new ExecutableFunctionHandleTest());
+        assertThat(f.invoke(new Object[] { "x" })).isEqualTo("px");
+    }
+
+    /** Tests that varargs methods are invoked with a fixed arity. */
+    @Test
+    public void invokeVarArgs() throws Exception {
+        Method m = ExecutableFunctionHandleTest.class.getDeclaredMethod("varArgs", String[].class);
+        InvokableMember<?> f = InternalMethodDescriptor.of(m).newInvoker(MethodHandles.lookup());
+        assertThat(f.invoke(new Object[] { new String[] { "x", "y" } })).isEqualTo(2);
+    }
+
+    /** Tests that invoking with the wrong number of arguments fails with a {@link WrongMethodTypeException}. */
+    @Test
+    public void invokeWrongArity() {
+        assertThatThrownBy(() -> handle("join2", 2).invoke(new Object[1])).isInstanceOf(WrongMethodTypeException.class);
+        assertThatThrownBy(() -> handle("join2", 2).invoke(new Object[5])).isInstanceOf(WrongMethodTypeException.class);
+        assertThatThrownBy(() -> handle("join5", 5).invoke(new Object[6])).isInstanceOf(WrongMethodTypeException.class);
+    }
+
+    /** Tests that checked exceptions are wrapped, and runtime exceptions are rethrown as they are. */
+    @Test
+    public void invokeFailing() {
+        assertThatThrownBy(() -> handle("failChecked", 1).invoke1("x")).isExactlyInstanceOf(InjectionException.class)
+                .hasCauseInstanceOf(Exception.class);
+        assertThatThrownBy(() -> handle("failRuntime", 1).invoke(new Object[] { "x" })).isExactlyInstanceOf(IllegalStateException.class);
+    }
+
+    private static ExecutableFunctionHandle<?> handle(String name, int parameterCount) {
+        Class<?>[] parameterTypes = new Class<?>[parameterCount];
+        Arrays.fill(parameterTypes, String.class);
+        try {
+            Method m = ExecutableFunctionHandleTest.class.getDeclaredMethod(name, parameterTypes);
+            return (ExecutableFunctionHandle<?>) InternalMethodDescriptor.of(m).newInvoker(MethodHandles.lookup());
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    String prefix(String s) {
+        return "p" + s;
+    }
+
+    static int varArgs(String... s) {
+        return s.length;
+    }
+
+    static String failChecked(String s) throws Exception {
+        throw new Exception(s);
+    }
+
+    static String failRuntime(String s) {
+        throw new IllegalStateException(s);
+    }
+
+    static String join0() {
+        return "";
+    }
+
+    static String join1(String a) {
+        return a;
+    }
+
+    static String join2(String a, String b) {
+        return a + b;
+    }
+
+    static String join3(String a, String b, String c) {
+        return a + b + c;
+    }
+
+    static String join4(String a, String b, String c, String d) {
+        return a + b + c + d;
+    }
+
+    static String join5(String a, String b, String c, String d, String e) {
+        return a + b + c + d + e;
+    }
+
+    static String join6(String a, String b, String c, String d, String e, String f) {
+        return a + b + c + d + e + f;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Injector;
+import app.packed.util.InvalidDeclarationException;
+import app.packed.util.Key;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+import support.stubs.Letters.C;
+import support.stubs.annotation.Left;
+
+/** Tests {@link Injector#bind(Class)}. */
+public class InjectorBindTest {
+
+    @Test
+    public void bind() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class).prototype();
+            c.provide(C.class).lazy();
+            c.provide(A.class).as(new Key<@Left A>() {});
+            c.provide(List.of("foo")).as(new Key<List<String>>() {});
+            c.provide(123);
+        });
+
+        Services s = i.bind(Services.class);
+        assertThat(s.a()).isSameAs(i.use(A.class));
+        assertThat(s.leftA()).isSameAs(i.use(new Key<@Left A>() {}));
+        assertThat(s.b()).isInstanceOf(B.class).isNotSameAs(s.b());
+        assertThat(s.c()).isSameAs(i.use(C.class));
+        assertThat(s.strings()).containsExactly("foo");
+        assertThat(s.number()).isEqualTo(123);
+        assertThat(s.defaultMethod()).isEqualTo("foo");
+
+        // The implementation is only generated once
+        assertThat(i.bind(Services.class)).isNotSameAs(s).hasSameClassAs(s);
+    }
+
+    @Test
+    public void bindFails() {
+        Injector i = Injector.configure(c -> c.provide(123));
+        assertThatThrownBy(() -> i.bind(A.class)).isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> i.bind(WithParameters.class)).isExactlyInstanceOf(InvalidDeclarationException.class);
+        assertThatThrownBy(() -> i.bind(Services.class)).isExactlyInstanceOf(UnsupportedOperationException.class);
+    }
+
+    interface Base {
+        A a();
+    }
+
+    interface Services extends Base {
+        B b();
+
+        C c();
+
+        default String defaultMethod() {
+            return strings().get(0);
+        }
+
+        @Left
+        A leftA();
+
+        int number();
+
+        List<String> strings();
+    }
+
+    interface WithParameters {
+        A a(String s);
+    }
+}
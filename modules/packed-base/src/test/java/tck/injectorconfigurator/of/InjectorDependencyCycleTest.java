@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.InjectionException;
+import app.packed.inject.Injector;
+
+/** Tests that dependency cycles are detected when creating an injector. */
+public class InjectorDependencyCycleTest {
+
+    @Test
+    public void singleCycle() {
+        assertThatThrownBy(() -> Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class);
+        })).isExactlyInstanceOf(InjectionException.class).hasMessageStartingWith("Dependency cycle detected: ");
+    }
+
+    @Test
+    public void selfCycle() {
+        assertThatThrownBy(() -> Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(Self.class);
+        })).isExactlyInstanceOf(InjectionException.class).hasMessageStartingWith("Dependency cycle detected: ");
+    }
+
+    /** All cycles are reported at once. */
+    @Test
+    public void multipleCycles() {
+        assertThatThrownBy(() -> Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(NeedsA.class);
+            c.provide(A.class);
+            c.provide(B.class);
+            c.provide(Self.class);
+        })).isExactlyInstanceOf(InjectionException.class).hasMessageStartingWith("2 dependency cycles detected: ");
+    }
+
+    @Test
+    public void noCycle() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(NeedsC.class);
+            c.provide(C.class);
+        });
+        assertThat(i.use(NeedsC.class).c).isSameAs(i.use(C.class));
+    }
+
+    public static class A {
+        public A(B b) {}
+    }
+
+    public static class B {
+        public B(A a) {}
+    }
+
+    public static class C {}
+
+    public static class NeedsA {
+        public NeedsA(A a) {}
+    }
+
+    public static class NeedsC {
+        final C c;
+
+        public NeedsC(C c) {
+            this.c = c;
+        }
+    }
+
+    public static class Self {
+        public Self(Self self) {}
+    }
+}
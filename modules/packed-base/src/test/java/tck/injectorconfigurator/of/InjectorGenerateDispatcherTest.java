@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Injector;
+import app.packed.inject.ServiceWirelets;
+import app.packed.util.Key;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+import support.stubs.Letters.C;
+import support.stubs.Letters.F;
+import support.stubs.annotation.Left;
+
+/** Tests {@link ServiceWirelets#generateDispatcher()}. */
+public class InjectorGenerateDispatcherTest {
+
+    @Test
+    public void generateDispatcher() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class).prototype();
+            c.provide(C.class).lazy();
+            c.provide(A.class).as(new Key<@Left A>() {});
+            c.provide(List.of("foo")).as(new Key<List<String>>() {});
+            c.provide(123);
+        }, ServiceWirelets.generateDispatcher());
+
+        assertThat(i.use(A.class)).isSameAs(i.use(new Key<A>() {}));
+        assertThat(i.use(B.class)).isInstanceOf(B.class).isNotSameAs(i.use(B.class));
+        assertThat(i.use(C.class)).isSameAs(i.use(C.class)).isSameAs(i.use(new Key<C>() {}));
+        assertThat(i.use(Injector.class)).isSameAs(i);
+
+        // Qualified, parameterized and primitive keys use the lookup table
+        assertThat(i.use(new Key<@Left A>() {})).isNotSameAs(i.use(A.class));
+        assertThat(i.use(new Key<List<String>>() {})).containsExactly("foo");
+        assertThat(i.use(int.class)).isEqualTo(123);
+        assertThat(i.use(Integer.class)).isEqualTo(123);
+
+        assertThat(i.get(F.class)).isEmpty();
+        assertThatThrownBy(() -> i.use(F.class)).isExactlyInstanceOf(UnsupportedOperationException.class);
+    }
+}
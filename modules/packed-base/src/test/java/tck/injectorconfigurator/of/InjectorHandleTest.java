@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Injector;
+import app.packed.inject.ServiceHandle;
+import app.packed.util.Key;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+import support.stubs.Letters.C;
+import support.stubs.annotation.Left;
+
+/** Tests {@link Injector#handle(Class)} and {@link Injector#handle(Key)}. */
+public class InjectorHandleTest {
+
+    @Test
+    public void handle() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class).prototype();
+            c.provide(C.class).lazy();
+            c.provide(A.class).as(new Key<@Left A>() {});
+        });
+
+        ServiceHandle<A> a = i.handle(A.class);
+        assertThat(a.key()).isEqualTo(Key.of(A.class));
+        assertThat(a.get()).isSameAs(i.use(A.class)).isSameAs(a.get());
+
+        ServiceHandle<B> b = i.handle(B.class);
+        assertThat(b.get()).isInstanceOf(B.class).isNotSameAs(b.get());
+
+        ServiceHandle<C> c = i.handle(new Key<C>() {});
+        assertThat(c.get()).isSameAs(i.use(C.class)).isSameAs(c.get());
+
+        ServiceHandle<A> left = i.handle(new Key<@Left A>() {});
+        assertThat(left.get()).isNotSameAs(a.get());
+
+        assertThatThrownBy(() -> i.handle(String.class)).isExactlyInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -15,15 +15,130 @@
  */
 package tck.injectorconfigurator.of;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Optional;
+
 import org.junit.jupiter.api.Test;
 
+import app.packed.inject.Inject;
+import app.packed.inject.InjectionException;
 import app.packed.inject.Injector;
+import app.packed.util.InvalidDeclarationException;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+import support.stubs.Letters.F;
 
 /** Tests {@link Injector#injectMembers(Object, java.lang.invoke.MethodHandles.Lookup)}. */
 public class InjectorInjectMembersTest {
 
     @Test
     public void test() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class).prototype();
+            c.provide(123);
+        });
+
+        // Injection plans are cached, so inject multiple times
+        for (int j = 0; j < 3; j++) {
+            Members m = i.injectMembers(new Members(), MethodHandles.lookup());
+            assertThat(m.a).isSameAs(i.use(A.class));
+            assertThat(m.b).isInstanceOf(B.class);
+            assertThat(m.number).isEqualTo(123);
+            assertThat(m.optionalA).containsSame(m.a);
+            assertThat(m.optionalF).isNull();
+
+            assertThat(m.invocations).isEqualTo(1);
+            assertThat(m.methodA).isSameAs(m.a);
+            assertThat(m.methodB).isInstanceOf(B.class).isNotSameAs(m.b);
+            assertThat(m.methodF).isEmpty();
+        }
+    }
+
+    @Test
+    public void missingDependency() {
+        Injector i = Injector.configure(c -> {});
+        assertThatThrownBy(() -> i.injectMembers(new Members(), MethodHandles.lookup())).isExactlyInstanceOf(InjectionException.class);
+    }
+
+    /** Tests injecting with different lookup objects, where each lookup object has its own injection plan. */
+    @Test
+    public void alternatingLookups() throws Exception {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class).prototype();
+            c.provide(123);
+        });
+        MethodHandles.Lookup l1 = MethodHandles.lookup();
+        MethodHandles.Lookup l2 = MethodHandles.privateLookupIn(Members.class, l1);
+        for (int j = 0; j < 3; j++) {
+            for (MethodHandles.Lookup l : new MethodHandles.Lookup[] { l1, l2 }) {
+                Members m = i.injectMembers(new Members(), l);
+                assertThat(m.a).isSameAs(i.use(A.class));
+                assertThat(m.invocations).isEqualTo(1);
+            }
+        }
+    }
+
+    /** Tests that static members annotated with {@link Inject} are rejected. */
+    @Test
+    public void staticMembers() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+        });
+        assertThatThrownBy(() -> i.injectMembers(new StaticField(), MethodHandles.lookup())).isExactlyInstanceOf(InvalidDeclarationException.class);
+        assertThatThrownBy(() -> i.injectMembers(new StaticMethod(), MethodHandles.lookup())).isExactlyInstanceOf(InvalidDeclarationException.class);
+    }
+
+    public static class Members {
+
+        @Inject
+        private A a;
+
+        @Inject
+        B b;
+
+        int invocations;
+
+        A methodA;
+
+        B methodB;
+
+        Optional<F> methodF;
+
+        @Inject
+        int number;
+
+        @Inject
+        Optional<A> optionalA;
+
+        @Inject
+        Optional<F> optionalF;
+
+        @Inject
+        void inject(A a, B b, Optional<F> f) {
+            invocations++;
+            methodA = a;
+            methodB = b;
+            methodF = f;
+        }
+    }
+
+    public static class StaticField {
+
+        @Inject
+        static A a;
+    }
+
+    public static class StaticMethod {
 
+        @Inject
+        static void inject(A a) {}
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Injector;
+import app.packed.inject.ServiceWirelets;
+import app.packed.util.Key;
+
+/** Tests {@link ServiceWirelets#parallelInstantiation()}. */
+public class InjectorParallelInstantiationTest {
+
+    /** Both singletons must be created at the same time, otherwise the first one to be created will time out. */
+    @Test
+    public void independentSingletonsAreCreatedInParallel() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(new CountDownLatch(2));
+            c.provide(WaitsForOther1.class);
+            c.provide(WaitsForOther2.class);
+            c.provide(NeedsBoth.class);
+        }, ServiceWirelets.parallelInstantiation());
+
+        assertThat(i.use(WaitsForOther1.class).released).isTrue();
+        assertThat(i.use(WaitsForOther2.class).released).isTrue();
+        assertThat(i.use(NeedsBoth.class).w1).isSameAs(i.use(WaitsForOther1.class));
+    }
+
+    /** A lazy service shared by singletons created in parallel is only created once. */
+    @Test
+    public void sharedLazyIsCreatedOnce() {
+        AtomicInteger counter = new AtomicInteger();
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(counter);
+            c.provide(Shared.class).lazy();
+            c.provide(NeedsShared1.class);
+            c.provide(NeedsShared2.class);
+        }, ServiceWirelets.parallelInstantiation());
+
+        assertThat(counter.get()).isEqualTo(1);
+        assertThat(i.use(NeedsShared1.class).shared).isSameAs(i.use(NeedsShared2.class).shared);
+    }
+
+    @Test
+    public void listenerIsNotifiedForEachSingleton() {
+        List<Key<?>> keys = new CopyOnWriteArrayList<>();
+        Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(new CountDownLatch(2));
+            c.provide(WaitsForOther1.class);
+            c.provide(WaitsForOther2.class);
+            c.provide(NeedsBoth.class);
+        }, ServiceWirelets.parallelInstantiation((d, t) -> {
+            assertThat(t).isGreaterThanOrEqualTo(Duration.ZERO);
+            keys.add(d.key());
+        }));
+
+        // Services that were registered as instances are not created, so they are not reported
+        assertThat(keys).containsExactlyInAnyOrder(Key.of(WaitsForOther1.class), Key.of(WaitsForOther2.class), Key.of(NeedsBoth.class));
+        // Dependencies are always reported before the services that depend on them
+        assertThat(keys.get(2)).isEqualTo(Key.of(NeedsBoth.class));
+    }
+
+    /** The original exception is rethrown, not an exception wrapping it. */
+    @Test
+    public void failure() {
+        assertThatThrownBy(() -> Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(Fails.class);
+            c.provide(Shared.class);
+            c.provide(new AtomicInteger());
+        }, ServiceWirelets.parallelInstantiation())).isExactlyInstanceOf(IllegalStateException.class).hasMessage("failed");
+    }
+
+    public static class Fails {
+        public Fails() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    public static class NeedsBoth {
+        final WaitsForOther1 w1;
+
+        public NeedsBoth(WaitsForOther1 w1, WaitsForOther2 w2) {
+            this.w1 = w1;
+        }
+    }
+
+    public static class NeedsShared1 {
+        final Shared shared;
+
+        public NeedsShared1(Shared shared) {
+            this.shared = shared;
+        }
+    }
+
+    public static class NeedsShared2 {
+        final Shared shared;
+
+        public NeedsShared2(Shared shared) {
+            this.shared = shared;
+        }
+    }
+
+    public static class Shared {
+        public Shared(AtomicInteger counter) {
+            counter.incrementAndGet();
+        }
+    }
+
+    public static class WaitsForOther1 {
+        final boolean released;
+
+        public WaitsForOther1(CountDownLatch latch) throws InterruptedException {
+            latch.countDown();
+            released = latch.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class WaitsForOther2 {
+        final boolean released;
+
+        public WaitsForOther2(CountDownLatch latch) throws InterruptedException {
+            latch.countDown();
+            released = latch.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Factory1;
+import app.packed.inject.InjectionException;
+import app.packed.inject.Injector;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+
+/** Tests prototype services with dependencies on singleton, lazy and other prototype services. */
+public class InjectorPrototypeTest {
+
+    @Test
+    public void dependencies() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class).lazy();
+            c.provide("foo");
+            c.provide(P1.class).prototype();
+            c.provide(P2.class).prototype();
+            c.provide(new Factory1<P1, Long>(p -> 123L) {}).prototype();
+        });
+
+        P2 p = i.use(P2.class);
+        P2 q = i.use(P2.class);
+        assertThat(p).isNotSameAs(q);
+        assertThat(p.p1).isNotSameAs(q.p1);
+        assertThat(p.p1.a).isSameAs(q.p1.a).isSameAs(i.use(A.class));
+        assertThat(p.b).isSameAs(q.b).isSameAs(i.use(B.class));
+        assertThat(p.s).isEqualTo("foo");
+        assertThat(i.use(Long.class)).isEqualTo(123L);
+    }
+
+    @Test
+    public void checkedException() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(Failing.class).prototype();
+        });
+        assertThatThrownBy(() -> i.use(Failing.class)).isExactlyInstanceOf(InjectionException.class).hasCauseExactlyInstanceOf(Exception.class);
+    }
+
+    public static class P1 {
+        final A a;
+
+        public P1(A a) {
+            this.a = a;
+        }
+    }
+
+    public static class P2 {
+        final P1 p1;
+        final B b;
+        final String s;
+
+        public P2(P1 p1, B b, String s) {
+            this.p1 = p1;
+            this.b = b;
+            this.s = s;
+        }
+    }
+
+    public static class Failing {
+        public Failing() throws Exception {
+            throw new Exception();
+        }
+    }
+}
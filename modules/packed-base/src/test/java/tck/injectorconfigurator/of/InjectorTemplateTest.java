@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Inject;
+import app.packed.inject.Injector;
+import app.packed.inject.InjectorTemplate;
+import app.packed.util.Key;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+import support.stubs.Letters.C;
+import support.stubs.annotation.Left;
+
+/** Tests {@link Injector#template(Class...)} and {@link Injector#template(Key...)}. */
+public class InjectorTemplateTest {
+
+    @Test
+    public void spawn() {
+        Injector parent = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide("parent");
+        });
+        InjectorTemplate t = parent.template(Key.of(B.class), new Key<@Left C>() {}, Key.of(String.class));
+        assertThat(t.parent()).isSameAs(parent);
+        assertThat(t.inputs()).containsExactly(Key.of(B.class), new Key<@Left C>() {}, Key.of(String.class));
+
+        B b = new B();
+        C c = new C();
+        Injector i = t.spawn(b, c, "child");
+        assertThat(i.use(B.class)).isSameAs(b);
+        assertThat(i.use(new Key<@Left C>() {})).isSameAs(c);
+        assertThat(i.hasService(C.class)).isFalse();
+
+        // Inputs shadow services in the parent
+        assertThat(i.use(String.class)).isEqualTo("child");
+        assertThat(parent.use(String.class)).isEqualTo("parent");
+
+        assertThat(i.use(A.class)).isSameAs(parent.use(A.class));
+        assertThat(i.use(Injector.class)).isSameAs(i);
+        assertThat(i.handle(B.class).get()).isSameAs(b);
+        assertThat(i.services().count()).isEqualTo(parent.services().count() + 2);
+
+        // Each spawn is independent
+        assertThat(t.spawn(new B(), c, "other").use(B.class)).isNotSameAs(b);
+    }
+
+    /** Tests that spawned injectors inject their own input values, even though they share injection plans. */
+    @Test
+    public void spawnInjectMembers() {
+        Injector parent = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+        });
+        InjectorTemplate t = parent.template(B.class, String.class);
+        for (int j = 0; j < 3; j++) {
+            B b = new B();
+            Injector i = t.spawn(b, "child" + j);
+            Members m = i.injectMembers(new Members(), MethodHandles.lookup());
+            assertThat(m.a).isSameAs(parent.use(A.class));
+            assertThat(m.b).isSameAs(b);
+            assertThat(m.injector).isSameAs(i);
+            assertThat(m.s).containsSame(i.use(String.class));
+            assertThat(m.methodB).isSameAs(b);
+
+            // A template created from a spawned injector resolves the inputs of its parent as constants
+            C c = new C();
+            Injector nested = i.template(C.class).spawn(c);
+            Members n = nested.injectMembers(new Members(), MethodHandles.lookup());
+            assertThat(n.b).isSameAs(b);
+            assertThat(n.c).containsSame(c);
+            assertThat(n.injector).isSameAs(nested);
+        }
+    }
+
+    @Test
+    public void spawnFails() {
+        Injector parent = Injector.configure(c -> {});
+        assertThatThrownBy(() -> parent.template(A.class, A.class)).isExactlyInstanceOf(IllegalArgumentException.class);
+
+        InjectorTemplate t = parent.template(A.class, B.class);
+        assertThatThrownBy(() -> t.spawn(new A())).isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> t.spawn(new B(), new A())).isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> t.spawn(new A(), null)).isExactlyInstanceOf(NullPointerException.class);
+    }
+
+    public static class Members {
+
+        @Inject
+        A a;
+
+        @Inject
+        B b;
+
+        @Inject
+        Optional<C> c;
+
+        @Inject
+        Injector injector;
+
+        B methodB;
+
+        @Inject
+        Optional<String> s;
+
+        @Inject
+        void inject(B b) {
+            methodB = b;
+        }
+    }
+}
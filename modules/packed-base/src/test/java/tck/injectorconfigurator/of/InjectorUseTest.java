@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2008 Kasper Nielsen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tck.injectorconfigurator.of;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import app.packed.inject.Injector;
+import app.packed.util.Key;
+import support.stubs.Letters.A;
+import support.stubs.Letters.B;
+import support.stubs.Letters.C;
+import support.stubs.Letters.D;
+import support.stubs.Letters.E;
+import support.stubs.Letters.F;
+import support.stubs.annotation.Left;
+import support.stubs.annotation.Right;
+
+/** Tests {@link Injector#use(Class)} and {@link Injector#use(Key)}. */
+public class InjectorUseTest {
+
+    @Test
+    public void use() {
+        Injector i = Injector.configure(c -> {
+            c.lookup(MethodHandles.lookup());
+            c.provide(A.class);
+            c.provide(B.class);
+            c.provide(C.class);
+            c.provide(D.class);
+            c.provide(E.class);
+            c.provide(A.class).as(new Key<@Left A>() {});
+            c.provide(List.of("foo")).as(new Key<List<String>>() {});
+            c.provide(123);
+        });
+
+        assertThat(i.use(A.class)).isSameAs(i.use(new Key<A>() {}));
+        assertThat(i.use(B.class)).isInstanceOf(B.class);
+        assertThat(i.use(C.class)).isInstanceOf(C.class);
+        assertThat(i.use(D.class)).isInstanceOf(D.class);
+        assertThat(i.use(E.class)).isInstanceOf(E.class);
+
+        assertThat(i.use(new Key<@Left A>() {})).isNotSameAs(i.use(A.class));
+        assertThat(i.use(new Key<List<String>>() {})).containsExactly("foo");
+
+        // Primitive types are boxed
+        assertThat(i.use(int.class)).isEqualTo(123);
+        assertThat(i.use(Integer.class)).isEqualTo(123);
+
+        assertThat(i.hasService(F.class)).isFalse();
+        assertThat(i.hasService(List.class)).isFalse();
+        assertThat(i.hasService(new Key<@Right A>() {})).isFalse();
+        assertThatThrownBy(() -> i.use(F.class)).isExactlyInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> i.use(new Key<@Right A>() {})).isExactlyInstanceOf(UnsupportedOperationException.class);
+    }
+}